@@ -0,0 +1,184 @@
+package com.cosmicdan.turboshell;
+
+import com.cosmicdan.turboshell.common.model.ClockAgent;
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.cosmicdan.turboshell.winapi.model.ReplayWindowEventSource;
+import com.cosmicdan.turboshell.winapi.model.WinEventAgent;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinUser;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Footprint regression harness. Runs the shell core (the WinEventAgent and ClockAgent, no JavaFX) against a synthetic
+ * window event source for a number of minutes, sampling every {@value #SAMPLE_SECONDS} seconds:
+ * <ul>
+ *     <li>heap used straight after a full GC;</li>
+ *     <li>allocation rate, summed over all threads (HotSpot only);</li>
+ *     <li>native memory, as committed non-heap (metaspace, code cache...) plus direct and mapped buffers. Memory JNA
+ *     allocates itself isn't visible from Java, so this is a lower bound.</li>
+ * </ul>
+ * The first {@value #WARMUP_SAMPLES} samples are warmup. The last sample is compared against the first one after
+ * warmup, and the harness exits with 1 if anything grew past its threshold - so a leak, a cache that isn't bounded
+ * or new per-event garbage fails the build. Thresholds can be changed with system properties, see below.
+ * <p>
+ * Usage: FootprintHarness [minutes] [report file]. Run with the same heap settings as the launcher, e.g. -Xms8m.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class FootprintHarness {
+	private static final int SAMPLE_SECONDS = 10;
+	private static final int WARMUP_SAMPLES = 2;
+	private static final int SYNTHETIC_WINDOWS = 200;
+
+	// thresholds, as growth from the first sample after warmup to the last one
+	private static final long MAX_HEAP_GROWTH_KB = Long.getLong("footprint.maxHeapGrowthKb", 256L);
+	private static final long MAX_ALLOCATION_GROWTH_PERCENT = Long.getLong("footprint.maxAllocationGrowthPercent", 25L);
+	private static final long MAX_NATIVE_GROWTH_KB = Long.getLong("footprint.maxNativeGrowthKb", 1024L);
+
+	private static final class Sample {
+		private final long mElapsedSeconds;
+		private final long mHeapAfterGc;
+		private final long mAllocatedBytes;
+		private final long mNative;
+		private final long mEventsDelivered;
+		// per second, since the previous sample
+		private long mAllocationRate = 0L;
+		private long mEventRate = 0L;
+
+		private Sample(final long elapsedSeconds, final long heapAfterGc, final long allocatedBytes, final long nativeBytes,
+					   final long eventsDelivered) {
+			mElapsedSeconds = elapsedSeconds;
+			mHeapAfterGc = heapAfterGc;
+			mAllocatedBytes = allocatedBytes;
+			mNative = nativeBytes;
+			mEventsDelivered = eventsDelivered;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%5ds  heapAfterGc=%7dKB  allocation=%9dKB/s  native=%7dKB  events=%8d/s  bytesPerEvent=%d",
+					mElapsedSeconds, mHeapAfterGc / 1024L, mAllocationRate / 1024L, mNative / 1024L, mEventRate,
+					(0L == mEventRate) ? 0L : (mAllocationRate / mEventRate));
+		}
+	}
+
+	private FootprintHarness() {}
+
+	public static void main(final String[] args) throws InterruptedException, IOException {
+		final double minutes = (0 < args.length) ? Double.parseDouble(args[0]) : 1.0;
+		final Path reportPath = (1 < args.length) ? Paths.get(args[1]) : null;
+		final int sampleCount = Math.max(WARMUP_SAMPLES + 2, (int) ((minutes * 60.0) / SAMPLE_SECONDS));
+
+		final ReplayWindowEventSource eventSource = newSyntheticSource();
+		WinEventAgent.INSTANCE.setEventSource(eventSource);
+		WinEventAgent.INSTANCE.start();
+		ClockAgent.INSTANCE.start();
+
+		final List<Sample> samples = new ArrayList<>(sampleCount);
+		final long startNanos = System.nanoTime();
+		for (int i = 0; i < sampleCount; i++) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(SAMPLE_SECONDS));
+			final Sample sample = sample(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos), eventSource);
+			if (!samples.isEmpty()) {
+				final Sample previous = samples.get(samples.size() - 1);
+				final long seconds = Math.max(1L, sample.mElapsedSeconds - previous.mElapsedSeconds);
+				sample.mAllocationRate = (sample.mAllocatedBytes - previous.mAllocatedBytes) / seconds;
+				sample.mEventRate = (sample.mEventsDelivered - previous.mEventsDelivered) / seconds;
+			}
+			samples.add(sample);
+			System.out.println(sample);
+		}
+		eventSource.quit();
+
+		final List<String> report = new ArrayList<>(samples.size() + 8);
+		samples.forEach((Sample sample) -> report.add(sample.toString()));
+		// the first sample has no rates, so compare from the one after warmup
+		final Sample baseline = samples.get(WARMUP_SAMPLES);
+		final Sample last = samples.get(samples.size() - 1);
+		boolean passed = check(report, "heap after GC", (last.mHeapAfterGc - baseline.mHeapAfterGc) / 1024L, MAX_HEAP_GROWTH_KB, "KB");
+		passed &= check(report, "allocation rate", growthPercent(baseline.mAllocationRate, last.mAllocationRate),
+				MAX_ALLOCATION_GROWTH_PERCENT, "%");
+		passed &= check(report, "native memory", (last.mNative - baseline.mNative) / 1024L, MAX_NATIVE_GROWTH_KB, "KB");
+		report.add(passed ? "PASSED" : "FAILED");
+		report.forEach(System.out::println);
+		if (null != reportPath)
+			Files.write(reportPath, report, StandardCharsets.UTF_8);
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * A source that endlessly cycles focus, moves and renames through a fixed set of windows, i.e. a steady state
+	 */
+	private static ReplayWindowEventSource newSyntheticSource() {
+		final ReplayWindowEventSource eventSource = new ReplayWindowEventSource();
+		final long style = WinUser.WS_VISIBLE | WinUser.WS_SIZEBOX | WinUser.WS_MAXIMIZEBOX | WinUser.WS_MINIMIZEBOX;
+		final HWND[] windows = new HWND[SYNTHETIC_WINDOWS];
+		for (int i = 0; i < windows.length; i++) {
+			windows[i] = eventSource.putWindow(0x1000L + i, style, WinUserEx.WS_EX_APPWINDOW, "Synthetic window " + i);
+		}
+		for (int i = 0; i < windows.length; i++) {
+			final HWND hWnd = windows[i];
+			eventSource.addEvent(WinUserEx.EVENT_SYSTEM_FOREGROUND, hWnd);
+			for (int move = 0; move < 10; move++) {
+				eventSource.addEvent(WinUserEx.EVENT_OBJECT_LOCATIONCHANGE, hWnd);
+			}
+			// alternate between two titles (and maximized or not), so every pass through the script changes state
+			eventSource.addStateChange(WinUserEx.EVENT_OBJECT_NAMECHANGE, hWnd, style | WinUser.WS_MAXIMIZE,
+					WinUserEx.WS_EX_APPWINDOW, "Synthetic window " + i + " - edited");
+			eventSource.addStateChange(WinUserEx.EVENT_OBJECT_NAMECHANGE, hWnd, style,
+					WinUserEx.WS_EX_APPWINDOW, "Synthetic window " + i);
+		}
+		eventSource.setRepeatCount(Integer.MAX_VALUE);
+		return eventSource;
+	}
+
+	private static Sample sample(final long elapsedSeconds, final ReplayWindowEventSource eventSource) {
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		final long heapAfterGc = memory.getHeapMemoryUsage().getUsed();
+		long nativeBytes = memory.getNonHeapMemoryUsage().getCommitted();
+		for (final BufferPoolMXBean bufferPool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			nativeBytes += bufferPool.getMemoryUsed();
+		}
+		return new Sample(elapsedSeconds, heapAfterGc, getAllocatedBytes(), nativeBytes, eventSource.getEventsDelivered());
+	}
+
+	/**
+	 * @return Bytes allocated so far by all live threads, or 0 if the JVM can't tell
+	 */
+	private static long getAllocatedBytes() {
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return 0L;
+		long allocatedBytes = 0L;
+		for (final long allocated : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (0L < allocated)
+				allocatedBytes += allocated;
+		}
+		return allocatedBytes;
+	}
+
+	private static long growthPercent(final long from, final long to) {
+		return (0L == from) ? 0L : (((to - from) * 100L) / from);
+	}
+
+	private static boolean check(final List<String> report, final String name, final long growth, final long threshold,
+								 final String unit) {
+		final boolean passed = growth <= threshold;
+		report.add(String.format("%-16s grew %6d%s (threshold %d%s) - %s", name, growth, unit, threshold, unit,
+				passed ? "ok" : "TOO MUCH"));
+		return passed;
+	}
+}
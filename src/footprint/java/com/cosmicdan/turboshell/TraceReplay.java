@@ -0,0 +1,58 @@
+package com.cosmicdan.turboshell;
+
+import com.cosmicdan.turboshell.winapi.model.TraceWindowEventSource;
+import com.cosmicdan.turboshell.winapi.model.TraceWindowEventSource.Speed;
+import com.cosmicdan.turboshell.winapi.model.WinEventAgent;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a window event trace (recorded with -Dturboshell.trace.record=&lt;file&gt;, see WinEventTraceRecorder) through the
+ * shell core, with no desktop and no JavaFX - e.g. to compare dispatch throughput between builds on a build machine.
+ * Reports the events/s the trace was replayed at and what the agent's event pipeline had to drop or coalesce.
+ * <p>
+ * Usage: TraceReplay &lt;trace file&gt; [MAXIMUM|RECORDED]
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class TraceReplay {
+	private static final long POLL_MILLIS = 10L;
+	/** How long to wait for the dispatcher to finish the last events once the replay is done */
+	private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	private TraceReplay() {}
+
+	public static void main(final String[] args) throws InterruptedException {
+		if (0 == args.length) {
+			System.err.println("Usage: TraceReplay <trace file> [MAXIMUM|RECORDED]");
+			System.exit(2);
+		}
+		final Path tracePath = Paths.get(args[0]);
+		if (!Files.isRegularFile(tracePath)) {
+			System.err.println("No trace file at " + tracePath.toAbsolutePath());
+			System.exit(2);
+		}
+		final Speed speed = (1 < args.length) ? Speed.valueOf(args[1].toUpperCase(Locale.ROOT)) : Speed.MAXIMUM;
+
+		final TraceWindowEventSource eventSource = new TraceWindowEventSource(tracePath, speed);
+		WinEventAgent.INSTANCE.setEventSource(eventSource);
+		final long startNanos = System.nanoTime();
+		WinEventAgent.INSTANCE.start();
+		// the rate is only set once the whole trace has been replayed
+		while (0.0 == eventSource.getEventsPerSecond()) {
+			Thread.sleep(POLL_MILLIS);
+		}
+		final boolean idle = WinEventAgent.INSTANCE.awaitDispatchIdle(IDLE_TIMEOUT_MILLIS);
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+		System.out.printf("Replayed %d events at %s speed%n", eventSource.getEventsDelivered(), speed);
+		System.out.printf("  replay:   %.0f events/s%n", eventSource.getEventsPerSecond());
+		System.out.printf("  dispatch: %s after %dms, %d dropped, %d coalesced%n", idle ? "idle" : "STILL BUSY", elapsedMillis,
+				WinEventAgent.INSTANCE.getEventsDropped(), WinEventAgent.INSTANCE.getEventsCoalesced());
+		System.exit(idle ? 0 : 1);
+	}
+}
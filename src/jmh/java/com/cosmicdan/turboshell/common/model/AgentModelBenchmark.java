@@ -0,0 +1,66 @@
+package com.cosmicdan.turboshell.common.model;
+
+import com.cosmicdan.turboshell.common.model.AgentModel.PayloadCallback;
+import com.cosmicdan.turboshell.common.model.payload.IPayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowTitleChangePayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of publishing a payload to an agent's registered callbacks.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgentModelBenchmark {
+	@Param({"1", "10", "100"})
+	private int mSubscribers;
+
+	private BenchmarkAgent mAgent = null;
+	private WindowTitleChangePayload mPayload = null;
+
+	@Setup
+	public void setup() {
+		mAgent = new BenchmarkAgent();
+		for (int i = 0; i < mSubscribers; i++) {
+			mAgent.registerCallback(WindowTitleChangePayload.class,
+					(PayloadCallback<WindowTitleChangePayload>) (WindowTitleChangePayload payload) -> mAgent.mReceived++);
+		}
+		// something registered for another payload type, as the real agents have
+		mAgent.registerCallback(BenchmarkPayload.class, (PayloadCallback<BenchmarkPayload>) (BenchmarkPayload payload) -> {});
+		mPayload = new WindowTitleChangePayload("Benchmark");
+	}
+
+	@Benchmark
+	public long runCallbacks() {
+		mAgent.runCallbacks(mPayload);
+		return mAgent.mReceived;
+	}
+
+	private static final class BenchmarkAgent extends AgentModel {
+		private long mReceived = 0L;
+
+		@Override
+		protected void serviceStart() {}
+
+		@Override
+		protected void serviceStop() {}
+	}
+
+	private static final class BenchmarkPayload implements IPayload {}
+}
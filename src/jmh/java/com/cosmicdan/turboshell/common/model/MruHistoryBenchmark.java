@@ -0,0 +1,63 @@
+package com.cosmicdan.turboshell.common.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push/remove churn on the foreground window history (formerly SizedStack).
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MruHistoryBenchmark {
+	private static final int HISTORY_DEPTH = 10;
+
+	/** Number of distinct keys being cycled through. Anything above the history depth causes evictions */
+	@Param({"5", "10", "100"})
+	private int mDistinctKeys;
+
+	private MruHistory<Integer, Integer> mHistory = null;
+	private Integer[] mKeys = null;
+	private int mNext = 0;
+
+	@Setup
+	public void setup() {
+		mHistory = new MruHistory<>(HISTORY_DEPTH, (Integer value) -> 0 == (value & 1));
+		mKeys = new Integer[mDistinctKeys];
+		for (int i = 0; i < mDistinctKeys; i++) {
+			mKeys[i] = i;
+		}
+	}
+
+	@Benchmark
+	public boolean push() {
+		final Integer key = mKeys[mNext];
+		mNext = (mNext + 7) % mDistinctKeys;
+		return mHistory.put(key, key);
+	}
+
+	@Benchmark
+	public boolean pushAndRemove() {
+		final Integer key = mKeys[mNext];
+		mNext = (mNext + 7) % mDistinctKeys;
+		final boolean replaced = mHistory.put(key, key);
+		// e.g. a window being destroyed
+		mHistory.remove(mKeys[(mNext + 3) % mDistinctKeys]);
+		return replaced;
+	}
+}
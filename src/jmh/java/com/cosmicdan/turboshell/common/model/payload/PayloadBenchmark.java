@@ -0,0 +1,43 @@
+package com.cosmicdan.turboshell.common.model.payload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload type checks.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadBenchmark {
+	private IPayload mPayload = null;
+
+	@Setup
+	public void setup() {
+		mPayload = new WindowTitleChangePayload("Benchmark");
+	}
+
+	@Benchmark
+	public boolean isTypeOfMatch() {
+		return mPayload.isTypeOf(WindowTitleChangePayload.class);
+	}
+
+	@Benchmark
+	public boolean isTypeOfMismatch() {
+		return mPayload.isTypeOf(WindowSysBtnUpdatePayload.class);
+	}
+}
@@ -0,0 +1,51 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.model.WindowInfo.Flag;
+import com.sun.jna.platform.win32.WinUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WindowInfo flag computation, as done for every sysbtn update. Windows come from a replay source so no native calls are
+ * made.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WindowInfoBenchmark {
+	private WindowInfo[] mWindows = null;
+	private int mNext = 0;
+
+	@Setup
+	public void setup() {
+		final ReplayWindowEventSource source = new ReplayWindowEventSource();
+		final long normal = WinUser.WS_VISIBLE | WinUser.WS_SIZEBOX | WinUser.WS_MAXIMIZEBOX | WinUser.WS_MINIMIZEBOX;
+		final long[] styles = {normal, normal | WinUser.WS_MAXIMIZE, WinUser.WS_VISIBLE, WinUser.WS_VISIBLE | WinUser.WS_MINIMIZEBOX};
+		mWindows = new WindowInfo[styles.length];
+		for (int i = 0; i < styles.length; i++) {
+			mWindows[i] = source.getWindowInfo(source.putWindow(0x1000L + i, styles[i], 0L, "Window " + i));
+		}
+	}
+
+	@Benchmark
+	public EnumSet<Flag> getFlags() {
+		final WindowInfo windowInfo = mWindows[mNext];
+		mNext = (mNext + 1) & 3;
+		return windowInfo.getFlags();
+	}
+}
@@ -0,0 +1,59 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.cosmicdan.turboshell.winapi.model.WinEventAgent.WindowEventResponse;
+import com.sun.jna.platform.win32.WinUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updating the agent's foreground window history, as done for every foreground/location/title event. Windows come from
+ * a replay source so no native calls are made; the agent itself is never started.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WindowStackBenchmark {
+	/** Number of distinct windows being cycled through the foreground */
+	@Param({"10", "100", "1000"})
+	private int mDistinctWindows;
+
+	private WindowInfo[] mWindows = null;
+	private int mNext = 0;
+
+	@Setup
+	public void setup() {
+		final ReplayWindowEventSource source = new ReplayWindowEventSource();
+		final long style = WinUser.WS_VISIBLE | WinUser.WS_SIZEBOX | WinUser.WS_MAXIMIZEBOX | WinUser.WS_MINIMIZEBOX;
+		mWindows = new WindowInfo[mDistinctWindows];
+		for (int i = 0; i < mDistinctWindows; i++) {
+			// every third window is maximized, so the maximized sub-list is exercised too
+			final long windowStyle = (0 == (i % 3)) ? (style | WinUser.WS_MAXIMIZE) : style;
+			mWindows[i] = source.getWindowInfo(
+					source.putWindow(0x10000L + i, windowStyle, WinUserEx.WS_EX_APPWINDOW, "Window " + i));
+		}
+	}
+
+	@Benchmark
+	public boolean addOrUpdateWindowStack() {
+		final WindowInfo windowInfo = mWindows[mNext];
+		// mostly revisit recent windows, with an occasional jump like alt-tabbing to something old
+		mNext = (0 == (mNext & 15)) ? ((mNext * 31 + 17) % mDistinctWindows) : ((mNext + 1) % mDistinctWindows);
+		return WindowEventResponse.addOrUpdateWindowStack(windowInfo);
+	}
+}
@@ -0,0 +1,60 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.sun.jna.platform.win32.WinUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TurboMenu switcher searches, as done on every keystroke. An empty query and a one-char query have no trigram so they
+ * scan every window; longer queries only verify the windows sharing their rarest trigram. Windows come from a replay
+ * source so no native calls are made.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WindowTitleIndexBenchmark {
+	private static final String[] APPS = {
+			"Mozilla Firefox", "Visual Studio Code", "Notepad", "File Explorer", "IntelliJ IDEA", "Slack", "Windows PowerShell"
+	};
+	private static final int MAX_RESULTS = 50;
+
+	@Param({"100", "500"})
+	private int mWindowCount;
+	@Param({"", "s", "studio", "document 4"})
+	private String mQuery;
+
+	private WindowTitleIndex mIndex = null;
+
+	@Setup
+	public void setup() {
+		final ReplayWindowEventSource source = new ReplayWindowEventSource();
+		for (int i = 0; i < mWindowCount; i++) {
+			source.putWindow(0x1000L + i, WinUser.WS_VISIBLE, 0L, "Document " + i + " - " + APPS[i % APPS.length]);
+		}
+		final WindowRegistry registry = new WindowRegistry(source);
+		registry.seed();
+		mIndex = new WindowTitleIndex(source, registry, (int processId) -> "", -1);
+		mIndex.seed();
+	}
+
+	@Benchmark
+	public List<WindowTitleIndex.Entry> search() {
+		return mIndex.search(mQuery, MAX_RESULTS);
+	}
+}
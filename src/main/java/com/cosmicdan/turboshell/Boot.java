@@ -0,0 +1,106 @@
+package com.cosmicdan.turboshell;
+
+import com.cosmicdan.turboshell.common.metrics.StartupTimeline;
+import com.cosmicdan.turboshell.winapi.model.WinEventAgent;
+import javafx.animation.AnimationTimer;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Startup orchestration. Everything that doesn't need the JavaFX toolkit is started in the background as soon as main
+ * is entered, so it runs while the toolkit initializes rather than one step after another on the FX thread:
+ * <ul>
+ *     <li>loading the config file;</li>
+ *     <li>binding the native libraries (loading JNA and registering every native method takes a while);</li>
+ *     <li>starting the WinEventAgent, which installs its hooks and seeds the window registry on its own threads. This
+ *     needs the config, so it starts once that is loaded.</li>
+ * </ul>
+ * The FX thread only waits for the config before building the TurboBars. Every phase is recorded in the
+ * {@link StartupTimeline}, which is finished when the first TurboBar is painted.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+final class Boot {
+	static final Boot INSTANCE = new Boot();
+
+	// direct-mapped classes register their natives in a static initializer, interface-mapped ones create their INSTANCE
+	private static final String[] NATIVE_CLASSES = {
+			"com.cosmicdan.turboshell.winapi.User32Ex",
+			"com.cosmicdan.turboshell.winapi.Kernel32Ex",
+			"com.sun.jna.platform.win32.User32",
+			"com.sun.jna.platform.win32.Shell32",
+	};
+
+	private final AtomicInteger mThreadCount = new AtomicInteger(0);
+	private final ExecutorService mExecutor = Executors.newFixedThreadPool(2, (Runnable runnable) -> {
+		final Thread thread = new Thread(runnable, "Boot-" + mThreadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+	private CompletableFuture<Void> mConfigLoaded = null;
+	private long mLaunchNanos = 0L;
+
+	private Boot() {}
+
+	/**
+	 * Start every background phase. Called from main, before launching the FX toolkit.
+	 */
+	void begin() {
+		mConfigLoaded = CompletableFuture.runAsync(() -> StartupTimeline.INSTANCE.time("config", () -> {
+			TurboShellConfig.reload();
+		}), mExecutor);
+		CompletableFuture.runAsync(() -> StartupTimeline.INSTANCE.time("natives", Boot::bindNatives), mExecutor)
+				.exceptionally((Throwable throwable) -> logFailure("natives", throwable));
+		mConfigLoaded.thenRunAsync(() -> StartupTimeline.INSTANCE.time("winEventAgent.start", WinEventAgent.INSTANCE::start), mExecutor)
+				.exceptionally((Throwable throwable) -> logFailure("winEventAgent.start", throwable));
+		mLaunchNanos = System.nanoTime();
+	}
+
+	/**
+	 * Called on the FX thread once the toolkit is up. Waits for the config to be loaded, since everything after this
+	 * needs it.
+	 */
+	void onToolkitStarted() {
+		StartupTimeline.INSTANCE.record("fxToolkit", mLaunchNanos);
+		final long waitStartNanos = System.nanoTime();
+		mConfigLoaded.exceptionally((Throwable throwable) -> logFailure("config", throwable)).join();
+		StartupTimeline.INSTANCE.record("fxToolkit.awaitConfig", waitStartNanos);
+	}
+
+	/**
+	 * Called on the FX thread once the first TurboBars have been created. Finishes the startup timeline on the next
+	 * pulse, i.e. when they are actually painted.
+	 */
+	void onTurboBarsCreated() {
+		final long createdNanos = System.nanoTime();
+		new AnimationTimer() {
+			@Override
+			public void handle(final long now) {
+				stop();
+				StartupTimeline.INSTANCE.record("firstPulse", createdNanos);
+				StartupTimeline.INSTANCE.finish();
+				mExecutor.shutdown();
+			}
+		}.start();
+	}
+
+	private static void bindNatives() {
+		for (final String nativeClass : NATIVE_CLASSES) {
+			try {
+				Class.forName(nativeClass, true, Boot.class.getClassLoader());
+			} catch (final ClassNotFoundException e) {
+				throw new IllegalStateException("Missing native class " + nativeClass, e);
+			}
+		}
+	}
+
+	private static Void logFailure(final String phase, final Throwable throwable) {
+		// not fatal here - whatever needs it will fail again (with the same error) when it's used
+		log.error("Startup phase " + phase + " failed", throwable);
+		return null;
+	}
+}
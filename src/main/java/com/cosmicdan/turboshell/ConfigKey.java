@@ -0,0 +1,105 @@
+package com.cosmicdan.turboshell;
+
+import com.cosmicdan.turboshell.common.model.EventRing.OverflowPolicy;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Every setting in the config file, with its default and how to parse it. Keys marked "restart required" are only read
+ * at startup; any other key takes effect as soon as the file is saved.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public enum ConfigKey {
+	TURBOBAR_HEIGHT("turboBarHeight", "25", ConfigKey::parsePositiveInt),
+	/** How many recent foreground windows to remember, e.g. for activating the last maximized window */
+	WINDOW_HISTORY_DEPTH("windowHistoryDepth", "10", ConfigKey::parsePositiveInt),
+	/** Maximum number of window events waiting to be dispatched (restart required) */
+	WIN_EVENT_QUEUE_CAPACITY("winEventQueueCapacity", "4096", ConfigKey::parsePositiveInt),
+	/** What to do when the window event queue is full (restart required) */
+	WIN_EVENT_QUEUE_OVERFLOW_POLICY("winEventQueueOverflowPolicy", "COALESCE",
+			(String value) -> OverflowPolicy.valueOf(value.toUpperCase(Locale.ROOT))),
+	/** Date/time display format, as a DateTimeFormatter pattern. Including time fields makes it update every minute */
+	DATE_TIME_FORMAT("dateTimeFormat", "yyyy-MM-dd", ConfigKey::parseDateTimeFormat),
+	TEXT_COLOR_MAIN("textColorMain", "bbb", ConfigKey::parseColor),
+	TURBOBAR_CLOSE_BG_PRIMARY("turboBarCloseBgPrimary", "a03048", ConfigKey::parseColor),
+	TURBOBAR_CLOSE_BG_SECONDARY("turboBarCloseBgSecondary", "e81123", ConfigKey::parseColor),
+	TURBOBAR_SEPARATOR_MARGIN_X("turboBarSeparatorMarginX", "5.0", Double::valueOf),
+	TURBOBAR_SEPARATOR_MARGIN_Y("turboBarSeparatorMarginY", "5.0", Double::valueOf),
+	TURBOBAR_SEPARATOR_COLOR("turboBarSeparatorColor", "ffffff", ConfigKey::parseColor),
+	TURBOBAR_SEPARATOR_OPACITY("turboBarSeparatorOpacity", "0.2", Double::valueOf),
+	/** Window classes that count as "the desktop", so a fullscreen app check ignores them. Comma-separated. */
+	FULLSCREEN_HIDE_EXCLUDE_CLASSES("fullscreenHideExcludeClasses", "WorkerW,Progman", ConfigKey::parseStringSet);
+
+	private static final Pattern COLOR_HEX = Pattern.compile("[0-9a-fA-F]{3}|[0-9a-fA-F]{6}|[0-9a-fA-F]{8}");
+	private static final Pattern LIST_SEPARATOR = Pattern.compile("\\s*,\\s*");
+
+	private final String mPropertyName;
+	private final String mDefaultValue;
+	private final Function<String, Object> mParser;
+
+	ConfigKey(final String propertyName, final String defaultValue, final Function<String, Object> parser) {
+		mPropertyName = propertyName;
+		mDefaultValue = defaultValue;
+		mParser = parser;
+	}
+
+	/**
+	 * @return The name of this key in the config file
+	 */
+	public String getPropertyName() {
+		return mPropertyName;
+	}
+
+	Object parseDefault() {
+		return mParser.apply(mDefaultValue);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the value isn't valid for this key
+	 */
+	Object parse(final String value) {
+		return mParser.apply(value.trim());
+	}
+
+	private static Object parseDateTimeFormat(final String value) {
+		// a pattern can be valid but still need fields a LocalDateTime doesn't have (e.g. a zone), so format one to be sure
+		try {
+			DateTimeFormatter.ofPattern(value).format(LocalDateTime.of(2000, 1, 1, 0, 0, 0));
+		} catch (final DateTimeException e) {
+			throw new IllegalArgumentException("Can't format a local date/time with: " + value, e);
+		}
+		return value;
+	}
+
+	private static Object parsePositiveInt(final String value) {
+		final int result = Integer.parseInt(value);
+		if (0 >= result)
+			throw new IllegalArgumentException("Must be greater than zero: " + value);
+		return result;
+	}
+
+	/**
+	 * Colors are hex RGB, without the leading '#' - e.g. "bbb" or "e81123"
+	 */
+	private static Object parseColor(final String value) {
+		final String hex = value.startsWith("#") ? value.substring(1) : value;
+		if (!COLOR_HEX.matcher(hex).matches())
+			throw new IllegalArgumentException("Not a hex color: " + value);
+		return hex;
+	}
+
+	private static Object parseStringSet(final String value) {
+		final Set<String> result = new LinkedHashSet<>(Arrays.asList(LIST_SEPARATOR.split(value)));
+		result.remove("");
+		return Collections.unmodifiableSet(result);
+	}
+}
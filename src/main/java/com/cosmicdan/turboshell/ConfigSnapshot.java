@@ -0,0 +1,130 @@
+package com.cosmicdan.turboshell;
+
+import com.cosmicdan.turboshell.common.model.EventRing.OverflowPolicy;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * An immutable set of values for every {@link ConfigKey}. A new snapshot is made whenever the config file changes and
+ * is published by {@link TurboShellConfig}, so a reader can hold onto one and always see consistent values.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class ConfigSnapshot {
+	private static final ConfigKey[] KEYS = ConfigKey.values();
+
+	// indexed by ConfigKey ordinal
+	private final Object[] mValues;
+
+	private ConfigSnapshot(final Object[] values) {
+		mValues = values;
+	}
+
+	/**
+	 * @return A snapshot of every key's default
+	 */
+	static ConfigSnapshot defaults() {
+		final Object[] values = new Object[KEYS.length];
+		for (final ConfigKey key : KEYS) {
+			values[key.ordinal()] = key.parseDefault();
+		}
+		return new ConfigSnapshot(values);
+	}
+
+	/**
+	 * Parse the given properties. Any key that is missing or invalid gets its default, so a typo never stops the shell
+	 * from starting (or reloading).
+	 */
+	static ConfigSnapshot from(final Properties properties) {
+		final Object[] values = new Object[KEYS.length];
+		for (final ConfigKey key : KEYS) {
+			final String value = properties.getProperty(key.getPropertyName());
+			Object parsed = null;
+			if (null != value) {
+				try {
+					parsed = key.parse(value);
+				} catch (final IllegalArgumentException e) {
+					log.warn("Invalid value for {} ({}), using the default instead: {}", key.getPropertyName(), value, e.getMessage());
+				}
+			}
+			values[key.ordinal()] = (null == parsed) ? key.parseDefault() : parsed;
+		}
+		return new ConfigSnapshot(values);
+	}
+
+	/**
+	 * @return The keys whose values differ between this snapshot and the given one
+	 */
+	public EnumSet<ConfigKey> diff(final ConfigSnapshot other) {
+		final EnumSet<ConfigKey> changed = EnumSet.noneOf(ConfigKey.class);
+		for (final ConfigKey key : KEYS) {
+			if (!Objects.equals(mValues[key.ordinal()], other.mValues[key.ordinal()]))
+				changed.add(key);
+		}
+		return changed;
+	}
+
+	private Object get(final ConfigKey key) {
+		return mValues[key.ordinal()];
+	}
+
+	public int getTurboBarHeight() {
+		return (Integer) get(ConfigKey.TURBOBAR_HEIGHT);
+	}
+
+	public int getWindowHistoryDepth() {
+		return (Integer) get(ConfigKey.WINDOW_HISTORY_DEPTH);
+	}
+
+	public int getWinEventQueueCapacity() {
+		return (Integer) get(ConfigKey.WIN_EVENT_QUEUE_CAPACITY);
+	}
+
+	public OverflowPolicy getWinEventQueueOverflowPolicy() {
+		return (OverflowPolicy) get(ConfigKey.WIN_EVENT_QUEUE_OVERFLOW_POLICY);
+	}
+
+	public String getDateTimeFormat() {
+		return (String) get(ConfigKey.DATE_TIME_FORMAT);
+	}
+
+	public String getTextColorMain() {
+		return (String) get(ConfigKey.TEXT_COLOR_MAIN);
+	}
+
+	public String getTurboBarCloseBgPrimary() {
+		return (String) get(ConfigKey.TURBOBAR_CLOSE_BG_PRIMARY);
+	}
+
+	public String getTurboBarCloseBgSecondary() {
+		return (String) get(ConfigKey.TURBOBAR_CLOSE_BG_SECONDARY);
+	}
+
+	public double getTurboBarSeparatorMarginX() {
+		return (Double) get(ConfigKey.TURBOBAR_SEPARATOR_MARGIN_X);
+	}
+
+	public double getTurboBarSeparatorMarginY() {
+		return (Double) get(ConfigKey.TURBOBAR_SEPARATOR_MARGIN_Y);
+	}
+
+	public String getTurboBarSeparatorColor() {
+		return (String) get(ConfigKey.TURBOBAR_SEPARATOR_COLOR);
+	}
+
+	public double getTurboBarSeparatorOpacity() {
+		return (Double) get(ConfigKey.TURBOBAR_SEPARATOR_OPACITY);
+	}
+
+	/**
+	 * @return An unmodifiable set of window class names
+	 */
+	@SuppressWarnings("unchecked")
+	public Set<String> getFullscreenHideExcludeClasses() {
+		return (Set<String>) get(ConfigKey.FULLSCREEN_HIDE_EXCLUDE_CLASSES);
+	}
+}
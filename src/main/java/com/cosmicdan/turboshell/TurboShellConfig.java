@@ -1,55 +1,125 @@
-package com.cosmicdan.turboshell;
-
-import javafx.geometry.Insets;
-import javafx.scene.layout.*;
-import javafx.scene.paint.Color;
-import lombok.Getter;
-import lombok.experimental.UtilityClass;
-
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-
-/**
- * Configuration storage
- * @author Daniel 'CosmicDan' Connolly
- */
-@UtilityClass
-public final class TurboShellConfig {
-	@Getter
-	static final int mTurboBarHeight = 25;
-
-	//////////////////////////////////////////////////////////////
-	// Theme
-	//////////////////////////////////////////////////////////////
-
-	// General
-	@Getter
-	static final String mTextColorMain = "bbb";
-
-	// SysBtns
-	@Getter
-	static final String mTurboBarCloseBgPrimary = "a03048";
-	@Getter
-	static final String mTurboBarCloseBgSecondary = "e81123";
-
-	// Seperators
-	private static final double mTurboBarVerticalSeparatorMarginX = 5.0;
-	private static final double mTurboBarVerticalSeparatorMarginY = 5.0;
-	private static final String mTurboBarVerticalSeparatorColor = "ffffff";
-	private static final double mTurboBarVerticalSeparatorOpacity = 0.2;
-
-	@Getter
-	static final Set<String> mFullscreenHideExcludeClasses = new HashSet<>(
-			Arrays.asList("WorkerW", "Progman")
-	);
-
-	public static void styleTurboBarSeparator(final Region separator) {
-		HBox.setMargin(separator, new Insets(
-				mTurboBarVerticalSeparatorMarginY, mTurboBarVerticalSeparatorMarginX,
-				mTurboBarVerticalSeparatorMarginY, mTurboBarVerticalSeparatorMarginX));
-		separator.setBackground(new Background(new BackgroundFill(
-				Color.web(mTurboBarVerticalSeparatorColor), CornerRadii.EMPTY, Insets.EMPTY)));
-		separator.setOpacity(mTurboBarVerticalSeparatorOpacity);
-	}
-}
+package com.cosmicdan.turboshell;
+
+import com.cosmicdan.turboshell.common.model.EventRing.OverflowPolicy;
+import lombok.experimental.UtilityClass;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Configuration storage. Settings are read from a properties file (see {@link ConfigKey} for the keys) into an immutable
+ * {@link ConfigSnapshot}, published through a volatile reference - so any thread can read the current config without
+ * locking, and never sees a half-applied reload. The file is watched by the ConfigAgent, which reloads it on change.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@UtilityClass
+@Log4j2(topic = "TurboShellConfig")
+public final class TurboShellConfig {
+	/** System property - the path of the config file. Defaults to {@value #DEFAULT_CONFIG_FILE} in the working directory. */
+	public static final String CONFIG_PATH_PROPERTY = "turboshell.config";
+	private static final String DEFAULT_CONFIG_FILE = "turboshell.properties";
+	/** System property - if true, run in lean mode (see {@link #isLeanMode()}). Only read at startup. */
+	public static final String LEAN_MODE_PROPERTY = "turboshell.lean";
+	private static final boolean LEAN_MODE = Boolean.getBoolean(LEAN_MODE_PROPERTY);
+
+	private static volatile ConfigSnapshot mCurrent = ConfigSnapshot.defaults();
+
+	/**
+	 * @return The config file, whether it exists or not
+	 */
+	public static Path getConfigPath() {
+		return Paths.get(System.getProperty(CONFIG_PATH_PROPERTY, DEFAULT_CONFIG_FILE)).toAbsolutePath();
+	}
+
+	/**
+	 * Lean mode trades a little latency for a smaller memory footprint - caches are smaller, and features most sessions
+	 * never use (e.g. the TurboMenu window index) are only set up on first use.
+	 */
+	public static boolean isLeanMode() {
+		return LEAN_MODE;
+	}
+
+	/**
+	 * @return The current config. Hold onto it to read several values that must be consistent with each other.
+	 */
+	public static ConfigSnapshot getSnapshot() {
+		return mCurrent;
+	}
+
+	/**
+	 * (Re)load the config file and publish it as the current config. If the file doesn't exist, the defaults are used;
+	 * if it can't be read, the current config is kept.
+	 * @return The keys that changed
+	 */
+	public static synchronized EnumSet<ConfigKey> reload() {
+		final Path configPath = getConfigPath();
+		final Properties properties = new Properties();
+		try (final Reader reader = Files.newBufferedReader(configPath, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (final NoSuchFileException ignored) {
+			log.info("No config file at {}, using defaults", configPath);
+		} catch (final IOException e) {
+			log.error("Could not read config file " + configPath + ", keeping the current config", e);
+			return EnumSet.noneOf(ConfigKey.class);
+		}
+		final ConfigSnapshot snapshot = ConfigSnapshot.from(properties);
+		final EnumSet<ConfigKey> changed = mCurrent.diff(snapshot);
+		mCurrent = snapshot;
+		if (!changed.isEmpty())
+			log.info("Loaded {}, changed: {}", configPath, changed);
+		return changed;
+	}
+
+	//////////////////////////////////////////////////////////////
+	// Shortcuts for reading single values from the current config
+	//////////////////////////////////////////////////////////////
+
+	public static int getTurboBarHeight() {
+		return mCurrent.getTurboBarHeight();
+	}
+
+	public static int getWindowHistoryDepth() {
+		return mCurrent.getWindowHistoryDepth();
+	}
+
+	public static int getWinEventQueueCapacity() {
+		return mCurrent.getWinEventQueueCapacity();
+	}
+
+	public static OverflowPolicy getWinEventQueueOverflowPolicy() {
+		return mCurrent.getWinEventQueueOverflowPolicy();
+	}
+
+	public static String getDateTimeFormat() {
+		return mCurrent.getDateTimeFormat();
+	}
+
+	//////////////////////////////////////////////////////////////
+	// Theme
+	//////////////////////////////////////////////////////////////
+
+	public static String getTextColorMain() {
+		return mCurrent.getTextColorMain();
+	}
+
+	public static String getTurboBarCloseBgPrimary() {
+		return mCurrent.getTurboBarCloseBgPrimary();
+	}
+
+	public static String getTurboBarCloseBgSecondary() {
+		return mCurrent.getTurboBarCloseBgSecondary();
+	}
+
+	public static Set<String> getFullscreenHideExcludeClasses() {
+		return mCurrent.getFullscreenHideExcludeClasses();
+	}
+}
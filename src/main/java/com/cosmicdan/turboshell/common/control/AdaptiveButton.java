@@ -1,57 +1,110 @@
-package com.cosmicdan.turboshell.common.control;
-import javafx.scene.control.Button;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import lombok.extern.log4j.Log4j2;
-
-import java.io.File;
-import java.net.URL;
-
-/**
- * A button with graphic and dynamic text
- * @author Daniel 'CosmicDan' Connolly
- */
-
-@Log4j2
-public class AdaptiveButton extends Button {
-	protected enum AddTextPadding {LEFT, RIGHT, BOTH}
-	private final ImageView[] mImageViews;
-
-	public AdaptiveButton(final Class<?> mSourceClass, final String text, final String[] imageResourcePaths) {
-		super(text);
-		mImageViews = new ImageView[imageResourcePaths.length];
-		if (0 < mImageViews.length) {
-			for (int i = 0; i < mImageViews.length; i++) {
-				final URL imageUrl = mSourceClass.getResource(imageResourcePaths[i]);
-				if (null == imageUrl) {
-					throw new RuntimeException("Resource not found: " + mSourceClass.getPackage() + File.separator + imageResourcePaths[i]);
-				}
-				final ImageView newImage = new ImageView(new Image(imageUrl.toExternalForm()));
-				mImageViews[i] = newImage;
-			}
-			setGraphic(mImageViews[0]);
-		}
-		if (!text.isEmpty())
-			setText(text, AddTextPadding.LEFT);
-	}
-
-	private void setText(final String text, final AddTextPadding padding) {
-		// dodgy way of adding space between icon and label
-		String newText = text;
-		if ((AddTextPadding.LEFT == padding) || (AddTextPadding.BOTH == padding))
-			newText = "  " + newText;
-		if ((AddTextPadding.RIGHT == padding) || (AddTextPadding.BOTH == padding))
-			newText += "  ";
-		setText(newText);
-	}
-
-	public final void setImageViewIndex(final int index) {
-		setGraphic(mImageViews[index]);
-	}
-
-	/*
-	public final void setClickAction(final Runnable runnable) {
-		addEventFilter(MouseEvent.MOUSE_CLICKED, (MouseEvent event) -> runnable.run());
-	}
-	*/
-}
+package com.cosmicdan.turboshell.common.control;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * A button with graphic and dynamic text
+ * @author Daniel 'CosmicDan' Connolly
+ */
+
+@Log4j2
+public class AdaptiveButton extends Button {
+	protected enum AddTextPadding {LEFT, RIGHT, BOTH}
+	private final ImageView[] mImageViews;
+	// only created if asked for, see getUnderlay
+	private Rectangle mUnderlay = null;
+	private Pane mGraphicHolder = null;
+
+	public AdaptiveButton(final Class<?> mSourceClass, final String text, final String[] imageResourcePaths) {
+		super(text);
+		mImageViews = new ImageView[imageResourcePaths.length];
+		for (int i = 0; i < mImageViews.length; i++) {
+			mImageViews[i] = new ImageView(ImageCache.INSTANCE.get(mSourceClass, imageResourcePaths[i]));
+		}
+		init(text);
+	}
+
+	/**
+	 * @param atlas The atlas holding the icons for each state
+	 * @param cells The atlas cell of each state's icon
+	 * @param scale The scale of the monitor the button will be shown on, e.g. 1.5 for 144 DPI
+	 */
+	public AdaptiveButton(final ImageAtlas atlas, final int[] cells, final double scale, final String text) {
+		super(text);
+		mImageViews = new ImageView[cells.length];
+		for (int i = 0; i < mImageViews.length; i++) {
+			mImageViews[i] = atlas.newImageView(cells[i], scale);
+		}
+		init(text);
+	}
+
+	private void init(final String text) {
+		if (0 < mImageViews.length)
+			setGraphic(mImageViews[0]);
+		if (!text.isEmpty())
+			setText(text, AddTextPadding.LEFT);
+	}
+
+	private void setText(final String text, final AddTextPadding padding) {
+		// dodgy way of adding space between icon and label
+		String newText = text;
+		if ((AddTextPadding.LEFT == padding) || (AddTextPadding.BOTH == padding))
+			newText = "  " + newText;
+		if ((AddTextPadding.RIGHT == padding) || (AddTextPadding.BOTH == padding))
+			newText += "  ";
+		setText(newText);
+	}
+
+	public final void setImageViewIndex(final int index) {
+		if (null == mGraphicHolder)
+			setGraphic(mImageViews[index]);
+		else if (1 == mGraphicHolder.getChildren().size())
+			// the underlay was asked for before there was any graphic
+			mGraphicHolder.getChildren().add(mImageViews[index]);
+		else
+			mGraphicHolder.getChildren().set(1, mImageViews[index]);
+	}
+
+	/**
+	 * A rectangle drawn behind the graphic that always spans the full height of the button, e.g. for a progress
+	 * indicator. Its width and fill are up to the caller. Changing them is just a property update - there is no CSS
+	 * involved, unlike changing the button's style.
+	 * @return The underlay, created on first call
+	 */
+	public final Rectangle getUnderlay() {
+		if (null == mUnderlay) {
+			mUnderlay = new Rectangle(0.0, 0.0, Color.TRANSPARENT);
+			// not part of the graphic's size, it's positioned against the button in layoutChildren instead
+			mUnderlay.setManaged(false);
+			mUnderlay.setMouseTransparent(true);
+			// keep whichever graphic is showing, on top of the underlay
+			final Node graphic = getGraphic();
+			mGraphicHolder = (null == graphic) ? new Pane(mUnderlay) : new Pane(mUnderlay, graphic);
+			setGraphic(mGraphicHolder);
+			requestLayout();
+		}
+		return mUnderlay;
+	}
+
+	@Override
+	protected void layoutChildren() {
+		super.layoutChildren();
+		if (null != mUnderlay) {
+			// the graphic holder is a direct child of the button, so this puts the underlay at the button's origin
+			mUnderlay.setLayoutX(-mGraphicHolder.getLayoutX());
+			mUnderlay.setLayoutY(-mGraphicHolder.getLayoutY());
+			mUnderlay.setHeight(getHeight());
+		}
+	}
+
+	/*
+	public final void setClickAction(final Runnable runnable) {
+		addEventFilter(MouseEvent.MOUSE_CLICKED, (MouseEvent event) -> runnable.run());
+	}
+	*/
+}
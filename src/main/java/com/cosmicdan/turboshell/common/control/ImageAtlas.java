@@ -0,0 +1,58 @@
+package com.cosmicdan.turboshell.common.control;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+/**
+ * A single image holding a horizontal strip of equally-sized icons (cells), so a whole set of icons is decoded once and
+ * shared. Each icon is shown by an ImageView with a viewport onto its cell.
+ * <p>
+ * There is only a single (1x) atlas image. It's upscaled while decoding to the scale of the monitor it's shown on (see
+ * {@link ImageCache}), then drawn at its natural size - so on a high-DPI monitor the icons are no sharper than the
+ * source, but they're resampled once when decoded rather than on every draw. Scales are rounded so that every cell is a
+ * whole number of pixels wide, otherwise neighbouring icons would bleed into each other.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class ImageAtlas {
+	private final Class<?> mSourceClass;
+	private final String mResourcePath;
+	private final int mCellWidth;
+	private final int mCellHeight;
+
+	/**
+	 * @param sourceClass The class to resolve the resource path against
+	 * @param resourcePath The atlas image
+	 * @param cellWidth The width of a single icon, at natural size
+	 * @param cellHeight The height of the icons, at natural size
+	 */
+	public ImageAtlas(final Class<?> sourceClass, final String resourcePath, final int cellWidth, final int cellHeight) {
+		mSourceClass = sourceClass;
+		mResourcePath = resourcePath;
+		mCellWidth = cellWidth;
+		mCellHeight = cellHeight;
+	}
+
+	/**
+	 * @return A new view of the given icon, decoded for the given monitor scale but sized as the natural icon
+	 */
+	public ImageView newImageView(final int cell, final double scale) {
+		final double pixelScale = getPixelScale(scale);
+		final Image atlas = ImageCache.INSTANCE.get(mSourceClass, mResourcePath, pixelScale);
+		final ImageView imageView = new ImageView(atlas);
+		final double cellPixels = mCellWidth * pixelScale;
+		imageView.setViewport(new Rectangle2D(cell * cellPixels, 0.0, cellPixels, mCellHeight * pixelScale));
+		imageView.setFitWidth(mCellWidth);
+		imageView.setFitHeight(mCellHeight);
+		imageView.setSmooth(true);
+		return imageView;
+	}
+
+	/**
+	 * @return The nearest scale to the given one at which a cell is a whole number of pixels wide, and never below 1
+	 */
+	private double getPixelScale(final double scale) {
+		final long cellPixels = Math.max(mCellWidth, Math.round(mCellWidth * scale));
+		return (double) cellPixels / mCellWidth;
+	}
+}
@@ -0,0 +1,137 @@
+package com.cosmicdan.turboshell.common.control;
+
+import com.cosmicdan.turboshell.TurboShellConfig;
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import javafx.scene.image.Image;
+import lombok.extern.log4j.Log4j2;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of decoded images, keyed by resource and scale. Decoding a PNG is by far the most expensive part of
+ * building a button, and every redraw and every extra TurboBar would otherwise do it again for the same pixels.
+ * <p>
+ * The cache is bounded, evicting the least recently used image. JavaFX Images are immutable once loaded, so a cached
+ * one can safely be shown by any number of ImageViews at once.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class ImageCache {
+	public static final ImageCache INSTANCE = new ImageCache();
+
+	/** Enough for every icon at a few different monitor scales, or at a single scale in lean mode */
+	private static final int MAX_ENTRIES = TurboShellConfig.isLeanMode() ? 16 : 64;
+
+	private final LongAdder mHits = MetricsRegistry.INSTANCE.counter("imageCache.hits");
+	private final LongAdder mMisses = MetricsRegistry.INSTANCE.counter("imageCache.misses");
+
+	// guarded by itself
+	private final Map<Key, Image> mImages = new LinkedHashMap<Key, Image>(MAX_ENTRIES * 2, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, Image> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private ImageCache() {
+		MetricsRegistry.INSTANCE.gauge("imageCache.size", this::size);
+	}
+
+	/**
+	 * A resource path (relative to the class it's resolved against) and scale, so a hit never has to resolve the resource.
+	 */
+	private static final class Key {
+		private final Class<?> mSourceClass;
+		private final String mResourcePath;
+		private final double mScale;
+		private final int mHash;
+
+		private Key(final Class<?> sourceClass, final String resourcePath, final double scale) {
+			mSourceClass = sourceClass;
+			mResourcePath = resourcePath;
+			mScale = scale;
+			mHash = (((31 * sourceClass.hashCode()) + resourcePath.hashCode()) * 31) + Double.hashCode(scale);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return (mSourceClass == other.mSourceClass) && mResourcePath.equals(other.mResourcePath) &&
+					(0 == Double.compare(mScale, other.mScale));
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+	}
+
+	/**
+	 * Get the given classpath image at its natural size, decoding it only if it isn't cached yet
+	 * @param sourceClass The class to resolve the resource path against
+	 */
+	public Image get(final Class<?> sourceClass, final String resourcePath) {
+		return get(sourceClass, resourcePath, 1.0);
+	}
+
+	/**
+	 * Get the given classpath image decoded at the given scale (e.g. 1.5 for a 144 DPI monitor), decoding it only if it
+	 * isn't cached yet. Scaling happens while decoding, so it's as smooth as the source allows and costs nothing to draw.
+	 * @param sourceClass The class to resolve the resource path against
+	 * @param scale Multiplier of the image's natural size
+	 */
+	public Image get(final Class<?> sourceClass, final String resourcePath, final double scale) {
+		final Key key = new Key(sourceClass, resourcePath, scale);
+		Image image;
+		synchronized (mImages) {
+			image = mImages.get(key);
+		}
+		if (null != image) {
+			mHits.increment();
+			return image;
+		}
+		// decode outside the lock; in the rare case of two threads racing for the same image, the last one wins
+		mMisses.increment();
+		final URL imageUrl = sourceClass.getResource(resourcePath);
+		if (null == imageUrl)
+			throw new RuntimeException("Resource not found: " + sourceClass.getPackage() + '/' + resourcePath);
+		final String url = imageUrl.toExternalForm();
+		if (1.0 == scale) {
+			image = new Image(url);
+		} else {
+			// need the natural size to know what to scale to
+			final Image natural = get(sourceClass, resourcePath, 1.0);
+			image = new Image(url, Math.round(natural.getWidth() * scale), Math.round(natural.getHeight() * scale), false, true);
+		}
+		if (image.isError()) {
+			log.error("Could not decode image " + url, image.getException());
+			return image;
+		}
+		synchronized (mImages) {
+			mImages.put(key, image);
+		}
+		return image;
+	}
+
+	public long size() {
+		synchronized (mImages) {
+			return mImages.size();
+		}
+	}
+
+	/**
+	 * Drop all cached images, e.g. after the theme has changed
+	 */
+	public void clear() {
+		synchronized (mImages) {
+			mImages.clear();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.cosmicdan.turboshell.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-size latency histogram in the style of HdrHistogram. Values are bucketed by their highest set bit,
+ * with each power of two split into {@link #SUB_BUCKETS} linear sub-buckets, so any recorded value is reported to
+ * within about 12% no matter its magnitude. Recording is a few bit operations and atomic increments, and never
+ * allocates.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder mCount = new LongAdder();
+	private final LongAdder mSum = new LongAdder();
+	private final LongAccumulator mMax = new LongAccumulator(Math::max, 0L);
+
+	LatencyHistogram() {}
+
+	/**
+	 * Record a single value, e.g. a duration in nanoseconds. Negative values are recorded as zero.
+	 */
+	public void record(final long value) {
+		final long clamped = Math.max(0L, value);
+		mBuckets.incrementAndGet(bucketIndex(clamped));
+		mCount.increment();
+		mSum.add(clamped);
+		mMax.accumulate(clamped);
+	}
+
+	/**
+	 * Convenience for recording the time elapsed since the given System#nanoTime value.
+	 */
+	public void recordSince(final long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		return mCount.sum();
+	}
+
+	public long getMax() {
+		return mMax.get();
+	}
+
+	public double getMean() {
+		final long count = mCount.sum();
+		return (0L == count) ? 0.0 : (double) mSum.sum() / count;
+	}
+
+	/**
+	 * @param percentile The percentile to find, from 0.0 to 100.0
+	 * @return An upper bound for the value at the given percentile, or 0 if nothing has been recorded
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		long total = 0L;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total += mBuckets.get(i);
+		}
+		if (0L == total)
+			return 0L;
+		final long target = Math.max(1L, (long) Math.ceil((percentile / 100.0) * total));
+		long seen = 0L;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += mBuckets.get(i);
+			if (seen >= target)
+				return Math.min(bucketUpperBound(i), getMax());
+		}
+		return getMax();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.0f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+				getCount(), getMean(), getValueAtPercentile(50.0), getValueAtPercentile(90.0),
+				getValueAtPercentile(99.0), getValueAtPercentile(99.9), getMax());
+	}
+
+	/**
+	 * Values below SUB_BUCKETS each get their own bucket; above that, the magnitude picks the bucket group and the next
+	 * SUB_BUCKET_BITS bits below the highest set bit pick the sub-bucket.
+	 */
+	private static int bucketIndex(final long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		final int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ((magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS) + subBucket;
+	}
+
+	private static long bucketUpperBound(final int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		final int magnitude = (index / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+		final long subBucket = index & (SUB_BUCKETS - 1);
+		final long lowerBound = (1L << magnitude) | (subBucket << (magnitude - SUB_BUCKET_BITS));
+		return lowerBound + (1L << (magnitude - SUB_BUCKET_BITS)) - 1L;
+	}
+}
@@ -0,0 +1,135 @@
+package com.cosmicdan.turboshell.common.metrics;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of hot-path metrics - counters, gauges and latency histograms, all lock-free. Metrics are looked
+ * up (or created) by name once, typically into a field, and then updated directly; the registry itself is only
+ * involved again when reporting.
+ * <p>
+ * A report can be fetched in-process with {@link #report()} or written to a file with {@link #dumpTo(Path)}. If the
+ * {@value #DUMP_PATH_PROPERTY} system property is set, {@link #installDumpHook()} also writes a report there on
+ * shutdown, and every {@value #DUMP_INTERVAL_PROPERTY} seconds if that is set too.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class MetricsRegistry {
+	public static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+	public static final String DUMP_PATH_PROPERTY = "turboshell.metrics.dump";
+	public static final String DUMP_INTERVAL_PROPERTY = "turboshell.metrics.dumpInterval";
+
+	private final Map<String, LongAdder> mCounters = new ConcurrentHashMap<>(32);
+	private final Map<String, LongSupplier> mGauges = new ConcurrentHashMap<>(16);
+	private final Map<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>(16);
+
+	private MetricsRegistry() {}
+
+	/**
+	 * @return The counter with the given name, created if necessary
+	 */
+	public LongAdder counter(final String name) {
+		return mCounters.computeIfAbsent(name, (String key) -> new LongAdder());
+	}
+
+	/**
+	 * @return The latency histogram with the given name, created if necessary
+	 */
+	public LatencyHistogram histogram(final String name) {
+		return mHistograms.computeIfAbsent(name, (String key) -> new LatencyHistogram());
+	}
+
+	/**
+	 * Register a gauge, i.e. a value that is only read when reporting (e.g. a queue depth or a count kept elsewhere).
+	 * Replaces any existing gauge with the same name.
+	 */
+	public void gauge(final String name, final LongSupplier supplier) {
+		mGauges.put(name, supplier);
+	}
+
+	/**
+	 * @return The current value of the named counter or gauge, or 0 if there is none
+	 */
+	public long getValue(final String name) {
+		final LongAdder counter = mCounters.get(name);
+		if (null != counter)
+			return counter.sum();
+		final LongSupplier gauge = mGauges.get(name);
+		return (null == gauge) ? 0L : gauge.getAsLong();
+	}
+
+	/**
+	 * @return The named histogram, or null if there is none
+	 */
+	public LatencyHistogram getHistogram(final String name) {
+		return mHistograms.get(name);
+	}
+
+	/**
+	 * @return A human-readable snapshot of every metric, sorted by name
+	 */
+	public String report() {
+		final Map<String, String> lines = new TreeMap<>();
+		mCounters.forEach((String name, LongAdder counter) -> lines.put(name, Long.toString(counter.sum())));
+		mGauges.forEach((String name, LongSupplier gauge) -> lines.put(name, Long.toString(gauge.getAsLong())));
+		mHistograms.forEach((String name, LatencyHistogram histogram) -> lines.put(name, histogram.toString()));
+		final StringBuilder report = new StringBuilder(lines.size() * 64);
+		report.append("# TurboShell metrics at ").append(LocalDateTime.now()).append(System.lineSeparator());
+		lines.forEach((String name, String value) -> report.append(name).append(" = ").append(value).append(System.lineSeparator()));
+		return report.toString();
+	}
+
+	/**
+	 * Write a {@link #report()} to the given file, replacing it if it exists.
+	 */
+	public void dumpTo(final Path path) throws IOException {
+		Files.write(path, report().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Set up dumping to the file given by the {@value #DUMP_PATH_PROPERTY} system property, if any.
+	 */
+	public void installDumpHook() {
+		final String dumpPath = System.getProperty(DUMP_PATH_PROPERTY);
+		if (null == dumpPath)
+			return;
+		final Path path = Paths.get(dumpPath);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> dumpQuietly(path)));
+		final long intervalSeconds = Long.getLong(DUMP_INTERVAL_PROPERTY, 0L);
+		if (0L < intervalSeconds) {
+			final Thread dumpThread = new Thread(() -> {
+				while (!Thread.currentThread().isInterrupted()) {
+					try {
+						Thread.sleep(intervalSeconds * 1000L);
+					} catch (final InterruptedException ignored) {
+						return;
+					}
+					dumpQuietly(path);
+				}
+			}, "MetricsDump");
+			dumpThread.setDaemon(true);
+			dumpThread.start();
+		}
+		log.info("Metrics will be dumped to {}", path.toAbsolutePath());
+	}
+
+	private void dumpQuietly(final Path path) {
+		try {
+			dumpTo(path);
+		} catch (final IOException e) {
+			log.error("Could not dump metrics to " + path, e);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.cosmicdan.turboshell.common.metrics;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each phase of startup took, and when it finished relative to JVM start. Phases may run on any
+ * thread, in parallel. Once startup is {@link #finish() finished} a summary is logged, every phase is published to the
+ * {@link MetricsRegistry} as "startup.&lt;phase&gt;.millis" (duration) and "startup.&lt;phase&gt;.doneAtMillis" (since
+ * JVM start) gauges, and any further timing is a no-op - so the same code can be timed unconditionally, e.g. setting up
+ * a TurboBar for the first monitor at startup and for another one plugged in later.
+ * <p>
+ * Only System.nanoTime is read while timing; JVM start time is looked up once, when finishing.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class StartupTimeline {
+	public static final StartupTimeline INSTANCE = new StartupTimeline();
+
+	private static final class Phase {
+		private final String mName;
+		private final long mStartNanos;
+		private final long mEndNanos;
+		private final String mThreadName;
+
+		private Phase(final String name, final long startNanos, final long endNanos) {
+			mName = name;
+			mStartNanos = startNanos;
+			mEndNanos = endNanos;
+			mThreadName = Thread.currentThread().getName();
+		}
+	}
+
+	private final List<Phase> mPhases = new ArrayList<>(16);
+	private volatile boolean mFinished = false;
+
+	private StartupTimeline() {}
+
+	/**
+	 * Time the given startup phase.
+	 */
+	public void time(final String phase, final Runnable task) {
+		if (mFinished) {
+			task.run();
+			return;
+		}
+		final long startNanos = System.nanoTime();
+		task.run();
+		record(phase, startNanos);
+	}
+
+	/**
+	 * Time the given startup phase.
+	 * @return The result of the task
+	 */
+	public <T> T time(final String phase, final Supplier<T> task) {
+		if (mFinished)
+			return task.get();
+		final long startNanos = System.nanoTime();
+		final T result = task.get();
+		record(phase, startNanos);
+		return result;
+	}
+
+	/**
+	 * Record a phase that started at the given System.nanoTime and has just ended, e.g. one that started on another
+	 * thread.
+	 */
+	public synchronized void record(final String phase, final long startNanos) {
+		if (!mFinished)
+			mPhases.add(new Phase(phase, startNanos, System.nanoTime()));
+	}
+
+	/**
+	 * Startup is done (e.g. the first TurboBar has been painted). Publish and log the timeline; only the first call does
+	 * anything.
+	 */
+	public void finish() {
+		final long nowNanos = System.nanoTime();
+		final List<Phase> phases;
+		synchronized (this) {
+			if (mFinished)
+				return;
+			mFinished = true;
+			phases = new ArrayList<>(mPhases);
+		}
+		// System.nanoTime at JVM start, as near as we can tell
+		final long jvmStartNanos = nowNanos - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+		phases.sort((Phase a, Phase b) -> Long.compare(a.mEndNanos, b.mEndNanos));
+		final StringBuilder summary = new StringBuilder(64 + (phases.size() * 80));
+		summary.append("Started in ").append(toMillis(nowNanos - jvmStartNanos)).append("ms since JVM start:");
+		for (final Phase phase : phases) {
+			final long durationMillis = toMillis(phase.mEndNanos - phase.mStartNanos);
+			final long doneAtMillis = toMillis(phase.mEndNanos - jvmStartNanos);
+			MetricsRegistry.INSTANCE.gauge("startup." + phase.mName + ".millis", () -> durationMillis);
+			MetricsRegistry.INSTANCE.gauge("startup." + phase.mName + ".doneAtMillis", () -> doneAtMillis);
+			summary.append(System.lineSeparator()).append(String.format("  %-24s %6dms, done at %6dms [%s]",
+					phase.mName, durationMillis, doneAtMillis, phase.mThreadName));
+		}
+		final long totalMillis = toMillis(nowNanos - jvmStartNanos);
+		MetricsRegistry.INSTANCE.gauge("startup.totalMillis", () -> totalMillis);
+		log.info(summary);
+	}
+
+	private static long toMillis(final long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
@@ -1,104 +1,425 @@
-package com.cosmicdan.turboshell.common.model;
-
-import com.cosmicdan.turboshell.common.model.payload.IPayload;
-import lombok.extern.log4j.Log4j2;
-
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-
-/**
- * A template for "agent"-type models. These have a runtime loop in their own thread and allow other classes (e.g.
- * a Presenter, if following an MVP pattern) to register callbacks for updating data or sending requests to the AgentModel.
- * It's up to the AgentModel to react or respond to these callbacks, if necessary.
- * @author Daniel 'CosmicDan' Connolly
- */
-@Log4j2
-public abstract class AgentModel implements Runnable {
-	private final Object callbackLock = new Object();
-	private Set<CallbackReceiverEntry<IPayload>> mCallbacks = null;
-	private Thread agentThread = null;
-
-	///////////////////
-	// Thread related things
-	///////////////////
-
-	/**
-	 * Start this agent if required. If it is already running, nothing will happen.
-	 */
-	public final void start() {
-		if (null == agentThread) {
-			agentThread = new Thread(this);
-			agentThread.start();
-		}
-	}
-
-	@Override
-	public final void run() {
-		Runtime.getRuntime().addShutdownHook(new Thread(this::serviceStop));
-		serviceStart();
-	}
-
-	/**
-	 * Called when a start is requested. Do your typical Thread#run() stuff here.
-	 */
-	protected abstract void serviceStart();
-
-	/**
-	 * Called when a shutdown is request. Do environment cleanup here.
-	 */
-	protected abstract void serviceStop();
-
-
-	///////////////////
-	// Callback related things
-	///////////////////
-
-	@FunctionalInterface
-	public interface PayloadCallback<T extends IPayload> {
-		void run(T payload);
-	}
-
-	private static final class CallbackReceiverEntry<T extends IPayload> {
-		private final Class<? extends IPayload> mPayloadClass;
-		private final PayloadCallback<T> mCallback;
-
-		private CallbackReceiverEntry(final Class<T> payloadClass, final PayloadCallback<T> callback) {
-			mPayloadClass = payloadClass;
-			mCallback = callback;
-		}
-
-		void run(final T mPayload) {
-			mCallback.run(mPayload);
-		}
-	}
-
-	public final void registerCallback(final Class<? extends IPayload> payloadClass, final PayloadCallback<? extends IPayload> callback) {
-		if (null == callback)
-			return;
-
-		synchronized(callbackLock) {
-			if (null == mCallbacks)
-				mCallbacks = new HashSet<>(1);
-			//noinspection unchecked
-			mCallbacks.add(new CallbackReceiverEntry(payloadClass, callback));
-		}
-	}
-
-	protected final void runCallbacks(final IPayload payload) {
-		final Collection<CallbackReceiverEntry<IPayload>> callbacksCopy;
-		// first we copy the relevent payload to a new hashmap since we don't want to run each callback with a thread lock held
-		synchronized(callbackLock) {
-			callbacksCopy = new HashSet<>(mCallbacks.size());
-			for (final CallbackReceiverEntry<IPayload> callback : mCallbacks) {
-				if (payload.isTypeOf(callback.mPayloadClass)) {
-					callbacksCopy.add(callback);
-				}
-			}
-		}
-
-		for (final CallbackReceiverEntry<IPayload> callback : callbacksCopy) {
-			callback.run(payload);
-		}
-	}
-}
+package com.cosmicdan.turboshell.common.model;
+
+import com.cosmicdan.turboshell.common.metrics.LatencyHistogram;
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import com.cosmicdan.turboshell.common.model.payload.IPayload;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A template for "agent"-type models. These have a runtime loop (run by the {@link AgentRuntime}) and allow other
+ * classes (e.g. a Presenter, if following an MVP pattern) to register callbacks for updating data or sending requests to
+ * the AgentModel. It's up to the AgentModel to react or respond to these callbacks, if necessary.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public abstract class AgentModel {
+	public enum State {STOPPED, STARTING, RUNNING, STOPPING}
+
+	// payload class -> callbacks registered for exactly that class
+	private final ConcurrentHashMap<Class<? extends IPayload>, CallbackTable> mCallbacks = new ConcurrentHashMap<>(4);
+	private final AtomicReference<State> mState = new AtomicReference<>(State.STOPPED);
+	private volatile Future<?> mService = null;
+
+	// optional async event pipeline, see startEventPipeline
+	private EventRing mEventRing = null;
+	private volatile Thread mDispatcherThread = null;
+	private volatile boolean mDispatcherRunning = false;
+	private volatile boolean mDispatcherBusy = false;
+	private volatile long mDispatchTickDeadline = 0L;
+	private final ConcurrentLinkedQueue<Runnable> mDispatcherTasks = new ConcurrentLinkedQueue<>();
+
+	///////////////////
+	// Thread related things
+	///////////////////
+
+	/**
+	 * Start this agent if required. If it is already running, nothing will happen.
+	 */
+	public final void start() {
+		AgentRuntime.INSTANCE.start(this);
+	}
+
+	/**
+	 * Stop this agent and wait (briefly) for it to finish. It can be started again later.
+	 */
+	public final void stop() {
+		AgentRuntime.INSTANCE.stop(this);
+	}
+
+	/**
+	 * Stop this agent then start it again, keeping its callbacks and any events still queued.
+	 */
+	public final void restart() {
+		AgentRuntime.INSTANCE.restart(this);
+	}
+
+	/**
+	 * Restart this agent soon, e.g. from {@link #serviceStart()} when its event loop has failed. Unlike
+	 * {@link #restart()}, safe to call from the agent's own thread.
+	 */
+	protected final void requestRestart() {
+		AgentRuntime.INSTANCE.requestRestart(this);
+	}
+
+	public final State getState() {
+		return mState.get();
+	}
+
+	final boolean compareAndSetState(final State expected, final State state) {
+		return mState.compareAndSet(expected, state);
+	}
+
+	final Future<?> getService() {
+		return mService;
+	}
+
+	final void setService(final Future<?> service) {
+		mService = service;
+	}
+
+	/**
+	 * @return The name for this agent's threads and metrics
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * @return The priority for this agent's threads
+	 */
+	protected AgentRuntime.Priority getPriority() {
+		return AgentRuntime.Priority.NORMAL;
+	}
+
+	/**
+	 * Called on a runtime thread when a start is requested. Do your typical Thread#run() stuff here. May be called again
+	 * after {@link #serviceStop()} if the agent is restarted, so anything set up once (e.g. callbacks registered on
+	 * other agents) belongs in the constructor instead.
+	 */
+	protected abstract void serviceStart();
+
+	/**
+	 * Called when a stop is requested, from any thread. Do environment cleanup here, and make a blocking
+	 * {@link #serviceStart()} return.
+	 */
+	protected abstract void serviceStop();
+
+
+	///////////////////
+	// Event pipeline related things
+	///////////////////
+
+	/**
+	 * Start an asynchronous event pipeline for this agent. Events published with {@link #publishEvent(int, long, long)}
+	 * (e.g. from a hook callback) are only enqueued as a compact record, and are handled by
+	 * {@link #dispatchEvent(int, long, long)} on a separate dispatcher thread (from the {@link AgentRuntime}). The
+	 * pipeline outlives a restart of the agent, and is only stopped when the runtime shuts down. This way a slow consumer (e.g. a presenter
+	 * callback) never delays the publishing thread.
+	 * @param capacity The maximum number of pending events
+	 * @param overflowPolicy What to do when an event is published while the pipeline is full
+	 */
+	protected final void startEventPipeline(final int capacity, final EventRing.OverflowPolicy overflowPolicy) {
+		if (null != mEventRing)
+			return;
+		mEventRing = new EventRing(capacity, overflowPolicy);
+		final String metricsPrefix = getName() + ".queue.";
+		MetricsRegistry.INSTANCE.gauge(metricsPrefix + "depth", this::getEventQueueDepth);
+		MetricsRegistry.INSTANCE.gauge(metricsPrefix + "dropped", this::getEventsDropped);
+		MetricsRegistry.INSTANCE.gauge(metricsPrefix + "coalesced", this::getEventsCoalesced);
+		mDispatcherRunning = true;
+		if (null == AgentRuntime.INSTANCE.submit(getName() + "-dispatch", getPriority(), this::dispatchLoop)) {
+			// no thread for it, so dispatch on the publishing thread as if there was no pipeline
+			mDispatcherRunning = false;
+			mEventRing = null;
+		}
+	}
+
+	final void stopEventPipeline() {
+		mDispatcherRunning = false;
+		final Thread dispatcherThread = mDispatcherThread;
+		if (null != dispatcherThread)
+			LockSupport.unpark(dispatcherThread);
+	}
+
+	/**
+	 * Publish an event to the pipeline. Must only be called from a single thread. If the pipeline hasn't been started,
+	 * the event is dispatched immediately on the calling thread instead.
+	 */
+	protected final void publishEvent(final int type, final long arg0, final long arg1) {
+		if (null == mEventRing)
+			dispatchEvent(type, arg0, arg1);
+		else
+			mEventRing.publish(type, arg0, arg1);
+	}
+
+	/**
+	 * Handle an event taken from the pipeline. Called on the dispatcher thread.
+	 */
+	protected void dispatchEvent(final int type, final long arg0, final long arg1) {}
+
+	/**
+	 * Request a single call to {@link #onDispatchTick()} after the given delay, unless one is already pending. Must only
+	 * be called from the dispatcher thread (i.e. from {@link #dispatchEvent(int, long, long)}).
+	 */
+	protected final void requestDispatchTick(final long delayNanos) {
+		if (0L == mDispatchTickDeadline)
+			mDispatchTickDeadline = System.nanoTime() + delayNanos;
+	}
+
+	/**
+	 * Called on the dispatcher thread once a tick requested by {@link #requestDispatchTick(long)} is due.
+	 */
+	protected void onDispatchTick() {}
+
+	/**
+	 * Run the given task on the dispatcher thread, in between events, e.g. so state owned by the dispatcher can be
+	 * changed from another thread. If the pipeline hasn't been started, the task is run immediately on the calling
+	 * thread instead.
+	 */
+	protected final void runOnDispatcher(final Runnable task) {
+		if (!mDispatcherRunning) {
+			task.run();
+			return;
+		}
+		mDispatcherTasks.offer(task);
+		final Thread dispatcherThread = mDispatcherThread;
+		if (null != dispatcherThread)
+			LockSupport.unpark(dispatcherThread);
+	}
+
+	private void dispatchLoop() {
+		// tasks offered before this point are picked up by the first pass below
+		mDispatcherThread = Thread.currentThread();
+		final EventRing.RecordHandler handler = this::dispatchEvent;
+		while (mDispatcherRunning) {
+			mDispatcherBusy = true;
+			runDispatcherTasks();
+			while (mEventRing.poll(handler)) {
+				runDueDispatchTick();
+			}
+			runDueDispatchTick();
+			runDispatcherTasks();
+			mDispatcherBusy = false;
+			// sleep until the next event, or the next tick if one is pending
+			final long tickDeadline = mDispatchTickDeadline;
+			mEventRing.await((0L == tickDeadline) ? -1L : Math.max(1L, tickDeadline - System.nanoTime()));
+		}
+		mDispatcherThread = null;
+	}
+
+	private void runDispatcherTasks() {
+		Runnable task = mDispatcherTasks.poll();
+		while (null != task) {
+			task.run();
+			task = mDispatcherTasks.poll();
+		}
+	}
+
+	private void runDueDispatchTick() {
+		final long tickDeadline = mDispatchTickDeadline;
+		if ((0L != tickDeadline) && (0L <= System.nanoTime() - tickDeadline)) {
+			mDispatchTickDeadline = 0L;
+			onDispatchTick();
+		}
+	}
+
+	/**
+	 * Wait until everything published so far has been dispatched. Mostly useful for driving an agent synthetically.
+	 * @return false if it didn't become idle within the timeout
+	 */
+	public final boolean awaitDispatchIdle(final long timeoutMillis) {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while ((null != mEventRing) &&
+				(!mEventRing.isEmpty() || !mDispatcherTasks.isEmpty() || mDispatcherBusy || (0L != mDispatchTickDeadline))) {
+			if (0L < System.nanoTime() - deadline)
+				return false;
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return true;
+	}
+
+	/**
+	 * @return The number of events published but not yet dispatched
+	 */
+	public final long getEventQueueDepth() {
+		return (null == mEventRing) ? 0L : mEventRing.getDepth();
+	}
+
+	/**
+	 * @return The number of events discarded due to the pipeline overflowing
+	 */
+	public final long getEventsDropped() {
+		return (null == mEventRing) ? 0L : mEventRing.getDropped();
+	}
+
+	/**
+	 * @return The number of events merged into an identical pending one due to the pipeline overflowing
+	 */
+	public final long getEventsCoalesced() {
+		return (null == mEventRing) ? 0L : mEventRing.getCoalesced();
+	}
+
+
+	///////////////////
+	// Callback related things
+	///////////////////
+
+	@FunctionalInterface
+	public interface PayloadCallback<T extends IPayload> {
+		void run(T payload);
+	}
+
+	/**
+	 * Route for callbacks that want every payload, regardless of the route it is sent to
+	 */
+	public static final int ROUTE_ALL = -1;
+
+	/**
+	 * Everything registered for a single payload class - the callbacks, plus metrics for payloads of that class.
+	 * Callbacks are either broadcast (receive every payload) or belong to a route (e.g. a monitor), indexed by route
+	 * number. Replaced as a whole on registration, so runCallbacks never sees a partially-updated one.
+	 */
+	private static final class CallbackTable {
+		private static final PayloadCallback<IPayload>[] NONE = newCallbackArray(0);
+		private static final PayloadCallback<IPayload>[][] NO_ROUTES = newRouteArray(0);
+
+		private final PayloadCallback<IPayload>[] mBroadcast;
+		private final PayloadCallback<IPayload>[][] mRouted;
+		private final LongAdder mDispatched;
+		private final LatencyHistogram mLatency;
+
+		private CallbackTable(final PayloadCallback<IPayload>[] broadcast, final PayloadCallback<IPayload>[][] routed,
+							  final LongAdder dispatched, final LatencyHistogram latency) {
+			mBroadcast = broadcast;
+			mRouted = routed;
+			mDispatched = dispatched;
+			mLatency = latency;
+		}
+
+		private CallbackTable withCallback(final int route, final PayloadCallback<IPayload> callback) {
+			if (ROUTE_ALL == route)
+				return new CallbackTable(append(mBroadcast, callback), mRouted, mDispatched, mLatency);
+			final PayloadCallback<IPayload>[][] routed = Arrays.copyOf(mRouted, Math.max(mRouted.length, route + 1));
+			routed[route] = append((null == routed[route]) ? NONE : routed[route], callback);
+			return new CallbackTable(mBroadcast, routed, mDispatched, mLatency);
+		}
+
+		private CallbackTable withoutRoute(final int route) {
+			if ((route >= mRouted.length) || (null == mRouted[route]))
+				return this;
+			final PayloadCallback<IPayload>[][] routed = Arrays.copyOf(mRouted, mRouted.length);
+			routed[route] = null;
+			return new CallbackTable(mBroadcast, routed, mDispatched, mLatency);
+		}
+
+		private static PayloadCallback<IPayload>[] append(final PayloadCallback<IPayload>[] callbacks, final PayloadCallback<IPayload> callback) {
+			final PayloadCallback<IPayload>[] updated = Arrays.copyOf(callbacks, callbacks.length + 1);
+			updated[callbacks.length] = callback;
+			return updated;
+		}
+
+		// generic arrays can't be created directly
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static PayloadCallback<IPayload>[] newCallbackArray(final int size) {
+			return new PayloadCallback[size];
+		}
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static PayloadCallback<IPayload>[][] newRouteArray(final int size) {
+			return new PayloadCallback[size][];
+		}
+	}
+
+	/**
+	 * Register a callback for payloads of exactly the given class, regardless of route.
+	 * @see #registerCallback(Class, int, PayloadCallback)
+	 */
+	public final void registerCallback(final Class<? extends IPayload> payloadClass, final PayloadCallback<? extends IPayload> callback) {
+		registerCallback(payloadClass, ROUTE_ALL, callback);
+	}
+
+	/**
+	 * Register a callback for payloads of exactly the given class. Registration is expected to be rare (e.g. at setup)
+	 * so it does all the work; publishing a payload with {@link #runCallbacks(IPayload, int)} is then lock- and
+	 * allocation-free.
+	 * @param route Only receive payloads sent to this route (a small, non-negative number), or {@link #ROUTE_ALL}
+	 */
+	public final void registerCallback(final Class<? extends IPayload> payloadClass, final int route, final PayloadCallback<? extends IPayload> callback) {
+		if (null == callback)
+			return;
+
+		// only ever run with payloads of payloadClass, which the callback accepts
+		@SuppressWarnings("unchecked")
+		final PayloadCallback<IPayload> newCallback = (PayloadCallback<IPayload>) callback;
+		// copy-on-write, so runCallbacks never sees a partially-updated table
+		mCallbacks.compute(payloadClass, (Class<? extends IPayload> key, CallbackTable existing) -> {
+			if (null == existing) {
+				final String metricsPrefix = "payload." + key.getSimpleName() + '.';
+				final CallbackTable empty = new CallbackTable(CallbackTable.NONE, CallbackTable.NO_ROUTES,
+						MetricsRegistry.INSTANCE.counter(metricsPrefix + "dispatched"),
+						MetricsRegistry.INSTANCE.histogram(metricsPrefix + "callbackNanos"));
+				return empty.withCallback(route, newCallback);
+			}
+			return existing.withCallback(route, newCallback);
+		});
+	}
+
+	/**
+	 * Remove every callback registered for the given route, e.g. when the presenter for it goes away.
+	 */
+	public final void unregisterRoute(final int route) {
+		for (final Class<? extends IPayload> payloadClass : mCallbacks.keySet()) {
+			mCallbacks.computeIfPresent(payloadClass,
+					(Class<? extends IPayload> key, CallbackTable existing) -> existing.withoutRoute(route));
+		}
+	}
+
+	/**
+	 * Run every callback registered for the payload's class, on all routes.
+	 */
+	protected final void runCallbacks(final IPayload payload) {
+		final CallbackTable table = mCallbacks.get(payload.getClass());
+		if (null == table)
+			return;
+		final long startNanos = System.nanoTime();
+		runAll(table.mBroadcast, payload);
+		for (final PayloadCallback<IPayload>[] routeCallbacks : table.mRouted) {
+			if (null != routeCallbacks)
+				runAll(routeCallbacks, payload);
+		}
+		table.mLatency.recordSince(startNanos);
+		table.mDispatched.increment();
+	}
+
+	/**
+	 * Run the broadcast callbacks for the payload's class, plus those registered for the given route. The time taken by
+	 * all of them together is recorded in the payload class' callbackNanos histogram.
+	 * @param route The route to send to, or {@link #ROUTE_ALL} for broadcast callbacks only
+	 */
+	protected final void runCallbacks(final IPayload payload, final int route) {
+		final CallbackTable table = mCallbacks.get(payload.getClass());
+		if (null == table)
+			return;
+		final long startNanos = System.nanoTime();
+		runAll(table.mBroadcast, payload);
+		if ((0 <= route) && (route < table.mRouted.length) && (null != table.mRouted[route]))
+			runAll(table.mRouted[route], payload);
+		table.mLatency.recordSince(startNanos);
+		table.mDispatched.increment();
+	}
+
+	private static void runAll(final PayloadCallback<IPayload>[] callbacks, final IPayload payload) {
+		for (final PayloadCallback<IPayload> callback : callbacks) {
+			callback.run(payload);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.cosmicdan.turboshell.common.model;
+
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import com.cosmicdan.turboshell.common.model.AgentModel.State;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every {@link AgentModel}. Rather than each agent owning raw threads and its own shutdown hook, they all share:
+ * <ul>
+ *     <li>a small pool for their service and dispatcher loops. A pool thread takes the agent's name and priority while
+ *     running it, so thread dumps and profilers still show which agent is which;</li>
+ *     <li>a single {@link #getScheduler() timer thread} for agents that only do periodic work (e.g. the clock), so they
+ *     need no thread of their own at all;</li>
+ *     <li>one shutdown hook, which stops agents in the reverse order they were started and only then stops their event
+ *     pipelines and the threads.</li>
+ * </ul>
+ * Agents can also be stopped and restarted at any time. Everything an agent keeps in its fields - callbacks, the event
+ * pipeline and anything still queued on it - is handed over to the restarted service as-is.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class AgentRuntime {
+	public static final AgentRuntime INSTANCE = new AgentRuntime();
+
+	public enum Priority {
+		/** e.g. hook and message loops, where any delay is felt by the whole desktop */
+		HIGH(Thread.NORM_PRIORITY + 2),
+		NORMAL(Thread.NORM_PRIORITY),
+		/** e.g. file watchers, or anything else nobody is waiting on */
+		LOW(Thread.NORM_PRIORITY - 2);
+
+		private final int mThreadPriority;
+
+		Priority(final int threadPriority) {
+			mThreadPriority = threadPriority;
+		}
+	}
+
+	/** Enough for every agent's service and dispatcher loop, with some room for restarts */
+	private static final int MAX_THREADS = 8;
+	private static final long IDLE_THREAD_SECONDS = 30L;
+	/** How long to wait for a stopped agent's service to actually return */
+	private static final long STOP_TIMEOUT_MILLIS = 2000L;
+	/** Delay before restarting a failed agent, so one that fails straight away doesn't spin */
+	private static final long RESTART_DELAY_MILLIS = 1000L;
+
+	private final AtomicInteger mThreadCount = new AtomicInteger(0);
+	private final ThreadPoolExecutor mPool = new ThreadPoolExecutor(0, MAX_THREADS, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+			new SynchronousQueue<>(), (Runnable runnable) -> newThread(runnable, "AgentRuntime-" + mThreadCount.incrementAndGet()));
+	private final ScheduledThreadPoolExecutor mScheduler = new ScheduledThreadPoolExecutor(1,
+			(Runnable runnable) -> newThread(runnable, "AgentRuntime-timer"));
+	// in the order they were first started, so they can be stopped in reverse
+	private final CopyOnWriteArrayList<AgentModel> mAgents = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean mShutdownHookAdded = new AtomicBoolean(false);
+	private volatile boolean mShuttingDown = false;
+
+	private AgentRuntime() {
+		// agents reschedule often (e.g. the clock on every tick), so don't keep cancelled tasks around until they're due
+		mScheduler.setRemoveOnCancelPolicy(true);
+		MetricsRegistry.INSTANCE.gauge("agentRuntime.threads", mPool::getPoolSize);
+		MetricsRegistry.INSTANCE.gauge("agentRuntime.activeThreads", mPool::getActiveCount);
+	}
+
+	private static Thread newThread(final Runnable runnable, final String name) {
+		final Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	/**
+	 * @return The shared timer. It has a single thread, so tasks never run concurrently with each other and an agent
+	 * can confine state to it. Tasks must be short, since every other agent's timers wait for them.
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return mScheduler;
+	}
+
+	///////////////////
+	// Agent lifecycle
+	///////////////////
+
+	/**
+	 * Start the given agent's service on the pool, unless it is already starting or running.
+	 */
+	public void start(final AgentModel agent) {
+		if (mShuttingDown || !agent.compareAndSetState(State.STOPPED, State.STARTING))
+			return;
+		addShutdownHook();
+		mAgents.addIfAbsent(agent);
+		final Future<?> service = submit(agent.getName(), agent.getPriority(), () -> runService(agent));
+		if (null == service)
+			agent.compareAndSetState(State.STARTING, State.STOPPED);
+		agent.setService(service);
+	}
+
+	private static void runService(final AgentModel agent) {
+		// it may have been stopped again before it even got a thread
+		if (!agent.compareAndSetState(State.STARTING, State.RUNNING))
+			return;
+		try {
+			agent.serviceStart();
+		} catch (final RuntimeException e) {
+			log.error(agent.getName() + " failed", e);
+			agent.compareAndSetState(State.RUNNING, State.STOPPED);
+		}
+	}
+
+	/**
+	 * Stop the given agent and wait (briefly) for its service to return. Must not be called from the agent's own
+	 * service thread - use {@link #requestRestart(AgentModel)} there instead.
+	 */
+	public void stop(final AgentModel agent) {
+		final State state = agent.getState();
+		if ((State.STOPPED == state) || (State.STOPPING == state) || !agent.compareAndSetState(state, State.STOPPING))
+			return;
+		log.info("Stopping {}...", agent.getName());
+		try {
+			agent.serviceStop();
+		} catch (final RuntimeException e) {
+			log.error(agent.getName() + " failed to stop cleanly", e);
+		}
+		awaitService(agent);
+		agent.compareAndSetState(State.STOPPING, State.STOPPED);
+	}
+
+	private static void awaitService(final AgentModel agent) {
+		final Future<?> service = agent.getService();
+		if (null == service)
+			return;
+		try {
+			service.get(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			log.warn("{} didn't stop within {}ms, leaving it behind", agent.getName(), STOP_TIMEOUT_MILLIS);
+		} catch (final ExecutionException e) {
+			log.error(agent.getName() + " failed", e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Stop then start the given agent. Blocks while it stops, so must not be called from the agent's own service thread.
+	 */
+	public void restart(final AgentModel agent) {
+		stop(agent);
+		start(agent);
+	}
+
+	/**
+	 * Restart the given agent soon, on another thread - e.g. from its own service when its event loop has failed.
+	 * Ignored if the agent is being stopped anyway.
+	 */
+	public void requestRestart(final AgentModel agent) {
+		final State state = agent.getState();
+		if (mShuttingDown || (State.STOPPING == state) || (State.STOPPED == state))
+			return;
+		log.warn("{} failed, restarting it in {}ms", agent.getName(), RESTART_DELAY_MILLIS);
+		MetricsRegistry.INSTANCE.counter("agent." + agent.getName() + ".restarts").increment();
+		mScheduler.schedule(() -> submit("AgentRuntime-restart", Priority.NORMAL, () -> restart(agent)),
+				RESTART_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	///////////////////
+	// Threads and shutdown
+	///////////////////
+
+	/**
+	 * Run a long-running task (e.g. an agent's dispatcher loop) on the pool, under the given thread name and priority.
+	 * @return The task's future, or null if the pool is full or shut down
+	 */
+	Future<?> submit(final String name, final Priority priority, final Runnable task) {
+		try {
+			return mPool.submit(() -> {
+				final Thread thread = Thread.currentThread();
+				final String poolName = thread.getName();
+				thread.setName(name);
+				thread.setPriority(priority.mThreadPriority);
+				try {
+					task.run();
+				} finally {
+					thread.setName(poolName);
+					thread.setPriority(Thread.NORM_PRIORITY);
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			log.error("No thread available for " + name, e);
+			return null;
+		}
+	}
+
+	private void addShutdownHook() {
+		if (mShutdownHookAdded.compareAndSet(false, true))
+			Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "AgentRuntime-shutdown"));
+	}
+
+	/**
+	 * Stop every agent, most recently started first (so e.g. an agent is stopped before the ones it was started by),
+	 * then their event pipelines, then the threads. Called by the shutdown hook; nothing can be started afterwards.
+	 */
+	public void shutdown() {
+		if (mShuttingDown)
+			return;
+		mShuttingDown = true;
+		final List<AgentModel> agents = new ArrayList<>(mAgents);
+		Collections.reverse(agents);
+		for (final AgentModel agent : agents) {
+			stop(agent);
+		}
+		for (final AgentModel agent : agents) {
+			agent.stopEventPipeline();
+		}
+		mScheduler.shutdownNow();
+		mPool.shutdown();
+		log.info("All agents stopped");
+	}
+}
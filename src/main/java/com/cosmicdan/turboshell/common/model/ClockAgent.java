@@ -0,0 +1,149 @@
+package com.cosmicdan.turboshell.common.model;
+
+import com.cosmicdan.turboshell.ConfigKey;
+import com.cosmicdan.turboshell.TurboShellConfig;
+import com.cosmicdan.turboshell.common.model.payload.CalendarChangePayload;
+import com.cosmicdan.turboshell.common.model.payload.ConfigChangePayload;
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent model for the date/time display. Rather than polling, it sleeps until the next boundary that can change the
+ * formatted text (the next day, or the next minute/second if the configured format shows them) and sends a
+ * {@link CalendarChangePayload} only when the text actually changes.
+ * <p>
+ * Sleeps are measured on the monotonic clock, so a wall-clock jump (time change, DST, resume from sleep) would leave a
+ * day-long sleep waking at the wrong time. Sleeps are therefore capped at {@link #MAX_SLEEP_SECONDS}, and the presenter
+ * can {@link #recheck()} immediately when Windows tells it the time has changed or the system has resumed.
+ * <p>
+ * It has no thread of its own, all of its work runs on the {@link AgentRuntime#getScheduler() shared timer}.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class ClockAgent extends AgentModel {
+	public static final ClockAgent INSTANCE = new ClockAgent();
+
+	/** Upper bound on a single sleep, so a wall-clock jump we aren't told about is noticed within this time */
+	private static final long MAX_SLEEP_SECONDS = 60L;
+
+	private final ScheduledExecutorService mExecutor = AgentRuntime.INSTANCE.getScheduler();
+	private volatile boolean mStopped = false;
+
+	// only ever touched from the executor thread (after construction)
+	private DateTimeFormatter mFormatter = DateTimeFormatter.ofPattern(TurboShellConfig.getDateTimeFormat());
+	private ChronoUnit mResolution = findResolution(mFormatter);
+	private ScheduledFuture<?> mNextTick = null;
+	private String mLastText = null;
+
+	private ClockAgent() {
+		ConfigAgent.INSTANCE.registerCallback(ConfigChangePayload.class,
+				(PayloadCallback<ConfigChangePayload>) this::onConfigChange);
+	}
+
+	public void addPresenter(final ITurboBarPresenter turboBarPresenter) {
+		registerCallback(CalendarChangePayload.class, turboBarPresenter.getMonitorRoute(),
+				(PayloadCallback<CalendarChangePayload>) turboBarPresenter::updateDateTime);
+		// make sure the new presenter gets the current text too
+		mExecutor.execute(() -> mLastText = null);
+		recheck();
+		// always call start - the agent itself will only (re)start if necessary
+		start();
+	}
+
+	/**
+	 * Stop sending the time to the presenter for the given route, e.g. when its monitor has been removed.
+	 */
+	public void removePresenter(final int route) {
+		unregisterRoute(route);
+	}
+
+	@Override
+	protected void serviceStart() {
+		log.info("Starting...");
+		mStopped = false;
+		recheck();
+	}
+
+	private void onConfigChange(final ConfigChangePayload payload) {
+		if (!payload.hasChanged(ConfigKey.DATE_TIME_FORMAT))
+			return;
+		final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(payload.getSnapshot().getDateTimeFormat());
+		if (!mExecutor.isShutdown()) {
+			mExecutor.execute(() -> {
+				mFormatter = formatter;
+				mResolution = findResolution(formatter);
+				log.info("Date/time format changed, now with {} resolution", mResolution);
+				// force the new text out even if it happens to look the same
+				mLastText = null;
+				tick();
+			});
+		}
+	}
+
+	@Override
+	protected AgentRuntime.Priority getPriority() {
+		return AgentRuntime.Priority.LOW;
+	}
+
+	@Override
+	protected void serviceStop() {
+		mStopped = true;
+		recheck();
+	}
+
+	/**
+	 * Re-read the clock now and reschedule the next update, e.g. after the system time was changed or the system
+	 * resumed from sleep. Safe to call from any thread.
+	 */
+	public void recheck() {
+		if (!mExecutor.isShutdown())
+			mExecutor.execute(this::tick);
+	}
+
+	private void tick() {
+		if (null != mNextTick)
+			mNextTick.cancel(false);
+		if (mStopped) {
+			mNextTick = null;
+			return;
+		}
+		final LocalDateTime now = LocalDateTime.now();
+		try {
+			final String text = mFormatter.format(now);
+			if (!text.equals(mLastText)) {
+				mLastText = text;
+				runCallbacks(new CalendarChangePayload(text));
+			}
+		} catch (final DateTimeException e) {
+			// the config should never let one through, but don't let it stop the clock for good if it does
+			log.error("Could not format the date/time", e);
+		}
+		// sleep until just after the next boundary, but no longer than the cap
+		final LocalDateTime nextBoundary = now.truncatedTo(mResolution).plus(1L, mResolution);
+		final long delayMillis = Math.min(
+				Duration.between(now, nextBoundary).toMillis() + 1L,
+				TimeUnit.SECONDS.toMillis(MAX_SLEEP_SECONDS));
+		mNextTick = mExecutor.schedule(this::tick, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Find the smallest unit that can change the formatted text, by formatting times that differ only in that unit.
+	 */
+	private static ChronoUnit findResolution(final DateTimeFormatter formatter) {
+		final LocalDateTime probe = LocalDateTime.of(2000, 1, 1, 0, 0, 0);
+		if (!formatter.format(probe).equals(formatter.format(probe.withSecond(59))))
+			return ChronoUnit.SECONDS;
+		if (!formatter.format(probe).equals(formatter.format(probe.withHour(13).withMinute(59))))
+			return ChronoUnit.MINUTES;
+		return ChronoUnit.DAYS;
+	}
+}
@@ -0,0 +1,122 @@
+package com.cosmicdan.turboshell.common.model;
+
+import com.cosmicdan.turboshell.ConfigKey;
+import com.cosmicdan.turboshell.TurboShellConfig;
+import com.cosmicdan.turboshell.common.model.payload.ConfigChangePayload;
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent model for the config file. Watches it for changes and, whenever it's saved, reloads it and sends a
+ * {@link ConfigChangePayload} with only the keys that actually changed - so e.g. changing a color doesn't rebuild the
+ * TurboBar, and saving the file without changes does nothing at all.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class ConfigAgent extends AgentModel {
+	public static final ConfigAgent INSTANCE = new ConfigAgent();
+
+	/** Editors often write a file in several steps, so wait this long after the last change before reloading */
+	private static final long SETTLE_MILLIS = 100L;
+
+	private volatile WatchService mWatchService = null;
+
+	private ConfigAgent() {}
+
+	public void addPresenter(final ITurboBarPresenter turboBarPresenter) {
+		registerCallback(ConfigChangePayload.class, turboBarPresenter.getMonitorRoute(),
+				(PayloadCallback<ConfigChangePayload>) turboBarPresenter::updateConfig);
+		// always call start - the agent itself will only (re)start if necessary
+		start();
+	}
+
+	/**
+	 * Stop sending config changes to the presenter for the given route, e.g. when its monitor has been removed.
+	 */
+	public void removePresenter(final int route) {
+		unregisterRoute(route);
+	}
+
+	@Override
+	protected void serviceStart() {
+		final Path configPath = TurboShellConfig.getConfigPath();
+		final Path configDir = configPath.getParent();
+		final Path configFileName = configPath.getFileName();
+		try {
+			mWatchService = FileSystems.getDefault().newWatchService();
+			// watch the directory rather than the file, so the file being deleted and re-created (as many editors do) works
+			configDir.register(mWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (final IOException e) {
+			log.error("Could not watch " + configPath + ", config changes will need a restart", e);
+			return;
+		}
+		// a stop that came in before the watcher existed couldn't close it, so do that here
+		if (State.RUNNING != getState()) {
+			serviceStop();
+			return;
+		}
+		log.info("Watching {} for changes...", configPath);
+		try {
+			//noinspection InfiniteLoopStatement
+			while (true) {
+				WatchKey watchKey = mWatchService.take();
+				boolean isConfigChanged = false;
+				// keep draining until it has been quiet for a while, so a burst of writes is a single reload
+				while (null != watchKey) {
+					isConfigChanged |= isConfigEvent(watchKey, configFileName);
+					watchKey.reset();
+					watchKey = mWatchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				if (isConfigChanged)
+					reload();
+			}
+		} catch (final InterruptedException | ClosedWatchServiceException ignored) {
+			log.info("Stopped watching {}", configPath);
+		}
+	}
+
+	private static boolean isConfigEvent(final WatchKey watchKey, final Path configFileName) {
+		boolean isConfigEvent = false;
+		for (final WatchEvent<?> event : watchKey.pollEvents()) {
+			// an overflow means events were lost, so it may have been ours
+			if ((StandardWatchEventKinds.OVERFLOW == event.kind()) || configFileName.equals(event.context()))
+				isConfigEvent = true;
+		}
+		return isConfigEvent;
+	}
+
+	private void reload() {
+		final EnumSet<ConfigKey> changed = TurboShellConfig.reload();
+		if (!changed.isEmpty())
+			runCallbacks(new ConfigChangePayload(changed, TurboShellConfig.getSnapshot()));
+	}
+
+	@Override
+	protected AgentRuntime.Priority getPriority() {
+		return AgentRuntime.Priority.LOW;
+	}
+
+	@Override
+	protected void serviceStop() {
+		final WatchService watchService = mWatchService;
+		if (null == watchService)
+			return;
+		try {
+			watchService.close();
+		} catch (final IOException e) {
+			log.warn("Error closing the config watcher", e);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package com.cosmicdan.turboshell.common.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, pre-allocated ring buffer of compact event records (an int type and two longs), in the style of the LMAX
+ * Disruptor. There must only be a single producer; any number of consumers may take records, each record going to
+ * exactly one of them. Publishing and consuming never lock nor allocate.
+ * <p>
+ * Consumers claim a record by CAS on the read sequence <i>after</i> reading it, so a record overwritten by the producer
+ * (see {@link OverflowPolicy#DROP_OLDEST}) is never delivered half-written - the claim just fails and the consumer
+ * moves on to the next one.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class EventRing {
+	public enum OverflowPolicy {
+		/** Discard the oldest pending record to make room */
+		DROP_OLDEST,
+		/**
+		 * Discard the new record if an identical one (same type and arguments) is among the last
+		 * {@value #COALESCE_SCAN_LIMIT} pending ones, otherwise DROP_OLDEST. Only the most recent records are checked so
+		 * a full ring costs the producer a bounded scan, not one of the whole capacity - repeats tend to come in bursts
+		 * anyway (e.g. a window being dragged).
+		 */
+		COALESCE,
+		/** Wait for a consumer to make room. Never use this if the producer must not stall */
+		BLOCK
+	}
+
+	@FunctionalInterface
+	public interface RecordHandler {
+		void onRecord(int type, long arg0, long arg1);
+	}
+
+	/** How many of the most recent pending records {@link OverflowPolicy#COALESCE} compares a new record with */
+	private static final int COALESCE_SCAN_LIMIT = 64;
+	private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	private final int mMask;
+	private final int[] mTypes;
+	private final long[] mArgs0;
+	private final long[] mArgs1;
+	private final OverflowPolicy mOverflowPolicy;
+
+	// next sequence to be written (only ever advanced by the producer) and next sequence to be read
+	private final AtomicLong mWriteSequence = new AtomicLong(0L);
+	private final AtomicLong mReadSequence = new AtomicLong(0L);
+	private volatile Thread mWaitingConsumer = null;
+
+	private final LongAdder mDropped = new LongAdder();
+	private final LongAdder mCoalesced = new LongAdder();
+
+	/**
+	 * @param capacity The number of records the ring can hold. Rounded up to the next power of two.
+	 */
+	public EventRing(final int capacity, final OverflowPolicy overflowPolicy) {
+		final int size = (1 >= capacity) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+		mMask = size - 1;
+		mTypes = new int[size];
+		mArgs0 = new long[size];
+		mArgs1 = new long[size];
+		mOverflowPolicy = overflowPolicy;
+	}
+
+	///////////////////
+	// Producer side
+	///////////////////
+
+	/**
+	 * Publish a record. Must only ever be called from the single producer thread.
+	 * @return false if the record was discarded (coalesced into a pending one), otherwise true
+	 */
+	public boolean publish(final int type, final long arg0, final long arg1) {
+		final long writeSequence = mWriteSequence.get();
+		if (!ensureCapacity(writeSequence, type, arg0, arg1))
+			return false;
+		final int index = (int) writeSequence & mMask;
+		mTypes[index] = type;
+		mArgs0[index] = arg0;
+		mArgs1[index] = arg1;
+		// publish - the volatile write makes the record visible to consumers
+		mWriteSequence.set(writeSequence + 1);
+		final Thread waitingConsumer = mWaitingConsumer;
+		if (null != waitingConsumer)
+			LockSupport.unpark(waitingConsumer);
+		return true;
+	}
+
+	private boolean ensureCapacity(final long writeSequence, final int type, final long arg0, final long arg1) {
+		while (writeSequence - mReadSequence.get() > mMask) {
+			//noinspection SwitchStatement
+			switch (mOverflowPolicy) {
+				case BLOCK:
+					LockSupport.parkNanos(BLOCK_PARK_NANOS);
+					break;
+				case COALESCE:
+					if (isPending(writeSequence, type, arg0, arg1)) {
+						mCoalesced.increment();
+						return false;
+					}
+					// nothing to coalesce with
+					dropOldest(writeSequence);
+					break;
+				case DROP_OLDEST:
+					dropOldest(writeSequence);
+					break;
+			}
+		}
+		return true;
+	}
+
+	private void dropOldest(final long writeSequence) {
+		final long readSequence = mReadSequence.get();
+		if ((writeSequence - readSequence > mMask) && mReadSequence.compareAndSet(readSequence, readSequence + 1))
+			mDropped.increment();
+	}
+
+	/**
+	 * @return true if an identical record is among the most recent pending ones, i.e. not yet claimed by a consumer
+	 */
+	private boolean isPending(final long writeSequence, final int type, final long arg0, final long arg1) {
+		final long oldestSequence = Math.max(mReadSequence.get(), writeSequence - COALESCE_SCAN_LIMIT);
+		for (long sequence = writeSequence - 1; sequence >= oldestSequence; sequence--) {
+			final int index = (int) sequence & mMask;
+			if ((mTypes[index] == type) && (mArgs0[index] == arg0) && (mArgs1[index] == arg1)) {
+				// only counts if a consumer hasn't claimed it while we were looking
+				return sequence >= mReadSequence.get();
+			}
+		}
+		return false;
+	}
+
+	///////////////////
+	// Consumer side
+	///////////////////
+
+	/**
+	 * Take the next record, if there is one, and pass it to the handler.
+	 * @return true if a record was handled, false if the ring was empty
+	 */
+	public boolean poll(final RecordHandler handler) {
+		while (true) {
+			final long readSequence = mReadSequence.get();
+			if (readSequence >= mWriteSequence.get())
+				return false;
+			final int index = (int) readSequence & mMask;
+			final int type = mTypes[index];
+			final long arg0 = mArgs0[index];
+			final long arg1 = mArgs1[index];
+			if (mReadSequence.compareAndSet(readSequence, readSequence + 1)) {
+				handler.onRecord(type, arg0, arg1);
+				return true;
+			}
+			// lost the claim to another consumer (or the producer dropped it) - try the next one
+		}
+	}
+
+	/**
+	 * Park the calling consumer until a record is published or the timeout elapses. May return early.
+	 * @param timeoutNanos The maximum time to wait, or a negative value to wait indefinitely
+	 */
+	public void await(final long timeoutNanos) {
+		mWaitingConsumer = Thread.currentThread();
+		if (isEmpty()) {
+			if (0 > timeoutNanos)
+				LockSupport.park(this);
+			else if (0 < timeoutNanos)
+				LockSupport.parkNanos(this, timeoutNanos);
+		}
+		mWaitingConsumer = null;
+	}
+
+	///////////////////
+	// Stats
+	///////////////////
+
+	public boolean isEmpty() {
+		return mReadSequence.get() >= mWriteSequence.get();
+	}
+
+	/**
+	 * @return The number of records published but not yet taken
+	 */
+	public long getDepth() {
+		return Math.max(0L, mWriteSequence.get() - mReadSequence.get());
+	}
+
+	public int getCapacity() {
+		return mMask + 1;
+	}
+
+	public long getDropped() {
+		return mDropped.sum();
+	}
+
+	public long getCoalesced() {
+		return mCoalesced.sum();
+	}
+}
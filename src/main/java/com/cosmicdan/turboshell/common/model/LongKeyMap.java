@@ -0,0 +1,183 @@
+package com.cosmicdan.turboshell.common.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A hash map keyed by primitive longs (e.g. raw HWND or HMONITOR values), so lookups never box their key. Open
+ * addressing with linear probing; a removed entry leaves a marker behind (so probes for other keys still find theirs)
+ * until the next resize drops them all.
+ * <p>
+ * Only a single thread may modify the map. Any thread may read from it without locking; readers may miss an update that
+ * is in progress, but never see a half-written entry.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class LongKeyMap<V> {
+	/** Live entries plus removal markers never fill more than this much of the table, so a probe always ends */
+	private static final float MAX_LOAD = 0.5f;
+	private static final int MIN_CAPACITY = 8;
+
+	private static final class Entry<V> {
+		private final long mKey;
+		private final V mValue;
+
+		private Entry(final long key, final V value) {
+			mKey = key;
+			mValue = value;
+		}
+	}
+
+	private final Entry<V> mRemoved = new Entry<>(0L, null);
+	// replaced as a whole on resize
+	private volatile AtomicReferenceArray<Entry<V>> mTable;
+	private volatile int mSize = 0;
+	// live entries plus removal markers. Writer only.
+	private int mUsedSlots = 0;
+
+	/**
+	 * @param expectedSize How many entries the map should hold before its first resize
+	 */
+	public LongKeyMap(final int expectedSize) {
+		mTable = new AtomicReferenceArray<>(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(final int size) {
+		int capacity = MIN_CAPACITY;
+		while ((capacity * MAX_LOAD) < size) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int slotOf(final long key, final int mask) {
+		// handles are mostly aligned and clustered, so spread them out first
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & mask;
+	}
+
+	///////////////////
+	// Writer methods
+	///////////////////
+
+	/**
+	 * @return The previous value for the key, or null if there was none
+	 */
+	public V put(final long key, final V value) {
+		final AtomicReferenceArray<Entry<V>> table = mTable;
+		final int mask = table.length() - 1;
+		int freeSlot = -1;
+		for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+			final Entry<V> entry = table.get(slot);
+			if (null == entry) {
+				// not present - take the first removal marker on the way, if there was one
+				if (-1 == freeSlot) {
+					freeSlot = slot;
+					mUsedSlots++;
+				}
+				table.set(freeSlot, new Entry<>(key, value));
+				mSize++;
+				if (mUsedSlots > (table.length() * MAX_LOAD))
+					resize();
+				return null;
+			}
+			if (mRemoved == entry) {
+				if (-1 == freeSlot)
+					freeSlot = slot;
+			} else if (key == entry.mKey) {
+				table.set(slot, new Entry<>(key, value));
+				return entry.mValue;
+			}
+		}
+	}
+
+	/**
+	 * @return The removed value, or null if there was none
+	 */
+	public V remove(final long key) {
+		final AtomicReferenceArray<Entry<V>> table = mTable;
+		final int mask = table.length() - 1;
+		for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+			final Entry<V> entry = table.get(slot);
+			if (null == entry)
+				return null;
+			if ((mRemoved != entry) && (key == entry.mKey)) {
+				table.set(slot, mRemoved);
+				mSize--;
+				return entry.mValue;
+			}
+		}
+	}
+
+	private void resize() {
+		final AtomicReferenceArray<Entry<V>> table = mTable;
+		// sized for twice the live entries, so there's room to grow again before the next resize
+		final AtomicReferenceArray<Entry<V>> resized = new AtomicReferenceArray<>(capacityFor(mSize * 2));
+		final int mask = resized.length() - 1;
+		for (int i = 0; i < table.length(); i++) {
+			final Entry<V> entry = table.get(i);
+			if ((null == entry) || (mRemoved == entry))
+				continue;
+			int slot = slotOf(entry.mKey, mask);
+			while (null != resized.get(slot)) {
+				slot = (slot + 1) & mask;
+			}
+			resized.set(slot, entry);
+		}
+		mUsedSlots = mSize;
+		mTable = resized;
+	}
+
+	///////////////////
+	// Reader methods
+	///////////////////
+
+	/**
+	 * @return The value for the key, or null if there is none
+	 */
+	public V get(final long key) {
+		final AtomicReferenceArray<Entry<V>> table = mTable;
+		final int mask = table.length() - 1;
+		for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+			final Entry<V> entry = table.get(slot);
+			if (null == entry)
+				return null;
+			if ((mRemoved != entry) && (key == entry.mKey))
+				return entry.mValue;
+		}
+	}
+
+	public boolean containsKey(final long key) {
+		return null != get(key);
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public boolean isEmpty() {
+		return 0 == mSize;
+	}
+
+	/**
+	 * Visit every value, in no particular order.
+	 */
+	public void forEach(final Consumer<? super V> consumer) {
+		final AtomicReferenceArray<Entry<V>> table = mTable;
+		for (int i = 0; i < table.length(); i++) {
+			final Entry<V> entry = table.get(i);
+			if ((null != entry) && (mRemoved != entry))
+				consumer.accept(entry.mValue);
+		}
+	}
+
+	/**
+	 * @return A snapshot of every value, in no particular order
+	 */
+	public List<V> values() {
+		final List<V> values = new ArrayList<>(mSize);
+		forEach(values::add);
+		return values;
+	}
+}
@@ -0,0 +1,316 @@
+package com.cosmicdan.turboshell.common.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded most-recently-used history, e.g. of foreground windows. A hash index maps each key to a node in a
+ * doubly-linked list, so move-to-front, removal and eviction of the least-recently-used entry are all O(1). Entries
+ * matching the "marked" predicate (e.g. maximized windows) are additionally tracked, so the most or least recent marked
+ * entry is found without a scan.
+ * <p>
+ * Only a single thread may modify the history (e.g. an agent thread). Any thread may read from it without locking:
+ * readers never walk the list itself, but an immutable snapshot of its values (all, and marked only, most recent first)
+ * published at the end of every write. So a reader always sees the history as it was after some complete write, never
+ * one half-way through a move. Histories are short (e.g. 10 windows), so copying them on each write costs next to nothing.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class MruHistory<K, V> {
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private final Map<K, Node<K, V>> mIndex;
+	private final Predicate<? super V> mMarkedPredicate;
+	private int mMaxSize;
+
+	// the list itself. Writer thread only.
+	private Node<K, V> mHead = null;
+	private Node<K, V> mTail = null;
+	private int mSize = 0;
+	private int mMarkedSize = 0;
+
+	// what readers see, replaced as a whole after every write
+	private volatile Snapshot mSnapshot = new Snapshot(NO_VALUES, NO_VALUES);
+
+	/**
+	 * @param maxSize The maximum number of entries before the least recently used one is evicted
+	 * @param markedPredicate Entries matching this are also tracked as marked
+	 */
+	public MruHistory(final int maxSize, final Predicate<? super V> markedPredicate) {
+		mIndex = new HashMap<>(maxSize * 2);
+		mMaxSize = maxSize;
+		mMarkedPredicate = markedPredicate;
+	}
+
+	private static final class Node<K, V> {
+		private final K mKey;
+		private V mValue;
+		private boolean mMarked = false;
+
+		private Node<K, V> mPrev = null;
+		private Node<K, V> mNext = null;
+
+		private Node(final K key, final V value) {
+			mKey = key;
+			mValue = value;
+		}
+	}
+
+	/**
+	 * The values at the end of a write, most recent first. Never modified once published.
+	 */
+	private static final class Snapshot {
+		private final Object[] mValues;
+		private final Object[] mMarkedValues;
+
+		private Snapshot(final Object[] values, final Object[] markedValues) {
+			mValues = values;
+			mMarkedValues = markedValues;
+		}
+	}
+
+	///////////////////
+	// Writer methods
+	///////////////////
+
+	/**
+	 * Add or update the given entry and make it the most recent one.
+	 * @return true if an existing entry for the key was updated, false if it was newly added
+	 */
+	public boolean put(final K key, final V value) {
+		Node<K, V> node = mIndex.get(key);
+		final boolean isReplaced = null != node;
+		if (isReplaced) {
+			setValue(node, value);
+			if (mHead != node) {
+				unlink(node);
+				linkFirst(node);
+			}
+		} else {
+			node = new Node<>(key, value);
+			mIndex.put(key, node);
+			linkFirst(node);
+			mSize++;
+			setMarked(node, mMarkedPredicate.test(value));
+		}
+		trimToSize();
+		publish();
+		return isReplaced;
+	}
+
+	/**
+	 * Remove the entry for the given key, if any.
+	 * @return The removed value, or null if there was none
+	 */
+	public V remove(final K key) {
+		final Node<K, V> node = mIndex.remove(key);
+		if (null == node)
+			return null;
+		removeNode(node);
+		publish();
+		return node.mValue;
+	}
+
+	/**
+	 * Replace every value in place, keeping the current order - e.g. to re-resolve something cached in the values.
+	 */
+	public void replaceAll(final UnaryOperator<V> replacer) {
+		for (Node<K, V> node = mHead; null != node; node = node.mNext) {
+			setValue(node, replacer.apply(node.mValue));
+		}
+		publish();
+	}
+
+	/**
+	 * Change the maximum size, evicting the least recently used entries if necessary.
+	 */
+	public void setMaxSize(final int maxSize) {
+		mMaxSize = maxSize;
+		trimToSize();
+		publish();
+	}
+
+	/**
+	 * Look up the current value for the given key. Unlike the reader methods, this uses the hash index - so it must only
+	 * be called from the thread that modifies the history.
+	 * @return The value for the key, or null if there is none
+	 */
+	public V get(final K key) {
+		final Node<K, V> node = mIndex.get(key);
+		return (null == node) ? null : node.mValue;
+	}
+
+	public void clear() {
+		mIndex.clear();
+		mHead = null;
+		mTail = null;
+		mSize = 0;
+		mMarkedSize = 0;
+		publish();
+	}
+
+	///////////////////
+	// Reader methods
+	///////////////////
+
+	/**
+	 * @return The most recent value, or null if empty
+	 */
+	public V peek() {
+		final Object[] values = mSnapshot.mValues;
+		return (0 == values.length) ? null : valueAt(values, 0);
+	}
+
+	/**
+	 * @return The most recent marked value, or null if there are none
+	 */
+	public V peekMarked() {
+		final Object[] markedValues = mSnapshot.mMarkedValues;
+		return (0 == markedValues.length) ? null : valueAt(markedValues, 0);
+	}
+
+	/**
+	 * @return The least recent marked value, or null if there are none
+	 */
+	public V peekOldestMarked() {
+		final Object[] markedValues = mSnapshot.mMarkedValues;
+		return (0 == markedValues.length) ? null : valueAt(markedValues, markedValues.length - 1);
+	}
+
+	/**
+	 * @return The most recent value matching the given filter, or null if there are none
+	 */
+	public V find(final Predicate<? super V> filter) {
+		final Object[] values = mSnapshot.mValues;
+		for (int i = 0; i < values.length; i++) {
+			final V value = valueAt(values, i);
+			if (filter.test(value))
+				return value;
+		}
+		return null;
+	}
+
+	/**
+	 * @return The most recent marked value matching the given filter, or null if there are none
+	 */
+	public V findMarked(final Predicate<? super V> filter) {
+		final Object[] markedValues = mSnapshot.mMarkedValues;
+		for (int i = 0; i < markedValues.length; i++) {
+			final V value = valueAt(markedValues, i);
+			if (filter.test(value))
+				return value;
+		}
+		return null;
+	}
+
+	/**
+	 * @return The least recent marked value matching the given filter, or null if there are none
+	 */
+	public V findOldestMarked(final Predicate<? super V> filter) {
+		final Object[] markedValues = mSnapshot.mMarkedValues;
+		for (int i = markedValues.length - 1; 0 <= i; i--) {
+			final V value = valueAt(markedValues, i);
+			if (filter.test(value))
+				return value;
+		}
+		return null;
+	}
+
+	public boolean isEmpty() {
+		return 0 == mSnapshot.mValues.length;
+	}
+
+	public int size() {
+		return mSnapshot.mValues.length;
+	}
+
+	/**
+	 * Visit every value, from most to least recent.
+	 */
+	public void forEach(final Consumer<? super V> consumer) {
+		final Object[] values = mSnapshot.mValues;
+		for (int i = 0; i < values.length; i++) {
+			consumer.accept(valueAt(values, i));
+		}
+	}
+
+	// only ever holds values put by the writer
+	@SuppressWarnings("unchecked")
+	private V valueAt(final Object[] values, final int index) {
+		return (V) values[index];
+	}
+
+	///////////////////
+	// Internal list handling
+	///////////////////
+
+	/**
+	 * Publish the current values to readers. Called once at the end of every write.
+	 */
+	private void publish() {
+		final Object[] values = (0 == mSize) ? NO_VALUES : new Object[mSize];
+		final Object[] markedValues = (0 == mMarkedSize) ? NO_VALUES : new Object[mMarkedSize];
+		int i = 0;
+		int marked = 0;
+		for (Node<K, V> node = mHead; null != node; node = node.mNext) {
+			values[i++] = node.mValue;
+			if (node.mMarked)
+				markedValues[marked++] = node.mValue;
+		}
+		mSnapshot = new Snapshot(values, markedValues);
+	}
+
+	private void setValue(final Node<K, V> node, final V value) {
+		node.mValue = value;
+		setMarked(node, mMarkedPredicate.test(value));
+	}
+
+	private void setMarked(final Node<K, V> node, final boolean isMarked) {
+		if (node.mMarked == isMarked)
+			return;
+		node.mMarked = isMarked;
+		mMarkedSize += isMarked ? 1 : -1;
+	}
+
+	private void trimToSize() {
+		while (mSize > mMaxSize) {
+			final Node<K, V> eldest = mTail;
+			mIndex.remove(eldest.mKey);
+			removeNode(eldest);
+		}
+	}
+
+	private void removeNode(final Node<K, V> node) {
+		unlink(node);
+		setMarked(node, false);
+		mSize--;
+	}
+
+	private void linkFirst(final Node<K, V> node) {
+		final Node<K, V> head = mHead;
+		node.mPrev = null;
+		node.mNext = head;
+		if (null == head)
+			mTail = node;
+		else
+			head.mPrev = node;
+		mHead = node;
+	}
+
+	private void unlink(final Node<K, V> node) {
+		final Node<K, V> prev = node.mPrev;
+		final Node<K, V> next = node.mNext;
+		if (null == prev)
+			mHead = next;
+		else
+			prev.mNext = next;
+		if (null == next)
+			mTail = prev;
+		else
+			next.mPrev = prev;
+		node.mPrev = null;
+		node.mNext = null;
+	}
+}
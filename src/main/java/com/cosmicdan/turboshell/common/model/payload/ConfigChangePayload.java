@@ -0,0 +1,37 @@
+package com.cosmicdan.turboshell.common.model.payload;
+
+import com.cosmicdan.turboshell.ConfigKey;
+import com.cosmicdan.turboshell.ConfigSnapshot;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The config file was reloaded and some values changed. Only the changed keys need to be applied.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public class ConfigChangePayload implements IPayload {
+	private final Set<ConfigKey> mChangedKeys;
+	private final ConfigSnapshot mSnapshot;
+
+	public ConfigChangePayload(final EnumSet<ConfigKey> changedKeys, final ConfigSnapshot snapshot) {
+		mChangedKeys = Collections.unmodifiableSet(changedKeys);
+		mSnapshot = snapshot;
+	}
+
+	public boolean hasChanged(final ConfigKey key) {
+		return mChangedKeys.contains(key);
+	}
+
+	public Set<ConfigKey> getChangedKeys() {
+		return mChangedKeys;
+	}
+
+	/**
+	 * @return The new config the changes are from
+	 */
+	public ConfigSnapshot getSnapshot() {
+		return mSnapshot;
+	}
+}
@@ -0,0 +1,44 @@
+package com.cosmicdan.turboshell.common.model.payload;
+
+import com.cosmicdan.turboshell.winapi.model.WindowAction;
+import lombok.Getter;
+
+/**
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public class WindowActionResultPayload implements IPayload {
+	public enum Outcome {
+		/** The command was sent to the window */
+		DONE,
+		/** The window was already gone */
+		NO_WINDOW,
+		/** The window is hung, so the command wasn't sent */
+		HUNG,
+		/** The window closed after WM_CLOSE */
+		CLOSED,
+		/** The window closed after WM_QUIT */
+		QUIT,
+		/** The window's process was terminated */
+		TERMINATED,
+		/** The window's process couldn't be terminated */
+		FAILED
+	}
+
+	@Getter
+	private final WindowAction mAction;
+	@Getter
+	private final Outcome mOutcome;
+	@Getter
+	private final String mWindowTitle;
+
+	public WindowActionResultPayload(final WindowAction action, final Outcome outcome, final String windowTitle) {
+		mAction = action;
+		mOutcome = outcome;
+		mWindowTitle = windowTitle;
+	}
+
+	@Override
+	public String toString() {
+		return mAction + " on '" + mWindowTitle + "': " + mOutcome;
+	}
+}
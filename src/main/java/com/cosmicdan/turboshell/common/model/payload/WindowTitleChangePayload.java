@@ -1,15 +1,15 @@
-package com.cosmicdan.turboshell.common.model.payload;
-
-import lombok.Data;
-
-/**
- * @author Daniel 'CosmicDan' Connolly
- */
-@Data
-public class WindowTitleChangePayload implements IPayload {
-	private final String mWindowTitle;
-
-	public WindowTitleChangePayload(final String windowTitle) {
-		mWindowTitle = windowTitle;
-	}
-}
+package com.cosmicdan.turboshell.common.model.payload;
+
+import lombok.Data;
+
+/**
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Data
+public class WindowTitleChangePayload implements IPayload {
+	private final String mWindowTitle;
+
+	public WindowTitleChangePayload(final String windowTitle) {
+		mWindowTitle = windowTitle;
+	}
+}
@@ -1,56 +1,123 @@
-package com.cosmicdan.turboshell.turbobar;
-
-import com.cosmicdan.turboshell.common.model.payload.WindowSysBtnUpdatePayload;
-import com.cosmicdan.turboshell.common.model.payload.WindowTitleChangePayload;
-import com.sun.jna.platform.win32.WinDef.HWND;
-import javafx.event.Event;
-
-/**
- * Contract between TurboBar view and presenter
- * @author Daniel 'CosmicDan' Connolly
- */
-public class TurboBarContract {
-	@SuppressWarnings("CyclicClassDependency")
-	public interface ITurboBarView {
-		enum SysBtnMinimizeState {ENABLED, DISABLED}
-		enum SysBtnResizeState {MAXIMIZE, RESTORE, DISABLED}
-		enum SysBtnCloseAction {CANCEL, CLICK, PRIMARY_HELD, SECONDARY_HELD}
-
-		void setup(ITurboBarPresenter presenter, int xPos, int width, int barHeight, String css, String windowName);
-		void redraw(final int xPos, final int width, final int barHeight);
-		void updateSysBtnMinimize(SysBtnMinimizeState toState);
-		void updateSysBtnResize(SysBtnResizeState toState);
-		void updateDateTime(String dateTime);
-		void updateWindowTitle(String windowTitle);
-	}
-
-	@SuppressWarnings("CyclicClassDependency")
-	public interface ITurboBarPresenter {
-		/**
-		 * Required for AppBar callback.
-		 * @return The TurboBar HWnd.
-		 */
-		HWND getTurboBarHWnd();
-
-		/**
-		 * Used to toggle topmost property for TurboBar, e.g. when a foreground app enters fullscreen mode.
-		 * @param topmost Whether to set the view as topmost or not.
-		 */
-		void setTopmost(final boolean topmost);
-
-		/**
-		 * Called from the main thread
-		 * @param view The pre-constructed view
-		 */
-		void setup(final ITurboBarView view);
-
-		void updateWindowTitle(WindowTitleChangePayload windowTitleChangePayload);
-
-		void updateSysBtns(WindowSysBtnUpdatePayload windowSysBtnUpdatePayload);
-
-		@FunctionalInterface
-		interface ViewAction {
-			void invoke(ITurboBarPresenter presenter, Event event);
-		}
-	}
-}
+package com.cosmicdan.turboshell.turbobar;
+
+import com.cosmicdan.turboshell.ConfigKey;
+import com.cosmicdan.turboshell.ConfigSnapshot;
+import com.cosmicdan.turboshell.common.model.payload.CalendarChangePayload;
+import com.cosmicdan.turboshell.common.model.payload.ConfigChangePayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowActionResultPayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowSysBtnUpdatePayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowTitleChangePayload;
+import com.cosmicdan.turboshell.winapi.model.Monitor;
+import com.cosmicdan.turboshell.winapi.model.WindowTitleIndex;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import javafx.event.Event;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Contract between TurboBar view and presenter
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public class TurboBarContract {
+	@SuppressWarnings("CyclicClassDependency")
+	public interface ITurboBarView {
+		enum SysBtnMinimizeState {ENABLED, DISABLED}
+		enum SysBtnResizeState {MAXIMIZE, RESTORE, DISABLED}
+		enum SysBtnCloseAction {CANCEL, CLICK, PRIMARY_HELD, SECONDARY_HELD}
+
+		void setup(ITurboBarPresenter presenter, int xPos, int yPos, int width, int barHeight, String css, String windowName);
+		void redraw(final int xPos, final int yPos, final int width, final int barHeight);
+		/**
+		 * Move and resize the bar without rebuilding its controls, e.g. when its monitor's work area has changed.
+		 */
+		void reposition(final int xPos, final int yPos, final int width);
+		void close();
+		void updateSysBtnMinimize(SysBtnMinimizeState toState);
+		void updateSysBtnResize(SysBtnResizeState toState);
+		void updateDateTime(String dateTime);
+		void updateWindowTitle(String windowTitle);
+		/**
+		 * Show the TurboMenu window switcher, or hide it if it's already showing.
+		 */
+		void toggleTurboMenu();
+		/**
+		 * Apply the given config changes to the existing controls, without rebuilding them. Any thread.
+		 * @param changedKeys Only these keys need to be applied
+		 */
+		void updateConfig(Set<ConfigKey> changedKeys, ConfigSnapshot config);
+	}
+
+	@SuppressWarnings("CyclicClassDependency")
+	public interface ITurboBarPresenter {
+		/**
+		 * Required for AppBar callback.
+		 * @return The TurboBar HWnd.
+		 */
+		HWND getTurboBarHWnd();
+
+		/**
+		 * Used to toggle topmost property for TurboBar, e.g. when a foreground app enters fullscreen mode.
+		 * @param topmost Whether to set the view as topmost or not.
+		 */
+		void setTopmost(final boolean topmost);
+
+		/**
+		 * Called from the main thread
+		 * @param view The pre-constructed view
+		 */
+		void setup(final ITurboBarView view);
+
+		/**
+		 * @return The dispatch route of the monitor this TurboBar is on, for receiving only payloads meant for it
+		 */
+		int getMonitorRoute();
+
+		/**
+		 * Called from the main thread when the monitor's position or work area has changed.
+		 * @param monitor The new snapshot of this TurboBar's monitor
+		 */
+		void reposition(final Monitor monitor);
+
+		/**
+		 * Called from the main thread when the monitor has been removed. Unregisters the AppBar and closes the view.
+		 */
+		void teardown();
+
+		void updateWindowTitle(WindowTitleChangePayload windowTitleChangePayload);
+
+		void updateSysBtns(WindowSysBtnUpdatePayload windowSysBtnUpdatePayload);
+
+		void updateDateTime(CalendarChangePayload calendarChangePayload);
+
+		void updateWindowActionResult(WindowActionResultPayload windowActionResultPayload);
+
+		void updateConfig(ConfigChangePayload configChangePayload);
+
+		/**
+		 * Called from the JavaFX thread on every keystroke in the TurboMenu switcher.
+		 * @param query The text typed so far
+		 * @return The matching windows, most recently used first
+		 */
+		List<WindowTitleIndex.Entry> searchWindows(String query);
+
+		/**
+		 * Make sure the window search is ready, e.g. when the TurboMenu switcher is shown. Searches made before then
+		 * return nothing. Doesn't wait.
+		 * @param onReady Run once it is ready, on any thread
+		 */
+		void prepareWindowSearch(Runnable onReady);
+
+		/**
+		 * Switch to the given window, e.g. one chosen in the TurboMenu switcher.
+		 */
+		void activateWindow(WindowTitleIndex.Entry window);
+
+		void showTurboMenu();
+
+		@FunctionalInterface
+		interface ViewAction {
+			void invoke(ITurboBarPresenter presenter, Event event);
+		}
+	}
+}
@@ -1,94 +1,146 @@
-package com.cosmicdan.turboshell.turbobar;
-
-import com.cosmicdan.turboshell.common.control.AdaptiveButton;
-import com.cosmicdan.turboshell.TurboShellConfig;
-import javafx.event.Event;
-import javafx.event.EventHandler;
-import javafx.event.EventType;
-import javafx.geometry.Insets;
-import javafx.geometry.Pos;
-import javafx.scene.control.Label;
-import javafx.scene.layout.*;
-import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
-import lombok.extern.log4j.Log4j2;
-
-/**
- * Main factory for creating TurboBar control
- * @author Daniel 'CosmicDan' Connolly
- */
-
-@Log4j2(topic = "TurboBarControlFactory")
-class TurboBarControlFactory {
-	private int mTurboBarHeight;
-	private Class<?> mSourceClass;
-
-	private static final String LABEL_FONT_NAME = "Consolas";
-	private static final int LABEL_FONT_SIZE = 11;
-
-	void setupFactory(final Class<?> sourceClass, final int turboBarHeight) {
-		mTurboBarHeight = turboBarHeight;
-		mSourceClass = sourceClass;
-	}
-
-	/**
-	 * @return An auto-stretch region for HBox children, providing right-aligned control for anything that follows.
-	 */
-	Region newHboxPaddingRegion() {
-		final Region centerPadding = new Region();
-		HBox.setHgrow(centerPadding, Priority.ALWAYS);
-		return centerPadding;
-	}
-
-	Region newVerticalSeparator() {
-		final Region separator = new Region();
-		separator.setMaxSize(1, Double.MAX_VALUE);
-		separator.setPrefSize(1, Double.MAX_VALUE);
-		TurboShellConfig.styleTurboBarSeparator(separator);
-		return separator;
-	}
-
-	Label newLabel() {
-		final Label label = new Label();
-		label.setTextFill(Color.web(TurboShellConfig.getTextColorMain()));
-		label.setFont(Font.font(LABEL_FONT_NAME, LABEL_FONT_SIZE));
-		label.setPadding(new Insets(5));
-		label.setOpacity(1.0);
-		label.setAlignment(Pos.CENTER);
-		return label;
-	}
-
-	/**
-	 * Build a new transparent Button with no text and a single graphic state
-	 */
-	final <T extends Event> AdaptiveButton newGenericButton(final String imageResourcePath,
-															final EventType<T> eventType,
-															final EventHandler<? super T> eventHandler) {
-		return newGenericButton("", new String[] {imageResourcePath}, eventType, eventHandler);
-	}
-
-	/**
-	 * Build a new transparent Button with no text and multiple graphic states
-	 */
-	final <T extends Event> AdaptiveButton newGenericButton(final String[] imageResourcePaths,
-															final EventType<T> eventType,
-															final EventHandler<? super T> eventHandler) {
-		return newGenericButton("", imageResourcePaths, eventType, eventHandler);
-	}
-
-	/**
-	 * Build a new transparent Button with text and multiple graphic states
-	 */
-	private <T extends Event> AdaptiveButton newGenericButton(final String text,
-															  final String[] imageResourcePaths,
-															  final EventType<T> eventType,
-															  final EventHandler<? super T> eventHandler) {
-		final AdaptiveButton button = new AdaptiveButton(mSourceClass, text, imageResourcePaths);
-		button.setPrefHeight(mTurboBarHeight);
-
-		if (null != eventType) {
-			button.addEventHandler(eventType, eventHandler);
-		}
-		return button;
-	}
-}
+package com.cosmicdan.turboshell.turbobar;
+
+import com.cosmicdan.turboshell.common.control.AdaptiveButton;
+import com.cosmicdan.turboshell.common.control.ImageAtlas;
+import com.cosmicdan.turboshell.ConfigSnapshot;
+import com.cosmicdan.turboshell.TurboShellConfig;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.event.EventType;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.stage.Screen;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.List;
+
+/**
+ * Main factory for creating TurboBar control
+ * @author Daniel 'CosmicDan' Connolly
+ */
+
+@Log4j2(topic = "TurboBarControlFactory")
+class TurboBarControlFactory {
+	private int mTurboBarHeight;
+	private Class<?> mSourceClass;
+	private double mScale = 1.0;
+
+	private static final String LABEL_FONT_NAME = "Consolas";
+	private static final int LABEL_FONT_SIZE = 11;
+	private static final double DEFAULT_DPI = 96.0;
+
+	// sysbtn icons, all in one atlas. Cells are in the same order as the constants below.
+	private static final ImageAtlas SYSBTN_ATLAS = new ImageAtlas(TurboBarControlFactory.class, "TurboBar_sysbtn_atlas.png", 22, 22);
+	static final int SYSBTN_MINIMIZE = 0;
+	static final int SYSBTN_RESIZE_MAXIMIZE = 1;
+	static final int SYSBTN_RESIZE_RESTORE = 2;
+	static final int SYSBTN_CLOSE = 3;
+
+	/**
+	 * @param scale The scale of the monitor the controls are for, see {@link #getMonitorScale}
+	 */
+	void setupFactory(final Class<?> sourceClass, final int turboBarHeight, final double scale) {
+		mTurboBarHeight = turboBarHeight;
+		mSourceClass = sourceClass;
+		mScale = scale;
+	}
+
+	/**
+	 * Change the height of controls built from now on, e.g. after the config changed. Existing controls aren't touched.
+	 */
+	void setFactoryHeight(final int turboBarHeight) {
+		mTurboBarHeight = turboBarHeight;
+	}
+
+	/**
+	 * @return The DPI scale of the screen containing the given area, e.g. 1.5 for 144 DPI; or 1 if it's not on any screen
+	 */
+	static double getMonitorScale(final double xPos, final double yPos, final double width, final double height) {
+		final List<Screen> screens = Screen.getScreensForRectangle(xPos, yPos, width, height);
+		if (screens.isEmpty())
+			return 1.0;
+		return Math.max(1.0, screens.get(0).getDpi() / DEFAULT_DPI);
+	}
+
+	Region newVerticalSeparator() {
+		final Region separator = new Region();
+		separator.setMaxSize(1, Double.MAX_VALUE);
+		separator.setPrefSize(1, Double.MAX_VALUE);
+		styleVerticalSeparator(separator, TurboShellConfig.getSnapshot());
+		return separator;
+	}
+
+	/**
+	 * Apply the separator theme from the given config. Also used to re-style existing separators when it changes.
+	 */
+	static void styleVerticalSeparator(final Region separator, final ConfigSnapshot config) {
+		final double marginX = config.getTurboBarSeparatorMarginX();
+		final double marginY = config.getTurboBarSeparatorMarginY();
+		TurboBarPane.setMargin(separator, new Insets(marginY, marginX, marginY, marginX));
+		separator.setBackground(new Background(new BackgroundFill(
+				Color.web(config.getTurboBarSeparatorColor()), CornerRadii.EMPTY, Insets.EMPTY)));
+		separator.setOpacity(config.getTurboBarSeparatorOpacity());
+	}
+
+	Label newLabel() {
+		final Label label = new Label();
+		label.setTextFill(Color.web(TurboShellConfig.getTextColorMain()));
+		label.setFont(Font.font(LABEL_FONT_NAME, LABEL_FONT_SIZE));
+		label.setPadding(new Insets(5));
+		label.setOpacity(1.0);
+		label.setAlignment(Pos.CENTER);
+		return label;
+	}
+
+	/**
+	 * Build a new transparent Button with no text and a single graphic state
+	 */
+	final <T extends Event> AdaptiveButton newGenericButton(final String imageResourcePath,
+															final EventType<T> eventType,
+															final EventHandler<? super T> eventHandler) {
+		return newGenericButton("", new String[] {imageResourcePath}, eventType, eventHandler);
+	}
+
+	/**
+	 * Build a new transparent Button with no text and multiple graphic states
+	 */
+	final <T extends Event> AdaptiveButton newGenericButton(final String[] imageResourcePaths,
+															final EventType<T> eventType,
+															final EventHandler<? super T> eventHandler) {
+		return newGenericButton("", imageResourcePaths, eventType, eventHandler);
+	}
+
+	/**
+	 * Build a new transparent Button with no text and a graphic state for each of the given sysbtn atlas cells
+	 */
+	final <T extends Event> AdaptiveButton newSysBtn(final int[] sysBtnCells,
+													 final EventType<T> eventType,
+													 final EventHandler<? super T> eventHandler) {
+		return setupButton(new AdaptiveButton(SYSBTN_ATLAS, sysBtnCells, mScale, ""), eventType, eventHandler);
+	}
+
+	/**
+	 * Build a new transparent Button with text and multiple graphic states
+	 */
+	private <T extends Event> AdaptiveButton newGenericButton(final String text,
+															  final String[] imageResourcePaths,
+															  final EventType<T> eventType,
+															  final EventHandler<? super T> eventHandler) {
+		return setupButton(new AdaptiveButton(mSourceClass, text, imageResourcePaths), eventType, eventHandler);
+	}
+
+	private <T extends Event> AdaptiveButton setupButton(final AdaptiveButton button,
+														 final EventType<T> eventType,
+														 final EventHandler<? super T> eventHandler) {
+		button.setPrefHeight(mTurboBarHeight);
+
+		if (null != eventType) {
+			button.addEventHandler(eventType, eventHandler);
+		}
+		return button;
+	}
+}
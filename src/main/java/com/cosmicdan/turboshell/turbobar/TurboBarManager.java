@@ -0,0 +1,99 @@
+package com.cosmicdan.turboshell.turbobar;
+
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarView;
+import com.cosmicdan.turboshell.winapi.model.Monitor;
+import com.cosmicdan.turboshell.winapi.model.MonitorIndex;
+import com.cosmicdan.turboshell.winapi.model.MonitorIndex.MonitorChanges;
+import com.cosmicdan.turboshell.winapi.model.WinEventAgent;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns one TurboBar per monitor. All of them are fed by the single WinEventAgent, which routes each window's payloads
+ * to the TurboBar of the monitor the window is on. On a display change only the affected TurboBars are touched - new
+ * monitors get a new TurboBar, removed ones have theirs torn down, and resized ones are just moved.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class TurboBarManager {
+	public static final TurboBarManager INSTANCE = new TurboBarManager();
+
+	// TurboBars by monitor device name. FX thread only.
+	private final Map<String, ITurboBarPresenter> mTurboBars = new HashMap<>(4);
+	private final AtomicBoolean mRefreshPending = new AtomicBoolean(false);
+	// the JavaFX primary stage, until it's used by the first TurboBar
+	private Stage mPrimaryStage = null;
+
+	private TurboBarManager() {}
+
+	/**
+	 * Create a TurboBar for every current monitor. Called from the main thread.
+	 * @param primaryStage The JavaFX primary stage, used for the first TurboBar
+	 */
+	public void start(final Stage primaryStage) {
+		mPrimaryStage = primaryStage;
+		// TurboBars come and go with their monitors, so closing the last one shouldn't end the application
+		Platform.setImplicitExit(false);
+		refresh();
+	}
+
+	/**
+	 * Re-check the monitors on the main thread, e.g. after a WM_DISPLAYCHANGE. May be called from any thread; requests
+	 * made before the pending refresh has run are merged into it.
+	 */
+	public void requestDisplayRefresh() {
+		if (mRefreshPending.compareAndSet(false, true))
+			Platform.runLater(this::refresh);
+	}
+
+	private void refresh() {
+		mRefreshPending.set(false);
+		final MonitorChanges changes = MonitorIndex.INSTANCE.refresh();
+		// Windows may have handed out new HMONITORs even if nothing else changed, so windows need re-resolving anyway
+		WinEventAgent.INSTANCE.onMonitorsChanged();
+		for (final Monitor monitor : changes.getRemoved()) {
+			final ITurboBarPresenter turboBarPresenter = mTurboBars.remove(monitor.getDeviceName());
+			if (null != turboBarPresenter) {
+				log.info("Removing TurboBar from {}", monitor);
+				turboBarPresenter.teardown();
+			}
+		}
+		for (final Monitor monitor : changes.getMoved()) {
+			final ITurboBarPresenter turboBarPresenter = mTurboBars.get(monitor.getDeviceName());
+			if (null != turboBarPresenter) {
+				log.info("Moving TurboBar to {}", monitor);
+				turboBarPresenter.reposition(monitor);
+			}
+		}
+		// primary monitor first, so it gets the primary stage
+		final List<Monitor> added = new ArrayList<>(changes.getAdded());
+		added.sort(Comparator.comparing((Monitor monitor) -> !monitor.isPrimary()));
+		for (final Monitor monitor : added) {
+			log.info("Adding TurboBar to {}", monitor);
+			addTurboBar(monitor);
+		}
+	}
+
+	private void addTurboBar(final Monitor monitor) {
+		final Stage stage;
+		if (null == mPrimaryStage) {
+			stage = new Stage();
+		} else {
+			stage = mPrimaryStage;
+			mPrimaryStage = null;
+		}
+		final ITurboBarView turboBarView = new TurboBarView(stage);
+		final ITurboBarPresenter turboBarPresenter = new TurboBarPresenter(monitor);
+		turboBarPresenter.setup(turboBarView);
+		mTurboBars.put(monitor.getDeviceName(), turboBarPresenter);
+	}
+}
@@ -0,0 +1,181 @@
+package com.cosmicdan.turboshell.turbobar;
+
+import javafx.geometry.HPos;
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.layout.Pane;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Layout for the TurboBar - a group of controls on the left, a group on the right, and a title centered on the whole
+ * bar (not just on the space between the groups). If the title doesn't fit centered it's centered in the free space
+ * instead, and is shrunk (i.e. ellipsized) only if that isn't enough either.
+ * <p>
+ * Everything is placed in a single layoutChildren pass with no listeners. The pass is skipped entirely unless the bar's
+ * size, a child's preferred size or a child's margin has changed since the last one, so e.g. a title change that doesn't
+ * change its size costs nothing here.
+ * <p>
+ * Like HBox, a child can be given a margin with {@link #setMargin}.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public class TurboBarPane extends Pane {
+	private static final String MARGIN_CONSTRAINT = "turbobar-margin";
+
+	private final List<Node> mLeft = new ArrayList<>(4);
+	private final List<Node> mRight = new ArrayList<>(8);
+	private Node mCenter = null;
+
+	// state of the last layout pass, to skip passes that wouldn't change anything
+	private double[] mPrefWidths = new double[0];
+	private double[] mLastPrefWidths = new double[0];
+	private double[] mPrefHeights = new double[0];
+	private double[] mLastPrefHeights = new double[0];
+	private double mLastWidth = -1.0;
+	private double mLastHeight = -1.0;
+
+	/**
+	 * Set the space around the given child, e.g. to keep a separator off the edges of the bar
+	 */
+	public static void setMargin(final Node child, final Insets margin) {
+		if (null == margin)
+			child.getProperties().remove(MARGIN_CONSTRAINT);
+		else
+			child.getProperties().put(MARGIN_CONSTRAINT, margin);
+		final Parent parent = child.getParent();
+		if (parent instanceof TurboBarPane) {
+			// the slot sizes don't show every margin change (e.g. only top and bottom), so make sure the next pass runs
+			((TurboBarPane) parent).mLastWidth = -1.0;
+		}
+		if (null != parent)
+			parent.requestLayout();
+	}
+
+	/**
+	 * @return The margin of the given child, or null if it has none
+	 */
+	public static Insets getMargin(final Node child) {
+		return child.hasProperties() ? (Insets) child.getProperties().get(MARGIN_CONSTRAINT) : null;
+	}
+
+	/**
+	 * Replace all controls on the bar
+	 * @param left Controls on the left, from left to right
+	 * @param center The title
+	 * @param right Controls on the right, from left to right
+	 */
+	final void setControls(final List<? extends Node> left, final Node center, final List<? extends Node> right) {
+		mLeft.clear();
+		mLeft.addAll(left);
+		mCenter = center;
+		mRight.clear();
+		mRight.addAll(right);
+		final List<Node> children = new ArrayList<>(mLeft.size() + 1 + mRight.size());
+		children.addAll(mLeft);
+		children.add(mCenter);
+		children.addAll(mRight);
+		mPrefWidths = new double[children.size()];
+		mLastPrefWidths = new double[children.size()];
+		mPrefHeights = new double[children.size()];
+		mLastPrefHeights = new double[children.size()];
+		mLastWidth = -1.0;
+		getChildren().setAll(children);
+	}
+
+	@Override
+	protected void layoutChildren() {
+		if (null == mCenter)
+			return;
+		final double width = getWidth();
+		final double height = getHeight();
+		// children are in the same order as mPrefWidths and mPrefHeights: left, center, right
+		final List<Node> children = getChildren();
+		for (int i = 0; i < mPrefWidths.length; i++) {
+			mPrefWidths[i] = getSlotWidth(children.get(i));
+			mPrefHeights[i] = getSlotHeight(children.get(i));
+		}
+		if ((width == mLastWidth) && (height == mLastHeight) && Arrays.equals(mPrefWidths, mLastPrefWidths) &&
+				Arrays.equals(mPrefHeights, mLastPrefHeights))
+			return;
+		System.arraycopy(mPrefWidths, 0, mLastPrefWidths, 0, mPrefWidths.length);
+		System.arraycopy(mPrefHeights, 0, mLastPrefHeights, 0, mPrefHeights.length);
+		mLastWidth = width;
+		mLastHeight = height;
+
+		final Insets insets = getInsets();
+		final double top = snapPosition(insets.getTop());
+		final double contentHeight = height - top - snapPosition(insets.getBottom());
+		final double contentLeft = snapPosition(insets.getLeft());
+		final double contentRight = width - snapPosition(insets.getRight());
+
+		// left group, from the left edge
+		double leftEdge = contentLeft;
+		int index = 0;
+		for (final Node node : mLeft) {
+			layoutInArea(node, leftEdge, top, mPrefWidths[index], contentHeight, 0, getMargin(node), HPos.LEFT, VPos.CENTER);
+			leftEdge += mPrefWidths[index];
+			index++;
+		}
+		final int centerIndex = index;
+
+		// right group, from the right edge
+		double rightGroupWidth = 0.0;
+		for (int i = centerIndex + 1; i < mPrefWidths.length; i++) {
+			rightGroupWidth += mPrefWidths[i];
+		}
+		final double rightEdge = Math.max(leftEdge, contentRight - rightGroupWidth);
+		double x = rightEdge;
+		for (final Node node : mRight) {
+			index++;
+			layoutInArea(node, x, top, mPrefWidths[index], contentHeight, 0, getMargin(node), HPos.LEFT, VPos.CENTER);
+			x += mPrefWidths[index];
+		}
+
+		// title, centered on the bar if possible, otherwise in whatever space is left between the groups
+		final double freeWidth = Math.max(0.0, rightEdge - leftEdge);
+		final double titleWidth = Math.min(mPrefWidths[centerIndex], freeWidth);
+		final double centeredX = snapPosition(contentLeft + (((contentRight - contentLeft) - titleWidth) / 2.0));
+		final double titleX = Math.min(Math.max(centeredX, leftEdge), rightEdge - titleWidth);
+		layoutInArea(mCenter, titleX, top, titleWidth, contentHeight, 0, getMargin(mCenter), HPos.CENTER, VPos.CENTER);
+	}
+
+	/**
+	 * @return The preferred width of the given child plus its margin
+	 */
+	private double getSlotWidth(final Node child) {
+		final Insets margin = getMargin(child);
+		final double marginWidth = (null == margin) ? 0.0 : (snapSpace(margin.getLeft()) + snapSpace(margin.getRight()));
+		return snapSize(child.prefWidth(-1)) + marginWidth;
+	}
+
+	/**
+	 * @return The preferred height of the given child plus its margin
+	 */
+	private double getSlotHeight(final Node child) {
+		final Insets margin = getMargin(child);
+		final double marginHeight = (null == margin) ? 0.0 : (snapSpace(margin.getTop()) + snapSpace(margin.getBottom()));
+		return snapSize(child.prefHeight(-1)) + marginHeight;
+	}
+
+	@Override
+	protected double computePrefWidth(final double height) {
+		double prefWidth = snapSpace(getInsets().getLeft()) + snapSpace(getInsets().getRight());
+		for (final Node node : getChildren()) {
+			prefWidth += getSlotWidth(node);
+		}
+		return prefWidth;
+	}
+
+	@Override
+	protected double computePrefHeight(final double width) {
+		double prefHeight = 0.0;
+		for (final Node node : getChildren()) {
+			prefHeight = Math.max(prefHeight, getSlotHeight(node));
+		}
+		return snapSpace(getInsets().getTop()) + prefHeight + snapSpace(getInsets().getBottom());
+	}
+}
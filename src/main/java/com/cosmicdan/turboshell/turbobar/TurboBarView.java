@@ -1,283 +1,363 @@
-package com.cosmicdan.turboshell.turbobar;
-
-import com.cosmicdan.turboshell.TurboShellConfig;
-import com.cosmicdan.turboshell.common.control.AdaptiveButton;
-import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
-import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarView;
-import com.cosmicdan.turboshell.turbobar.TurboBarPresenter.SysBtnAction;
-import com.cosmicdan.turboshell.turbobar.TurboBarPresenter.SystemAction;
-import com.cosmicdan.turboshell.turbobar.animation.KillCountdownProgress;
-import com.cosmicdan.turboshell.turbobar.animation.KillCountdownProgress.AnimationDirection;
-import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
-import javafx.geometry.Pos;
-import javafx.scene.Scene;
-import javafx.scene.control.Label;
-import javafx.scene.input.MouseButton;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.Region;
-import javafx.stage.Stage;
-import javafx.stage.StageStyle;
-import javafx.util.Duration;
-import lombok.extern.log4j.Log4j2;
-
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * TurboBar view
- * @author Daniel 'CosmicDan' Connolly
- */
-@SuppressWarnings("ClassWithTooManyDependencies")
-@Log4j2(topic = "TurboBarView")
-public class TurboBarView extends TurboBarControlFactory implements ITurboBarView {
-	private SysBtnCloseAction currentCloseAction = SysBtnCloseAction.CLICK;
-
-	private final Stage mPrimaryStage;
-	private final HBox pane;
-
-	private ITurboBarPresenter mPresenter = null;
-
-	// Controls
-	// We re-use this collection during runtime for modifying positioning
-	private final List<Region> coreControls = new ArrayList<>(10);
-	private Region centerPaddingLeft = null;
-	private Region centerPaddingLeftAdjuster = null; // Grows as calculated to keep title centered
-	private Label windowTitleLbl = null;
-	private Region centerPaddingRight = null;
-	private Region centerPaddingRightAdjuster = null; // Grows as calculated to keep title centered
-	private Label dateTimeLbl = null;
-	private AdaptiveButton sysBtnMinimize = null;
-	private AdaptiveButton sysBtnResize = null;
-	private AdaptiveButton sysBtnClose = null;
-
-	public TurboBarView(final Stage primaryStage) {
-		mPrimaryStage = primaryStage;
-		pane = new HBox();
-		pane.setId("turbobar");
-		pane.setAlignment(Pos.CENTER_LEFT);
-	}
-
-	@Override
-	public final void setup(final ITurboBarPresenter presenter, final int xPos, final int width, final int barHeight, final String css, final String windowName) {
-		// TODO: This will need to be called again if the environment changes (resolution, startbar position, etc)
-		// initial stage setup
-		mPresenter = presenter;
-		final Scene scene = new Scene(pane, width, barHeight);
-		scene.getStylesheets().add(css);
-		mPrimaryStage.initStyle(StageStyle.UTILITY);
-		mPrimaryStage.setScene(scene);
-		mPrimaryStage.setTitle(windowName);
-		mPrimaryStage.setAlwaysOnTop(true);
-		// add action for click on TurboBar itself
-		scene.setOnMouseClicked((MouseEvent event) -> {
-			SystemAction.ACTIVATE_LAST_MAXIMIZED.invoke(mPresenter, event);
-		});
-		redraw(xPos, width, barHeight);
-
-	}
-
-	@Override
-	public final void redraw(final int newXPos, final int newBarWidth, final int newBarHeight) {
-		setupCoreControls(newBarHeight);
-		mPrimaryStage.setWidth(newBarWidth);
-		mPrimaryStage.setHeight(newBarHeight);
-		mPrimaryStage.setX(newXPos);
-		mPrimaryStage.setY(0);
-		mPrimaryStage.show();
-	}
-
-	private void setupCoreControls(final int barHeight) {
-		// remove all existing controls, if any
-		pane.getChildren().removeAll(coreControls);
-		coreControls.clear();
-
-		// Start a new controls factory
-		//final TurboBarControlFactory factory = new TurboBarControlFactory(getClass(), barHeight);
-		setupFactory(getClass(), barHeight);
-
-		//////////////////////////////////////////////////////////////
-		// Center-left padding (for center alignment of title)
-		//////////////////////////////////////////////////////////////
-		centerPaddingLeft = newHboxPaddingRegion();
-		coreControls.add(centerPaddingLeft);
-		// Grows as calculated to keep title centered
-		centerPaddingLeftAdjuster = newHboxPaddingRegion();
-		centerPaddingLeftAdjuster.setMinWidth(Region.USE_PREF_SIZE);
-		centerPaddingLeftAdjuster.setMaxWidth(Region.USE_PREF_SIZE);
-		coreControls.add(centerPaddingLeftAdjuster);
-
-		// Current Window title
-		windowTitleLbl = newLabel();
-		coreControls.add(windowTitleLbl);
-
-		//////////////////////////////////////////////////////////////
-		// Center-right padding (for center alignment of title, and right-aligned controls)
-		//////////////////////////////////////////////////////////////
-		// Grows as calculated to keep title centered
-		centerPaddingRightAdjuster = newHboxPaddingRegion();
-		centerPaddingRightAdjuster.setMinWidth(Region.USE_PREF_SIZE);
-		centerPaddingRightAdjuster.setMaxWidth(Region.USE_PREF_SIZE);
-		coreControls.add(centerPaddingRightAdjuster);
-		centerPaddingRight = newHboxPaddingRegion();
-		coreControls.add(centerPaddingRight);
-
-		// Date
-		dateTimeLbl = newLabel();
-		// always try to fit
-		dateTimeLbl.setMinWidth(Region.USE_PREF_SIZE);
-		coreControls.add(dateTimeLbl);
-
-		// Separator
-		coreControls.add(newVerticalSeparator());
-
-		//////////////////////////////////////////////////////////////
-		// SysButtons
-		//////////////////////////////////////////////////////////////
-
-		// minimize
-		sysBtnMinimize = newGenericButton(
-				"TurboBar_sysbtn_minimize.png",
-				MouseEvent.MOUSE_CLICKED,
-				(MouseEvent event) -> SysBtnAction.MINIMIZE.invoke(mPresenter, event));
-		coreControls.add(sysBtnMinimize);
-		// resize (maximize/restore)
-		sysBtnResize = newGenericButton(
-				new String[] {"TurboBar_sysbtn_resize_maximize.png", "TurboBar_sysbtn_resize_restore.png"},
-				MouseEvent.MOUSE_CLICKED,
-				(MouseEvent event) -> SysBtnAction.RESIZE.invoke(mPresenter, event));
-		coreControls.add(sysBtnResize);
-		// close
-		sysBtnClose = newGenericButton(
-				"TurboBar_sysbtn_close.png",
-				null,
-				null);
-		sysBtnClose.addEventFilter(MouseEvent.MOUSE_RELEASED, (MouseEvent event) -> {
-			performCloseAction(currentCloseAction, mPresenter, event);
-			// reset
-			currentCloseAction = SysBtnCloseAction.CLICK;
-		});
-		// close button primary-click-and-hold
-		setHoldButtonHandler(MouseButton.PRIMARY, sysBtnClose, Duration.seconds(1), (MouseEvent event)
-				-> currentCloseAction = SysBtnCloseAction.PRIMARY_HELD);
-		// close button secondary-click-and-hold
-		setHoldButtonHandler(MouseButton.SECONDARY, sysBtnClose, Duration.seconds(1), (MouseEvent event)
-				-> currentCloseAction = SysBtnCloseAction.SECONDARY_HELD);
-		sysBtnClose.setId("close");
-		coreControls.add(sysBtnClose);
-
-		//////////////////////////////////////////////////////////////
-		// TurboBar controls done, add barWidth change listener then add them all to the stage
-		//////////////////////////////////////////////////////////////
-		pane.getChildren().addAll(coreControls);
-		final ChangeListener<Number> changeListener =
-				(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) -> updateTitlePaddingAdjusters();
-		for (final Region childControl : coreControls) {
-			childControl.widthProperty().addListener(changeListener);
-		}
-	}
-
-	private void updateTitlePaddingAdjusters() {
-		// abort if all the controls are not ready
-		if (coreControls.isEmpty())
-			return;
-
-		// calculate which adjuster needs to be enlarged so the title stays centered
-		final int leftPaddingIndex = coreControls.indexOf(centerPaddingLeft);
-		final int rightPaddingIndex = coreControls.indexOf(centerPaddingRight);
-		double controlsWidthLeft = 0.0;
-		double controlsWidthRight = 0.0;
-		for (int i = 0; i < coreControls.size(); i++) {
-			if (i < leftPaddingIndex) {
-				controlsWidthLeft += coreControls.get(i).getWidth();
-			} else if (i > rightPaddingIndex) {
-				controlsWidthRight += coreControls.get(i).getWidth();
-			}
-		}
-
-		centerPaddingLeftAdjuster.setPrefWidth(0);
-		centerPaddingRightAdjuster.setPrefWidth(0);
-
-		if (controlsWidthRight > controlsWidthLeft) {
-			centerPaddingLeftAdjuster.setPrefWidth(controlsWidthRight);
-		} else {
-			centerPaddingRightAdjuster.setPrefWidth(controlsWidthRight);
-		}
-	}
-
-	/**
-	 * Thanks to James_D @ StackOverflow for the basis of this
-	 * https://stackoverflow.com/a/25610190/1767892
-	 */
-	private void setHoldButtonHandler(final MouseButton mouseButton, final AdaptiveButton node, final Duration holdTime, final EventHandler<MouseEvent> handler) {
-		final MouseEvent[] mouseEvent = {null};
-
-		final boolean isPrimaryClick = MouseButton.PRIMARY == mouseButton;
-		final String colorHex = isPrimaryClick ? TurboShellConfig.getTurboBarCloseBgPrimary() : TurboShellConfig.getTurboBarCloseBgSecondary();
-
-		final KillCountdownProgress holdTimer = new KillCountdownProgress(
-				holdTime, sysBtnClose, colorHex, isPrimaryClick ? AnimationDirection.REVERSE : AnimationDirection.NORMAL);
-		holdTimer.setOnFinished((ActionEvent event) -> handler.handle(mouseEvent[0]));
-
-		node.addEventHandler(MouseEvent.MOUSE_PRESSED, (MouseEvent event) -> {
-			if (mouseButton == event.getButton()) {
-				mouseEvent[0] = event ;
-				holdTimer.playFromStart();
-			}
-		});
-		node.addEventHandler(MouseEvent.MOUSE_RELEASED, (MouseEvent event) -> holdTimer.stop());
-		node.addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, (MouseEvent event) -> {
-			// abort any existing action
-			currentCloseAction = SysBtnCloseAction.CANCEL;
-			holdTimer.stop();
-		});
-		node.addEventHandler(MouseEvent.MOUSE_ENTERED_TARGET, (MouseEvent event) -> {
-			// re-set default action
-			currentCloseAction = SysBtnCloseAction.CLICK;
-		});
-	}
-
-	@Override
-	public final void updateSysBtnMinimize(final SysBtnMinimizeState toState) {
-		Platform.runLater(() -> sysBtnMinimize.setDisable(SysBtnMinimizeState.DISABLED == toState));
-	}
-
-	@Override
-	public final void updateSysBtnResize(final SysBtnResizeState toState) {
-		Platform.runLater(() -> {
-			if (SysBtnResizeState.RESTORE == toState) {
-				sysBtnResize.setImageViewIndex(1);
-			} else {
-				// set it to "maximize" graphic by default
-				sysBtnResize.setImageViewIndex(0);
-			}
-			// set disabled/enabled
-			sysBtnResize.setDisable(SysBtnResizeState.DISABLED == toState);
-		});
-	}
-
-	@Override
-	public final void updateDateTime(final String dateTime) {
-		log.info(dateTime);
-		Platform.runLater(() -> dateTimeLbl.setText(dateTime));
-	}
-
-	@Override
-	public final void updateWindowTitle(final String windowTitle) {
-		if (!windowTitleLbl.getText().equals(windowTitle)) {
-			//log.info("Got window title update: {}", windowTitle);
-			Platform.runLater(() -> windowTitleLbl.setText(windowTitle));
-		}
-	}
-
-	private static void performCloseAction(final SysBtnCloseAction action, final ITurboBarPresenter mPresenter, final MouseEvent event) {
-		if ((SysBtnCloseAction.CLICK == action) && (MouseButton.PRIMARY != event.getButton()))
-			// we don't take any action for secondary-click
-			return;
-		SysBtnAction.performCloseAction(action, mPresenter, event);
-	}
-}
+package com.cosmicdan.turboshell.turbobar;
+
+import com.cosmicdan.turboshell.ConfigKey;
+import com.cosmicdan.turboshell.ConfigSnapshot;
+import com.cosmicdan.turboshell.TurboShellConfig;
+import com.cosmicdan.turboshell.common.control.AdaptiveButton;
+import com.cosmicdan.turboshell.common.metrics.LatencyHistogram;
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarView;
+import com.cosmicdan.turboshell.turbobar.TurboBarPresenter.MainButtonAction;
+import com.cosmicdan.turboshell.turbobar.TurboBarPresenter.SysBtnAction;
+import com.cosmicdan.turboshell.turbobar.TurboBarPresenter.SystemAction;
+import com.cosmicdan.turboshell.turbobar.animation.KillCountdownProgress;
+import com.cosmicdan.turboshell.turbobar.animation.KillCountdownProgress.AnimationDirection;
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.util.Duration;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TurboBar view
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@SuppressWarnings("ClassWithTooManyDependencies")
+@Log4j2(topic = "TurboBarView")
+public class TurboBarView extends TurboBarControlFactory implements ITurboBarView {
+	private SysBtnCloseAction currentCloseAction = SysBtnCloseAction.CLICK;
+
+	private final Stage mStage;
+	private final TurboBarPane pane;
+
+	private ITurboBarPresenter mPresenter = null;
+	private String mCss = null;
+	private TurboMenuSwitcher mTurboMenuSwitcher = null;
+
+	// Controls
+	private AdaptiveButton turboMenuBtn = null;
+	private Label windowTitleLbl = null;
+	private Label dateTimeLbl = null;
+	private AdaptiveButton sysBtnMinimize = null;
+	private AdaptiveButton sysBtnResize = null;
+	private AdaptiveButton sysBtnClose = null;
+	// kept for applying config changes in-place
+	private final List<AdaptiveButton> mButtons = new ArrayList<>(4);
+	private final List<Region> mSeparators = new ArrayList<>(2);
+	private KillCountdownProgress mPrimaryHoldTimer = null;
+	private KillCountdownProgress mSecondaryHoldTimer = null;
+
+	// Pending view state. Updates from agent threads only record the latest requested value and mark it dirty; all
+	// dirty values are then applied together in a single FX runnable, no matter how many updates arrived meanwhile.
+	private static final int DIRTY_SYSBTN_MINIMIZE = 1;
+	private static final int DIRTY_SYSBTN_RESIZE = 1 << 1;
+	private static final int DIRTY_DATE_TIME = 1 << 2;
+	private static final int DIRTY_WINDOW_TITLE = 1 << 3;
+	private final AtomicInteger mDirtyFlags = new AtomicInteger(0);
+	private final Runnable mApplyPendingState = this::applyPendingState;
+	private volatile SysBtnMinimizeState mPendingSysBtnMinimize = null;
+	private volatile SysBtnResizeState mPendingSysBtnResize = null;
+	private volatile String mPendingDateTime = null;
+	private volatile String mPendingWindowTitle = null;
+	// time from scheduling an apply until the FX thread runs it
+	private final LatencyHistogram mRunLaterLag = MetricsRegistry.INSTANCE.histogram("fx.runLaterLagNanos");
+	private volatile long mApplyScheduledNanos = 0L;
+
+	public TurboBarView(final Stage stage) {
+		mStage = stage;
+		pane = new TurboBarPane();
+		pane.setId("turbobar");
+	}
+
+	@Override
+	public final void setup(final ITurboBarPresenter presenter, final int xPos, final int yPos, final int width, final int barHeight,
+							final String css, final String windowName) {
+		// initial stage setup
+		mPresenter = presenter;
+		mCss = css;
+		final Scene scene = new Scene(pane, width, barHeight);
+		scene.getStylesheets().add(css);
+		mStage.initStyle(StageStyle.UTILITY);
+		mStage.setScene(scene);
+		mStage.setTitle(windowName);
+		mStage.setAlwaysOnTop(true);
+		// add action for click on TurboBar itself
+		scene.setOnMouseClicked((MouseEvent event) -> {
+			SystemAction.ACTIVATE_LAST_MAXIMIZED.invoke(mPresenter, event);
+		});
+		redraw(xPos, yPos, width, barHeight);
+
+	}
+
+	@Override
+	public final void redraw(final int newXPos, final int newYPos, final int newBarWidth, final int newBarHeight) {
+		setupCoreControls(newBarHeight, getMonitorScale(newXPos, newYPos, newBarWidth, newBarHeight));
+		mStage.setWidth(newBarWidth);
+		mStage.setHeight(newBarHeight);
+		mStage.setX(newXPos);
+		mStage.setY(newYPos);
+		mStage.show();
+	}
+
+	@Override
+	public final void reposition(final int newXPos, final int newYPos, final int newBarWidth) {
+		// the controls don't depend on position or width, so there's nothing to rebuild
+		mStage.setWidth(newBarWidth);
+		mStage.setX(newXPos);
+		mStage.setY(newYPos);
+	}
+
+	@Override
+	public final void close() {
+		mStage.close();
+	}
+
+	private void setupCoreControls(final int barHeight, final double scale) {
+		// Start a new controls factory
+		//final TurboBarControlFactory factory = new TurboBarControlFactory(getClass(), barHeight);
+		setupFactory(getClass(), barHeight, scale);
+		final List<Region> leftControls = new ArrayList<>(2);
+		final List<Region> rightControls = new ArrayList<>(5);
+		mButtons.clear();
+		mSeparators.clear();
+
+		//////////////////////////////////////////////////////////////
+		// TurboMenu
+		//////////////////////////////////////////////////////////////
+		turboMenuBtn = newGenericButton(
+				"TurboBar_turbomenu_button.png",
+				MouseEvent.MOUSE_CLICKED,
+				(MouseEvent event) -> MainButtonAction.TURBO_MENU.invoke(mPresenter, event));
+		turboMenuBtn.setId("turbomenu-button");
+		leftControls.add(turboMenuBtn);
+		leftControls.add(newSeparator());
+
+		// Current Window title (always centered by the pane)
+		windowTitleLbl = newLabel();
+
+		// Date
+		dateTimeLbl = newLabel();
+		// always try to fit
+		dateTimeLbl.setMinWidth(Region.USE_PREF_SIZE);
+		rightControls.add(dateTimeLbl);
+
+		// Separator
+		rightControls.add(newSeparator());
+
+		//////////////////////////////////////////////////////////////
+		// SysButtons
+		//////////////////////////////////////////////////////////////
+
+		// minimize
+		sysBtnMinimize = newSysBtn(
+				new int[] {SYSBTN_MINIMIZE},
+				MouseEvent.MOUSE_CLICKED,
+				(MouseEvent event) -> SysBtnAction.MINIMIZE.invoke(mPresenter, event));
+		rightControls.add(sysBtnMinimize);
+		// resize (maximize/restore)
+		sysBtnResize = newSysBtn(
+				new int[] {SYSBTN_RESIZE_MAXIMIZE, SYSBTN_RESIZE_RESTORE},
+				MouseEvent.MOUSE_CLICKED,
+				(MouseEvent event) -> SysBtnAction.RESIZE.invoke(mPresenter, event));
+		rightControls.add(sysBtnResize);
+		// close
+		sysBtnClose = newSysBtn(
+				new int[] {SYSBTN_CLOSE},
+				null,
+				null);
+		sysBtnClose.addEventFilter(MouseEvent.MOUSE_RELEASED, (MouseEvent event) -> {
+			performCloseAction(currentCloseAction, mPresenter, event);
+			// reset
+			currentCloseAction = SysBtnCloseAction.CLICK;
+		});
+		// close button primary-click-and-hold
+		mPrimaryHoldTimer = setHoldButtonHandler(MouseButton.PRIMARY, sysBtnClose, Duration.seconds(1), (MouseEvent event)
+				-> currentCloseAction = SysBtnCloseAction.PRIMARY_HELD);
+		// close button secondary-click-and-hold
+		mSecondaryHoldTimer = setHoldButtonHandler(MouseButton.SECONDARY, sysBtnClose, Duration.seconds(1), (MouseEvent event)
+				-> currentCloseAction = SysBtnCloseAction.SECONDARY_HELD);
+		sysBtnClose.setId("close");
+		rightControls.add(sysBtnClose);
+		mButtons.add(turboMenuBtn);
+		mButtons.add(sysBtnMinimize);
+		mButtons.add(sysBtnResize);
+		mButtons.add(sysBtnClose);
+
+		//////////////////////////////////////////////////////////////
+		// TurboBar controls done, replace whatever was on the bar before
+		//////////////////////////////////////////////////////////////
+		pane.setControls(leftControls, windowTitleLbl, rightControls);
+	}
+
+	private Region newSeparator() {
+		final Region separator = newVerticalSeparator();
+		mSeparators.add(separator);
+		return separator;
+	}
+
+	/**
+	 * Thanks to James_D @ StackOverflow for the basis of this
+	 * https://stackoverflow.com/a/25610190/1767892
+	 * @return The countdown, so its color can be changed later
+	 */
+	private KillCountdownProgress setHoldButtonHandler(final MouseButton mouseButton, final AdaptiveButton node, final Duration holdTime, final EventHandler<MouseEvent> handler) {
+		final MouseEvent[] mouseEvent = {null};
+
+		final boolean isPrimaryClick = MouseButton.PRIMARY == mouseButton;
+		final String colorHex = isPrimaryClick ? TurboShellConfig.getTurboBarCloseBgPrimary() : TurboShellConfig.getTurboBarCloseBgSecondary();
+
+		final KillCountdownProgress holdTimer = new KillCountdownProgress(
+				holdTime, sysBtnClose, colorHex, isPrimaryClick ? AnimationDirection.REVERSE : AnimationDirection.NORMAL);
+		holdTimer.setOnFinished((ActionEvent event) -> handler.handle(mouseEvent[0]));
+
+		node.addEventHandler(MouseEvent.MOUSE_PRESSED, (MouseEvent event) -> {
+			if (mouseButton == event.getButton()) {
+				mouseEvent[0] = event ;
+				holdTimer.playFromStart();
+			}
+		});
+		node.addEventHandler(MouseEvent.MOUSE_RELEASED, (MouseEvent event) -> holdTimer.stop());
+		node.addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, (MouseEvent event) -> {
+			// abort any existing action
+			currentCloseAction = SysBtnCloseAction.CANCEL;
+			holdTimer.stop();
+		});
+		node.addEventHandler(MouseEvent.MOUSE_ENTERED_TARGET, (MouseEvent event) -> {
+			// re-set default action
+			currentCloseAction = SysBtnCloseAction.CLICK;
+		});
+		return holdTimer;
+	}
+
+	@Override
+	public final void updateSysBtnMinimize(final SysBtnMinimizeState toState) {
+		mPendingSysBtnMinimize = toState;
+		markDirty(DIRTY_SYSBTN_MINIMIZE);
+	}
+
+	@Override
+	public final void updateSysBtnResize(final SysBtnResizeState toState) {
+		mPendingSysBtnResize = toState;
+		markDirty(DIRTY_SYSBTN_RESIZE);
+	}
+
+	@Override
+	public final void updateDateTime(final String dateTime) {
+		log.info(dateTime);
+		mPendingDateTime = dateTime;
+		markDirty(DIRTY_DATE_TIME);
+	}
+
+	@Override
+	public final void updateWindowTitle(final String windowTitle) {
+		//log.info("Got window title update: {}", windowTitle);
+		mPendingWindowTitle = windowTitle;
+		markDirty(DIRTY_WINDOW_TITLE);
+	}
+
+	/**
+	 * Flag the given pending state as dirty, and schedule an apply on the FX thread unless one is already pending.
+	 * Must be called <i>after</i> the pending value is set.
+	 */
+	private void markDirty(final int dirtyFlag) {
+		final int previous = mDirtyFlags.getAndUpdate((int flags) -> flags | dirtyFlag);
+		if (0 == previous) {
+			mApplyScheduledNanos = System.nanoTime();
+			Platform.runLater(mApplyPendingState);
+		}
+	}
+
+	/**
+	 * Apply all dirty view state in one go. Runs on the FX thread.
+	 */
+	private void applyPendingState() {
+		mRunLaterLag.recordSince(mApplyScheduledNanos);
+		// anything marked dirty after this will schedule another apply
+		final int dirtyFlags = mDirtyFlags.getAndSet(0);
+		if (0 == dirtyFlags)
+			return;
+		if (0 != (dirtyFlags & DIRTY_SYSBTN_MINIMIZE))
+			sysBtnMinimize.setDisable(SysBtnMinimizeState.DISABLED == mPendingSysBtnMinimize);
+		if (0 != (dirtyFlags & DIRTY_SYSBTN_RESIZE)) {
+			final SysBtnResizeState toState = mPendingSysBtnResize;
+			if (SysBtnResizeState.RESTORE == toState) {
+				sysBtnResize.setImageViewIndex(1);
+			} else {
+				// set it to "maximize" graphic by default
+				sysBtnResize.setImageViewIndex(0);
+			}
+			// set disabled/enabled
+			sysBtnResize.setDisable(SysBtnResizeState.DISABLED == toState);
+		}
+		if (0 != (dirtyFlags & DIRTY_DATE_TIME))
+			dateTimeLbl.setText(mPendingDateTime);
+		if (0 != (dirtyFlags & DIRTY_WINDOW_TITLE)) {
+			final String windowTitle = mPendingWindowTitle;
+			if (!windowTitleLbl.getText().equals(windowTitle))
+				windowTitleLbl.setText(windowTitle);
+		}
+	}
+
+	@Override
+	public final void toggleTurboMenu() {
+		// only created on first use, most sessions will never need it
+		if (null == mTurboMenuSwitcher)
+			mTurboMenuSwitcher = new TurboMenuSwitcher(mPresenter, mStage, mCss);
+		mTurboMenuSwitcher.toggle(mStage.getX(), mStage.getY() + mStage.getHeight());
+	}
+
+	@Override
+	public final void updateConfig(final Set<ConfigKey> changedKeys, final ConfigSnapshot config) {
+		Platform.runLater(() -> applyConfig(changedKeys, config));
+	}
+
+	/**
+	 * Apply only the changed keys to the existing controls. Runs on the FX thread.
+	 */
+	private void applyConfig(final Set<ConfigKey> changedKeys, final ConfigSnapshot config) {
+		if (changedKeys.contains(ConfigKey.TURBOBAR_HEIGHT)) {
+			final int barHeight = config.getTurboBarHeight();
+			setFactoryHeight(barHeight);
+			for (final AdaptiveButton button : mButtons) {
+				button.setPrefHeight(barHeight);
+			}
+			mStage.setHeight(barHeight);
+		}
+		if (changedKeys.contains(ConfigKey.TEXT_COLOR_MAIN)) {
+			final Color textColor = Color.web(config.getTextColorMain());
+			windowTitleLbl.setTextFill(textColor);
+			dateTimeLbl.setTextFill(textColor);
+		}
+		if (changedKeys.contains(ConfigKey.TURBOBAR_CLOSE_BG_PRIMARY))
+			mPrimaryHoldTimer.setColor(config.getTurboBarCloseBgPrimary());
+		if (changedKeys.contains(ConfigKey.TURBOBAR_CLOSE_BG_SECONDARY))
+			mSecondaryHoldTimer.setColor(config.getTurboBarCloseBgSecondary());
+		if (changedKeys.contains(ConfigKey.TURBOBAR_SEPARATOR_MARGIN_X) || changedKeys.contains(ConfigKey.TURBOBAR_SEPARATOR_MARGIN_Y) ||
+				changedKeys.contains(ConfigKey.TURBOBAR_SEPARATOR_COLOR) || changedKeys.contains(ConfigKey.TURBOBAR_SEPARATOR_OPACITY)) {
+			for (final Region separator : mSeparators) {
+				styleVerticalSeparator(separator, config);
+			}
+		}
+	}
+
+	private static void performCloseAction(final SysBtnCloseAction action, final ITurboBarPresenter mPresenter, final MouseEvent event) {
+		if ((SysBtnCloseAction.CLICK == action) && (MouseButton.PRIMARY != event.getButton()))
+			// we don't take any action for secondary-click
+			return;
+		SysBtnAction.performCloseAction(action, mPresenter, event);
+	}
+}
@@ -0,0 +1,191 @@
+package com.cosmicdan.turboshell.turbobar;
+
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
+import com.cosmicdan.turboshell.winapi.model.WindowTitleIndex.Entry;
+import javafx.application.Platform;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Scene;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+
+import java.util.List;
+
+/**
+ * The TurboMenu window switcher - a type-to-filter list of every open window, most recently used first. Every keystroke
+ * runs a fresh search through the presenter; Enter or a click switches to the selected window, Escape (or clicking
+ * elsewhere) goes back to the window that was in the foreground when it was opened.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+class TurboMenuSwitcher {
+	private static final String WINDOW_NAME = "TurboShell's TurboMenu";
+	private static final double WIDTH = 480.0;
+	private static final double LIST_HEIGHT = 320.0;
+
+	private final ITurboBarPresenter mPresenter;
+	private final Stage mStage;
+	private final TextField mQueryField = new TextField();
+	private final ListView<Entry> mResultsList = new ListView<>();
+	// the window that was in the foreground when the switcher was shown, for going back to on cancel
+	private Entry mPreviousWindow = null;
+	private boolean mIsSwitching = false;
+
+	TurboMenuSwitcher(final ITurboBarPresenter presenter, final Window owner, final String css) {
+		mPresenter = presenter;
+		mStage = new Stage(StageStyle.UNDECORATED);
+		// owned by the TurboBar, so it doesn't get its own taskbar button
+		mStage.initOwner(owner);
+		mStage.setTitle(WINDOW_NAME);
+		mStage.setAlwaysOnTop(true);
+
+		mQueryField.setId("turbomenu-query");
+		mQueryField.setPromptText("Type to search windows...");
+		mQueryField.textProperty().addListener(
+				(ObservableValue<? extends String> observable, String oldValue, String newValue) -> refresh(newValue));
+		mQueryField.addEventFilter(KeyEvent.KEY_PRESSED, this::onKeyPressed);
+
+		mResultsList.setId("turbomenu-results");
+		mResultsList.setPrefHeight(LIST_HEIGHT);
+		mResultsList.setFocusTraversable(false);
+		mResultsList.setCellFactory((ListView<Entry> listView) -> new EntryCell());
+		mResultsList.addEventHandler(MouseEvent.MOUSE_CLICKED, (MouseEvent event) -> {
+			if (MouseButton.PRIMARY == event.getButton())
+				switchToSelected();
+		});
+
+		final VBox root = new VBox(mQueryField, mResultsList);
+		root.setId("turbomenu");
+		final Scene scene = new Scene(root, WIDTH, -1);
+		scene.getStylesheets().add(css);
+		mStage.setScene(scene);
+		// clicking anywhere else dismisses it
+		mStage.focusedProperty().addListener(
+				(ObservableValue<? extends Boolean> observable, Boolean wasFocused, Boolean isFocused) -> {
+					if (!isFocused && !mIsSwitching)
+						mStage.hide();
+				});
+	}
+
+	/**
+	 * Show the switcher at the given screen position, or hide it if it's already showing.
+	 */
+	final void toggle(final double xPos, final double yPos) {
+		if (mStage.isShowing()) {
+			cancel();
+			return;
+		}
+		mIsSwitching = false;
+		mQueryField.clear();
+		final List<Entry> results = refresh("");
+		mPreviousWindow = results.isEmpty() ? null : results.get(0);
+		// the window index is only built on first use in lean mode, so search again once it has been
+		if (results.isEmpty())
+			mPresenter.prepareWindowSearch(() -> Platform.runLater(this::onSearchReady));
+		mStage.setX(xPos);
+		mStage.setY(yPos);
+		mStage.show();
+		mStage.toFront();
+		mQueryField.requestFocus();
+	}
+
+	private void onSearchReady() {
+		if (!mStage.isShowing())
+			return;
+		final String query = mQueryField.getText();
+		final List<Entry> results = refresh(query);
+		if ((null == mPreviousWindow) && query.isEmpty() && !results.isEmpty())
+			mPreviousWindow = results.get(0);
+	}
+
+	/**
+	 * Search again for the given query, and select the best result. Like alt-tab, an empty query selects the window
+	 * <i>before</i> the current one so a quick open-Enter flips between the last two.
+	 */
+	private List<Entry> refresh(final String query) {
+		final List<Entry> results = mPresenter.searchWindows(query);
+		mResultsList.getItems().setAll(results);
+		if (!results.isEmpty()) {
+			final int selectedIndex = (query.isEmpty() && (results.size() > 1)) ? 1 : 0;
+			mResultsList.getSelectionModel().select(selectedIndex);
+			mResultsList.scrollTo(selectedIndex);
+		}
+		return results;
+	}
+
+	private void onKeyPressed(final KeyEvent event) {
+		//noinspection SwitchStatement
+		switch (event.getCode()) {
+			case UP:
+				moveSelection(-1);
+				event.consume();
+				break;
+			case DOWN:
+				moveSelection(1);
+				event.consume();
+				break;
+			case ENTER:
+				switchToSelected();
+				event.consume();
+				break;
+			case ESCAPE:
+				cancel();
+				event.consume();
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void moveSelection(final int delta) {
+		final int count = mResultsList.getItems().size();
+		if (0 == count)
+			return;
+		final int selectedIndex = Math.floorMod(mResultsList.getSelectionModel().getSelectedIndex() + delta, count);
+		mResultsList.getSelectionModel().select(selectedIndex);
+		mResultsList.scrollTo(selectedIndex);
+	}
+
+	private void switchToSelected() {
+		final Entry selected = mResultsList.getSelectionModel().getSelectedItem();
+		if (null == selected)
+			return;
+		switchTo(selected);
+	}
+
+	private void cancel() {
+		if (null == mPreviousWindow)
+			mStage.hide();
+		else
+			switchTo(mPreviousWindow);
+	}
+
+	private void switchTo(final Entry entry) {
+		// activating another window takes our focus away, which would otherwise hide us a second time
+		mIsSwitching = true;
+		mStage.hide();
+		mPresenter.activateWindow(entry);
+	}
+
+	/**
+	 * Shows a window as "Title - process.exe"
+	 */
+	private static class EntryCell extends ListCell<Entry> {
+		@Override
+		protected void updateItem(final Entry entry, final boolean empty) {
+			super.updateItem(entry, empty);
+			if (empty || (null == entry))
+				setText(null);
+			else if (entry.getProcessName().isEmpty())
+				setText(entry.getTitle());
+			else
+				setText(entry.getTitle() + " - " + entry.getProcessName());
+		}
+	}
+}
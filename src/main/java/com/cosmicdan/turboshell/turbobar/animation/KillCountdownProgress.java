@@ -1,88 +1,110 @@
-package com.cosmicdan.turboshell.turbobar.animation;
-
-import com.cosmicdan.turboshell.common.control.AdaptiveButton;
-import javafx.animation.Transition;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.ObjectPropertyBase;
-import javafx.util.Duration;
-import lombok.extern.log4j.Log4j2;
-
-/**
- * @author Daniel 'CosmicDan' Connolly
- */
-@Log4j2(topic = "KillCountdownProgress")
-public class KillCountdownProgress extends Transition {
-	public enum AnimationDirection{NORMAL, REVERSE}
-
-	private ObjectProperty<Duration> mDuration = null;
-	private static final Duration DEFAULT_DURATION = Duration.millis(400);
-
-	private final AdaptiveButton mCtrlCloseButton;
-	private final String mColorHex;
-	private final AnimationDirection mAnimDirection;
-
-	public KillCountdownProgress(final Duration duration, final AdaptiveButton ctrlCloseButton, final String colorHex, final AnimationDirection animDirection) {
-		setDuration(duration);
-		setCycleDuration(duration);
-		mCtrlCloseButton = ctrlCloseButton;
-		mColorHex = colorHex;
-		mAnimDirection = animDirection;
-	}
-
-	@Override
-	public final void stop() {
-		super.stop();
-		mCtrlCloseButton.setStyle(null);
-	}
-
-	@Override
-	public final void interpolate(final double frac) {
-		int progressPercent = (int) (frac * 100);
-		if (AnimationDirection.REVERSE == mAnimDirection)
-			progressPercent = 100 - progressPercent;
-		mCtrlCloseButton.setStyle("-fx-background-color: linear-gradient(" +
-				"from 0% 0% to " + mCtrlCloseButton.getWidth() + "px 0px, " +
-				'#' + mColorHex + " 0%, #" + mColorHex + ' ' + progressPercent + "%, " +
-				"transparent " + progressPercent + "%, transparent 100%);"
-		);
-	}
-
-	private void setDuration(final Duration value) {
-		if ((null != mDuration) || (!DEFAULT_DURATION.equals(value))) {
-			getDurationProperty().set(value);
-		}
-	}
-
-	private ObjectProperty<Duration> getDurationProperty() {
-		if (null == mDuration) {
-			//noinspection AnonymousInnerClassWithTooManyMethods,OverlyComplexAnonymousInnerClass
-			mDuration = new ObjectPropertyBase<Duration>(DEFAULT_DURATION) {
-				private static final String NAME = "duration";
-
-				@Override
-				public void invalidated() {
-					try {
-						setCycleDuration(DEFAULT_DURATION);
-					} catch (final IllegalArgumentException exception) {
-						if (isBound()) {
-							unbind();
-						}
-						set(getCycleDuration());
-						throw exception;
-					}
-				}
-
-				@Override
-				public Object getBean() {
-					return KillCountdownProgress.this;
-				}
-
-				@Override
-				public String getName() {
-					return NAME;
-				}
-			};
-		}
-		return mDuration;
-	}
-}
+package com.cosmicdan.turboshell.turbobar.animation;
+
+import com.cosmicdan.turboshell.common.control.AdaptiveButton;
+import javafx.animation.Transition;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ObjectPropertyBase;
+import javafx.css.PseudoClass;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.util.Duration;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Fills the close button with a color from one side while it's held, showing how long until the held action fires. The
+ * fill is the button's underlay rectangle, so a frame only changes its width - no style is parsed or allocated. While
+ * counting down the button has the "countdown" pseudo-class, which TurboBar.css uses to hide its normal hover background.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2(topic = "KillCountdownProgress")
+public class KillCountdownProgress extends Transition {
+	public enum AnimationDirection{NORMAL, REVERSE}
+
+	private ObjectProperty<Duration> mDuration = null;
+	private static final Duration DEFAULT_DURATION = Duration.millis(400);
+
+	private static final PseudoClass COUNTDOWN_PSEUDO_CLASS = PseudoClass.getPseudoClass("countdown");
+
+	private final AdaptiveButton mCtrlCloseButton;
+	private final Rectangle mFill;
+	private Color mColor;
+	private final AnimationDirection mAnimDirection;
+	private boolean mIsShowing = false;
+
+	public KillCountdownProgress(final Duration duration, final AdaptiveButton ctrlCloseButton, final String colorHex, final AnimationDirection animDirection) {
+		setDuration(duration);
+		setCycleDuration(duration);
+		mCtrlCloseButton = ctrlCloseButton;
+		mFill = ctrlCloseButton.getUnderlay();
+		mColor = Color.web(colorHex);
+		mAnimDirection = animDirection;
+	}
+
+	/**
+	 * Change the fill color, e.g. after the config changed. Takes effect from the next countdown.
+	 */
+	public final void setColor(final String colorHex) {
+		mColor = Color.web(colorHex);
+	}
+
+	@Override
+	public final void stop() {
+		super.stop();
+		if (mIsShowing) {
+			mIsShowing = false;
+			mFill.setWidth(0.0);
+			mCtrlCloseButton.pseudoClassStateChanged(COUNTDOWN_PSEUDO_CLASS, false);
+		}
+	}
+
+	@Override
+	public final void interpolate(final double frac) {
+		if (!mIsShowing) {
+			// both countdowns share the one underlay, so claim it
+			mIsShowing = true;
+			mFill.setFill(mColor);
+			mCtrlCloseButton.pseudoClassStateChanged(COUNTDOWN_PSEUDO_CLASS, true);
+		}
+		final double progress = (AnimationDirection.REVERSE == mAnimDirection) ? (1.0 - frac) : frac;
+		mFill.setWidth(mCtrlCloseButton.getWidth() * progress);
+	}
+
+	private void setDuration(final Duration value) {
+		if ((null != mDuration) || (!DEFAULT_DURATION.equals(value))) {
+			getDurationProperty().set(value);
+		}
+	}
+
+	private ObjectProperty<Duration> getDurationProperty() {
+		if (null == mDuration) {
+			//noinspection AnonymousInnerClassWithTooManyMethods,OverlyComplexAnonymousInnerClass
+			mDuration = new ObjectPropertyBase<Duration>(DEFAULT_DURATION) {
+				private static final String NAME = "duration";
+
+				@Override
+				public void invalidated() {
+					try {
+						setCycleDuration(DEFAULT_DURATION);
+					} catch (final IllegalArgumentException exception) {
+						if (isBound()) {
+							unbind();
+						}
+						set(getCycleDuration());
+						throw exception;
+					}
+				}
+
+				@Override
+				public Object getBean() {
+					return KillCountdownProgress.this;
+				}
+
+				@Override
+				public String getName() {
+					return NAME;
+				}
+			};
+		}
+		return mDuration;
+	}
+}
@@ -0,0 +1,53 @@
+package com.cosmicdan.turboshell.winapi;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.WinBase.FILETIME;
+import com.sun.jna.platform.win32.WinNT.HANDLE;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.win32.W32APIOptions;
+
+/**
+ * Contains our Kernel32 native methods as a direct mapping instead of JNA's default interface mapping, for performance reasons
+ */
+@SuppressWarnings({"NativeMethod", "UnusedReturnValue"})
+public class Kernel32Ex {
+	protected static final Kernel32Ex KERNEL32;
+
+	static {
+		KERNEL32 = new Kernel32Ex();
+		final NativeLibrary kernel32 = NativeLibrary.getInstance("kernel32", W32APIOptions.DEFAULT_OPTIONS);
+		Native.register(kernel32);
+	}
+
+	protected Kernel32Ex() {}
+
+	//////////////////////////////////////////////////////////////
+	// KERNEL32
+	//////////////////////////////////////////////////////////////
+
+	// handles
+	/** See {@link Kernel32#CloseHandle} */
+	public native boolean CloseHandle(HANDLE hObject);
+	/** See {@link Kernel32#WaitForSingleObject} */
+	public native int WaitForSingleObject(HANDLE hHandle, int dwMilliseconds);
+
+	// processes
+	/** See {@link Kernel32#OpenProcess} */
+	public native HANDLE OpenProcess(int dwDesiredAccess, boolean bInheritHandle, int dwProcessId);
+	/** See {@link Kernel32#TerminateProcess} */
+	public native boolean TerminateProcess(HANDLE hProcess, int uExitCode);
+	/** See {@link Kernel32#QueryFullProcessImageName} */
+	public native boolean QueryFullProcessImageName(HANDLE hProcess, int dwFlags, char[] lpExeName, IntByReference lpdwSize);
+	/**
+	 * Retrieves timing information for the specified process. Not in JNA's Kernel32 yet.
+	 * @see <a href="https://msdn.microsoft.com/en-us/library/windows/desktop/ms683223(v=vs.85).aspx">GetProcessTimes on
+	 * MSDN</a>
+	 */
+	public native boolean GetProcessTimes(HANDLE hProcess, FILETIME lpCreationTime, FILETIME lpExitTime, FILETIME lpKernelTime, FILETIME lpUserTime);
+
+	//////////////////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////
+}
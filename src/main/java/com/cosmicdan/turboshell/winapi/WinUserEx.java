@@ -1,63 +1,96 @@
-package com.cosmicdan.turboshell.winapi;
-
-import com.sun.jna.Pointer;
-import com.sun.jna.platform.win32.WinDef.HWND;
-import com.sun.jna.platform.win32.WinUser;
-
-/**
- * Extra constants for this Windows header that didn't yet exist in JNA's platform includes
- */
-@SuppressWarnings("InterfaceNeverImplemented")
-public interface WinUserEx extends WinUser {
-	///////////////////
-	// Extended Window Styles.
-	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/ff700543(v=vs.85).aspx
-	///////////////////
-
-	/** Window does not become the foreground window when the user clicks it or minimizes/closes another window */
-	long WS_EX_NOACTIVATE = 0x08000000;
-	/** The window is intended to be used as a floating toolbar */
-	long WS_EX_TOOLWINDOW = 0x00000080;
-	/** The window should be placed above all non-topmost windows and should stay above them */
-	long WS_EX_TOPMOST = 0x00000008;
-	/** Forces a top-level window onto the taskbar when the window is visible. */
-	long WS_EX_APPWINDOW = 0x00040000;
-
-
-
-	///////////////////
-	// hWndInsertAfter special values. Used in some functions like SetWindowPos.
-	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/ms633545(v=vs.85).aspx
-	///////////////////
-
-	/** Places the window at the bottom of the Z order. Clears any existing 'always on top' status */
-	HWND HWND_BOTTOM = new HWND(Pointer.createConstant(1));
-	/** Places the window above all non-topmost windows (that is, behind all topmost windows) */
-	HWND HWND_NOTOPMOST = new HWND(Pointer.createConstant(-2));
-	/** Places the window at the top of the Z order. If topmost, will put above other topmost windows */
-	HWND HWND_TOP = new HWND(Pointer.createConstant(0));
-	/** Places the window above all non-topmost windows. Maintains topmost position even when deactivated */
-	HWND HWND_TOPMOST = new HWND(Pointer.createConstant(-1));
-
-
-
-	///////////////////
-	// Object Identifiers. These identify categories of accessible objects within a window.
-	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/dd373606(v=vs.85).aspx
-	///////////////////
-	/** The window itself rather than a child object. */
-	long OBJID_WINDOW = 0x00000000;
-
-
-
-	///////////////////
-	// Window event constants.
-	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/dd318066(v=vs.85).aspx
-	///////////////////
-	/**	The foreground window has changed */
-	int EVENT_SYSTEM_FOREGROUND = 0x0003;
-	/** An object has changed location, shape, or size */
-	int EVENT_OBJECT_LOCATIONCHANGE = 0x800B;
-	/** An object's Name property has changed */
-	int EVENT_OBJECT_NAMECHANGE = 0x800C;
-}
+package com.cosmicdan.turboshell.winapi;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinUser;
+
+/**
+ * Extra constants for this Windows header that didn't yet exist in JNA's platform includes
+ */
+@SuppressWarnings("InterfaceNeverImplemented")
+public interface WinUserEx extends WinUser {
+	///////////////////
+	// Extended Window Styles.
+	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/ff700543(v=vs.85).aspx
+	///////////////////
+
+	/** Window does not become the foreground window when the user clicks it or minimizes/closes another window */
+	long WS_EX_NOACTIVATE = 0x08000000;
+	/** The window is intended to be used as a floating toolbar */
+	long WS_EX_TOOLWINDOW = 0x00000080;
+	/** The window should be placed above all non-topmost windows and should stay above them */
+	long WS_EX_TOPMOST = 0x00000008;
+	/** Forces a top-level window onto the taskbar when the window is visible. */
+	long WS_EX_APPWINDOW = 0x00040000;
+
+
+
+	///////////////////
+	// hWndInsertAfter special values. Used in some functions like SetWindowPos.
+	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/ms633545(v=vs.85).aspx
+	///////////////////
+
+	/** Places the window at the bottom of the Z order. Clears any existing 'always on top' status */
+	HWND HWND_BOTTOM = new HWND(Pointer.createConstant(1));
+	/** Places the window above all non-topmost windows (that is, behind all topmost windows) */
+	HWND HWND_NOTOPMOST = new HWND(Pointer.createConstant(-2));
+	/** Places the window at the top of the Z order. If topmost, will put above other topmost windows */
+	HWND HWND_TOP = new HWND(Pointer.createConstant(0));
+	/** Places the window above all non-topmost windows. Maintains topmost position even when deactivated */
+	HWND HWND_TOPMOST = new HWND(Pointer.createConstant(-1));
+
+
+
+	///////////////////
+	// Object Identifiers. These identify categories of accessible objects within a window.
+	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/dd373606(v=vs.85).aspx
+	///////////////////
+	/** The window itself rather than a child object. */
+	long OBJID_WINDOW = 0x00000000;
+
+
+
+	///////////////////
+	// Window messages and their parameters.
+	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/ms644927(v=vs.85).aspx
+	///////////////////
+	/** Does nothing - used to check that a window is processing messages */
+	int WM_NULL = 0x0000;
+	/** Sent to all top-level windows whenever the system time (or time zone) has been changed */
+	int WM_TIMECHANGE = 0x001E;
+	/** Sent to all top-level windows when the display resolution or monitor layout has changed */
+	int WM_DISPLAYCHANGE = 0x007E;
+	/** Sent to all top-level windows on a power-management event. The event type is in wParam */
+	int WM_POWERBROADCAST = 0x0218;
+	/** WM_POWERBROADCAST event - the system has resumed from a low-power state because of user activity */
+	int PBT_APMRESUMESUSPEND = 0x0007;
+	/** WM_POWERBROADCAST event - the system has resumed from a low-power state, always sent */
+	int PBT_APMRESUMEAUTOMATIC = 0x0012;
+
+
+
+	///////////////////
+	// Window event constants.
+	// Full descriptions at https://msdn.microsoft.com/en-us/library/windows/desktop/dd318066(v=vs.85).aspx
+	///////////////////
+	/**	The foreground window has changed */
+	int EVENT_SYSTEM_FOREGROUND = 0x0003;
+	/** A window object is about to be minimized */
+	int EVENT_SYSTEM_MINIMIZESTART = 0x0016;
+	/** A window object is about to be restored */
+	int EVENT_SYSTEM_MINIMIZEEND = 0x0017;
+	/** An object has been created */
+	int EVENT_OBJECT_CREATE = 0x8000;
+	/** An object has been destroyed */
+	int EVENT_OBJECT_DESTROY = 0x8001;
+	/** A hidden object is shown */
+	int EVENT_OBJECT_SHOW = 0x8002;
+	/** An object is hidden */
+	int EVENT_OBJECT_HIDE = 0x8003;
+	/** An object's state has changed */
+	int EVENT_OBJECT_STATECHANGE = 0x800A;
+	/** An object has changed location, shape, or size */
+	int EVENT_OBJECT_LOCATIONCHANGE = 0x800B;
+	/** An object's Name property has changed */
+	int EVENT_OBJECT_NAMECHANGE = 0x800C;
+}
@@ -0,0 +1,75 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+/**
+ * An immutable classification of the current foreground window, kept by the {@link WinEventAgent} from the foreground
+ * events (and style/location changes) it already receives - so asking e.g. "is the desktop focused?" only needs the
+ * foreground window's handle, not its class name.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class ForegroundWindow {
+	private final long mHWndPeer;
+	private final int mClassId;
+	private final boolean mDesktop;
+	private final long mMonitorHandle;
+
+	private ForegroundWindow(final long hWndPeer, final int classId, final boolean isDesktop, final long monitorHandle) {
+		mHWndPeer = hWndPeer;
+		mClassId = classId;
+		mDesktop = isDesktop;
+		mMonitorHandle = monitorHandle;
+	}
+
+	/**
+	 * Classify a registered window.
+	 * @param isDesktop true if its class is one of the desktop classes (see FULLSCREEN_HIDE_EXCLUDE_CLASSES)
+	 */
+	static ForegroundWindow of(final RegisteredWindow window, final boolean isDesktop) {
+		return new ForegroundWindow(window.getHWndPeer(), window.getClassId(), isDesktop, window.getMonitorHandle());
+	}
+
+	/**
+	 * A foreground window that isn't (yet) in the registry, so nothing is known about it
+	 */
+	static ForegroundWindow unknown(final long hWndPeer) {
+		return new ForegroundWindow(hWndPeer, -1, false, 0L);
+	}
+
+	/**
+	 * @return true if this describes the same window, in the same state, as the given one
+	 */
+	boolean isSameAs(final ForegroundWindow other) {
+		return (null != other) && (mHWndPeer == other.mHWndPeer) && (mClassId == other.mClassId) &&
+				(mDesktop == other.mDesktop) && (mMonitorHandle == other.mMonitorHandle);
+	}
+
+	long getHWndPeer() {
+		return mHWndPeer;
+	}
+
+	/**
+	 * @return The window's class ID (see {@link WindowRegistry#getClassId(String)}), or -1 if unknown
+	 */
+	public int getClassId() {
+		return mClassId;
+	}
+
+	/**
+	 * @return true if the foreground window is the desktop (or another window the TurboBar should stay on top of)
+	 */
+	public boolean isDesktop() {
+		return mDesktop;
+	}
+
+	/**
+	 * @return The raw HMONITOR of the monitor the window is (mostly) on, or 0 if unknown
+	 */
+	public long getMonitorHandle() {
+		return mMonitorHandle;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ForegroundWindow{hWnd=%x, classId=%d, desktop=%b, monitor=%x}",
+				mHWndPeer, mClassId, mDesktop, mMonitorHandle);
+	}
+}
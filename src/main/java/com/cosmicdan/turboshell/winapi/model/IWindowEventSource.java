@@ -0,0 +1,103 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.sun.jna.platform.win32.WinDef.HWND;
+
+import java.util.function.Consumer;
+
+/**
+ * A source of window events and window data for the {@link WinEventAgent}. The agent only ever talks to the desktop
+ * through this, so the response logic can be driven by the real WinEvent hooks ({@link NativeWindowEventSource}) or by
+ * anything else - e.g. a scripted {@link ReplayWindowEventSource} for profiling and load-testing off a Windows desktop.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public interface IWindowEventSource {
+	@FunctionalInterface
+	interface WindowEventListener {
+		/**
+		 * Called for every window event the source produces, on the thread running {@link #pumpEvents()}.
+		 * @param event The WinEvent constant, e.g. {@link com.cosmicdan.turboshell.winapi.WinUserEx#EVENT_SYSTEM_FOREGROUND}
+		 * @param hWnd The window that generated the event
+		 * @param idObject The object identifier, e.g. {@link com.cosmicdan.turboshell.winapi.WinUserEx#OBJID_WINDOW}
+		 */
+		void onWindowEvent(int event, HWND hWnd, long idObject);
+
+		/**
+		 * As {@link #onWindowEvent(int, HWND, long)}, with the extra detail some sources provide (e.g. the native
+		 * hooks). Only needed by listeners that want it, e.g. a {@link WinEventTraceRecorder}.
+		 * @param eventThread The thread that generated the event, or 0 if unknown
+		 * @param eventTimeMillis The time the event was generated (tick count), or 0 if unknown
+		 */
+		default void onWindowEvent(final int event, final HWND hWnd, final long idObject, final int eventThread, final int eventTimeMillis) {
+			onWindowEvent(event, hWnd, idObject);
+		}
+	}
+
+	/**
+	 * Install the event hooks (or equivalent) and start delivering events to the given listener.
+	 */
+	void hook(WindowEventListener listener);
+
+	/**
+	 * Block and deliver events to the hooked listener until the source is exhausted or asked to quit.
+	 * @return false if the event loop ended abnormally, otherwise true
+	 */
+	boolean pumpEvents();
+
+	/**
+	 * Make {@link #pumpEvents()} return as soon as possible. May be called from any thread.
+	 */
+	void quit();
+
+	/**
+	 * Remove any hooks installed by {@link #hook(WindowEventListener)}.
+	 */
+	void unhook();
+
+	/**
+	 * @return The current foreground window, or null if there is none
+	 */
+	HWND getForegroundWindow();
+
+	/**
+	 * Visit every current top-level window, e.g. to seed a {@link WindowRegistry}.
+	 */
+	void enumWindows(Consumer<HWND> consumer);
+
+	/**
+	 * @return true if the given window is a top-level window (i.e. it has no parent)
+	 */
+	boolean isTopLevelWindow(HWND hWnd);
+
+	/**
+	 * @return The ID of the process that created the given window, or 0 if unknown
+	 */
+	int getWindowProcessId(HWND hWnd);
+
+	/**
+	 * @return The window class name of the given window, or an empty String if unknown
+	 */
+	String getWindowClassName(HWND hWnd);
+
+	/**
+	 * Resolve the window information (root window and styles) for the given window.
+	 */
+	WindowInfo getWindowInfo(HWND hWnd);
+
+	/**
+	 * @return The current GWL_STYLE flags of the given window
+	 */
+	long getWindowStyle(HWND hWnd);
+
+	/**
+	 * @return The raw HMONITOR of the monitor the given window is (mostly) on, or 0 if unknown
+	 */
+	long getWindowMonitor(HWND hWnd);
+
+	/**
+	 * Read the current title text of the given window. If it is the same as the given previous title, that same String
+	 * instance is returned so an unchanged title costs no allocation - callers can compare by identity.
+	 * @param previousTitle The last known title of this window, or null if unknown
+	 * @return The current title text of the given window, or null if it has none
+	 */
+	String getWindowTitle(HWND hWnd, String previousTitle);
+}
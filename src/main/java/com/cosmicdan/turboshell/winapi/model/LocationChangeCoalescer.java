@@ -0,0 +1,52 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.sun.jna.platform.win32.WinDef.HWND;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Collects EVENT_OBJECT_LOCATIONCHANGE storms (window drags, animations) so only the latest one per hWnd is processed
+ * per tick. Since the window state is only resolved when flushed, coalesced events cost nothing but a short scan of the
+ * handles already pending - only a handful of windows move within one tick, so that beats hashing them.
+ * Not thread-safe - it's only ever used from the {@link WinEventAgent}'s dispatcher thread.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+final class LocationChangeCoalescer {
+	/** How long to collect location changes for before processing them, i.e. roughly one frame at 60Hz */
+	static final int TICK_MILLIS = 16;
+	private static final int INITIAL_CAPACITY = 8;
+
+	// in the order windows first moved in, so a flush preserves it. Grown (never shrunk) if more windows move in a tick.
+	private HWND[] mPending = new HWND[INITIAL_CAPACITY];
+	private int mPendingCount = 0;
+
+	/**
+	 * Queue a location change for the given hWnd.
+	 * @return true if nothing was pending before this, i.e. the caller should request a tick for {@link #flush(Consumer)}
+	 */
+	boolean offer(final HWND hWnd) {
+		for (int i = 0; i < mPendingCount; i++) {
+			if (hWnd.equals(mPending[i]))
+				return false;
+		}
+		if (mPendingCount == mPending.length)
+			mPending = Arrays.copyOf(mPending, mPending.length * 2);
+		mPending[mPendingCount++] = hWnd;
+		return 1 == mPendingCount;
+	}
+
+	/**
+	 * Process and clear all pending location changes, in the order they first arrived.
+	 */
+	void flush(final Consumer<HWND> consumer) {
+		final int pendingCount = mPendingCount;
+		mPendingCount = 0;
+		for (int i = 0; i < pendingCount; i++) {
+			final HWND hWnd = mPending[i];
+			// don't keep closed windows' handles reachable until the slot is reused
+			mPending[i] = null;
+			consumer.accept(hWnd);
+		}
+	}
+}
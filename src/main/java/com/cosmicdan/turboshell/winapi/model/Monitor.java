@@ -0,0 +1,74 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+/**
+ * An immutable snapshot of a single display monitor, as enumerated by {@link MonitorIndex}.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class Monitor {
+	private final int mRoute;
+	private final String mDeviceName;
+	private final long mHandle;
+	private final boolean mPrimary;
+	private final int mX;
+	private final int mY;
+	private final int mWidth;
+
+	/**
+	 * @param route The dispatch route for this monitor. Stays the same for as long as the monitor (by device name) is present.
+	 * @param deviceName The display device name, e.g. \\.\DISPLAY1
+	 * @param handle The raw HMONITOR value
+	 * @param x Left edge of the work area
+	 * @param y Top edge of the monitor
+	 * @param width Width of the work area
+	 */
+	public Monitor(final int route, final String deviceName, final long handle, final boolean primary, final int x, final int y, final int width) {
+		mRoute = route;
+		mDeviceName = deviceName;
+		mHandle = handle;
+		mPrimary = primary;
+		mX = x;
+		mY = y;
+		mWidth = width;
+	}
+
+	public int getRoute() {
+		return mRoute;
+	}
+
+	public String getDeviceName() {
+		return mDeviceName;
+	}
+
+	public long getHandle() {
+		return mHandle;
+	}
+
+	public boolean isPrimary() {
+		return mPrimary;
+	}
+
+	public int getX() {
+		return mX;
+	}
+
+	public int getY() {
+		return mY;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * @return true if a TurboBar on the given monitor would be placed the same as on this one
+	 */
+	public boolean hasSameBounds(final Monitor other) {
+		return (mX == other.mX) && (mY == other.mY) && (mWidth == other.mWidth);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Monitor{route=%d, device=%s, primary=%b, x=%d, y=%d, width=%d}",
+				mRoute, mDeviceName, mPrimary, mX, mY, mWidth);
+	}
+}
@@ -0,0 +1,130 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.common.model.AgentModel;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.User32;
+import com.sun.jna.platform.win32.WinDef.HDC;
+import com.sun.jna.platform.win32.WinDef.LPARAM;
+import com.sun.jna.platform.win32.WinDef.RECT;
+import com.sun.jna.platform.win32.WinUser.HMONITOR;
+import com.sun.jna.platform.win32.WinUser.MONITORENUMPROC;
+import com.sun.jna.platform.win32.WinUser.MONITORINFOEX;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The current set of display monitors, and the dispatch route of each. Window events are routed to the TurboBar of the
+ * monitor containing the window, by looking up the window's HMONITOR here.
+ * <p>
+ * Monitors are identified by device name, so a monitor keeps its route across display changes (even if Windows hands
+ * out a new HMONITOR for it); routes of removed monitors are never reused. {@link #refresh()} must only be called from
+ * a single thread, but lookups are lock-free from any thread.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class MonitorIndex {
+	public static final MonitorIndex INSTANCE = new MonitorIndex();
+
+	private static final int MONITORINFOF_PRIMARY = 0x00000001;
+
+	// replaced as a whole on refresh. There are only ever a few monitors, so a scan beats a (boxing) map lookup
+	private volatile Monitor[] mMonitors = new Monitor[0];
+	private final Map<String, Monitor> mByDeviceName = new LinkedHashMap<>(4);
+	private int mNextRoute = 0;
+
+	private MonitorIndex() {}
+
+	/**
+	 * The result of a {@link #refresh()} - what changed since the last one.
+	 */
+	public static final class MonitorChanges {
+		private final List<Monitor> mAdded = new ArrayList<>(2);
+		private final List<Monitor> mRemoved = new ArrayList<>(2);
+		private final List<Monitor> mMoved = new ArrayList<>(2);
+
+		public List<Monitor> getAdded() {
+			return mAdded;
+		}
+
+		public List<Monitor> getRemoved() {
+			return mRemoved;
+		}
+
+		/**
+		 * @return Monitors still present, but with a different work area (e.g. resolution change)
+		 */
+		public List<Monitor> getMoved() {
+			return mMoved;
+		}
+
+		public boolean isEmpty() {
+			return mAdded.isEmpty() && mRemoved.isEmpty() && mMoved.isEmpty();
+		}
+	}
+
+	/**
+	 * Re-enumerate the display monitors.
+	 * @return What changed since the last refresh
+	 */
+	public MonitorChanges refresh() {
+		final List<HMONITOR> handles = new ArrayList<>(4);
+		final MONITORENUMPROC enumProc = (HMONITOR hMonitor, HDC hdc, RECT rect, LPARAM lParam) -> {
+			handles.add(hMonitor);
+			return 1;
+		};
+		User32.INSTANCE.EnumDisplayMonitors(null, null, enumProc, new LPARAM(0));
+
+		final MonitorChanges changes = new MonitorChanges();
+		final Map<String, Monitor> previous = new HashMap<>(mByDeviceName);
+		mByDeviceName.clear();
+		for (final HMONITOR hMonitor : handles) {
+			final MONITORINFOEX info = new MONITORINFOEX();
+			User32.INSTANCE.GetMonitorInfo(hMonitor, info);
+			final String deviceName = Native.toString(info.szDevice);
+			final Monitor existing = previous.remove(deviceName);
+			final Monitor monitor = new Monitor(
+					(null == existing) ? mNextRoute++ : existing.getRoute(),
+					deviceName,
+					Pointer.nativeValue(hMonitor.getPointer()),
+					0 != (info.dwFlags & MONITORINFOF_PRIMARY),
+					info.rcWork.left,
+					info.rcMonitor.top,
+					info.rcWork.right - info.rcWork.left);
+			if (null == existing)
+				changes.mAdded.add(monitor);
+			else if (!existing.hasSameBounds(monitor))
+				changes.mMoved.add(monitor);
+			mByDeviceName.put(deviceName, monitor);
+		}
+		changes.mRemoved.addAll(previous.values());
+		mMonitors = mByDeviceName.values().toArray(new Monitor[0]);
+		if (!changes.isEmpty())
+			log.info("Monitors changed: {} added, {} removed, {} moved", changes.mAdded.size(), changes.mRemoved.size(), changes.mMoved.size());
+		return changes;
+	}
+
+	/**
+	 * @param monitorHandle A raw HMONITOR value, e.g. from {@link WindowInfo#getMonitorHandle()}
+	 * @return The dispatch route for the monitor, or {@link AgentModel#ROUTE_ALL} if it isn't known (in which case only
+	 * broadcast callbacks will get the event)
+	 */
+	public int routeOf(final long monitorHandle) {
+		for (final Monitor monitor : mMonitors) {
+			if (monitorHandle == monitor.getHandle())
+				return monitor.getRoute();
+		}
+		return AgentModel.ROUTE_ALL;
+	}
+
+	public List<Monitor> getMonitors() {
+		return Collections.unmodifiableList(Arrays.asList(mMonitors));
+	}
+}
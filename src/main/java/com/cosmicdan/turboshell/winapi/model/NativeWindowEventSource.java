@@ -0,0 +1,264 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.User32Ex;
+import com.cosmicdan.turboshell.winapi.User32Ex.AgentDelegator;
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.User32;
+import com.sun.jna.platform.win32.WinDef.DWORD;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinDef.LONG;
+import com.sun.jna.platform.win32.WinNT.HANDLE;
+import com.sun.jna.platform.win32.WinUser;
+import com.sun.jna.platform.win32.WinUser.MSG;
+import com.sun.jna.platform.win32.WinUser.WinEventProc;
+import com.sun.jna.ptr.IntByReference;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.function.Consumer;
+
+/**
+ * The real window event source - WinEvent hooks via JNA, with events delivered through the GetMessage loop of the
+ * thread that calls {@link #pumpEvents()}.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public class NativeWindowEventSource extends User32Ex implements IWindowEventSource, AgentDelegator {
+	private static final ThreadLocal<TitleBuffer> TITLE_BUFFERS = ThreadLocal.withInitial(TitleBuffer::new);
+	/** Window class names can't be longer than this */
+	private static final int CLASS_NAME_MAX_CHARS = 256;
+
+	// all callbacks as class fields to avoid GC
+	private WinEventProc mCallback = null;
+	private HANDLE hookLocationChange = null;
+	private HANDLE hookNameChange = null;
+	private HANDLE hookForegroundChange = null;
+	private HANDLE hookMinimizeChange = null;
+	private HANDLE hookLifecycle = null;
+	private HANDLE hookStateChange = null;
+	// the thread running the message loop, so it can be told to quit from another one
+	private volatile int mPumpThreadId = 0;
+	private volatile boolean mQuit = false;
+
+	@Override
+	public final void hook(final WindowEventListener listener) {
+		mQuit = false;
+		mCallback = new WinEventProcCallback(listener);
+
+		// hook window location changes
+		hookLocationChange = setWinEventHook(
+				WinUserEx.EVENT_OBJECT_LOCATIONCHANGE,
+				WinUserEx.EVENT_OBJECT_LOCATIONCHANGE,
+				mCallback
+		);
+
+		hookNameChange = setWinEventHook(
+				WinUserEx.EVENT_OBJECT_NAMECHANGE,
+				WinUserEx.EVENT_OBJECT_NAMECHANGE,
+				mCallback
+		);
+
+		// hook foreground window changes
+		hookForegroundChange = setWinEventHook(
+				WinUserEx.EVENT_SYSTEM_FOREGROUND,
+				WinUserEx.EVENT_SYSTEM_FOREGROUND,
+				mCallback
+		);
+
+		// hook minimize start/end, create/destroy/show/hide and state changes - these invalidate cached window styles
+		// and keep the window registry current
+		hookMinimizeChange = setWinEventHook(
+				WinUserEx.EVENT_SYSTEM_MINIMIZESTART,
+				WinUserEx.EVENT_SYSTEM_MINIMIZEEND,
+				mCallback
+		);
+		hookLifecycle = setWinEventHook(
+				WinUserEx.EVENT_OBJECT_CREATE,
+				WinUserEx.EVENT_OBJECT_HIDE,
+				mCallback
+		);
+		hookStateChange = setWinEventHook(
+				WinUserEx.EVENT_OBJECT_STATECHANGE,
+				WinUserEx.EVENT_OBJECT_STATECHANGE,
+				mCallback
+		);
+	}
+
+	@Override
+	public final boolean pumpEvents() {
+		mPumpThreadId = Kernel32.INSTANCE.GetCurrentThreadId();
+		// quit may have been called before there was a thread to post to
+		if (mQuit)
+			return true;
+		// start runtime/message loop
+		final MSG msg = new MSG();
+		int result = -1;
+		try {
+			while (0 != result) {
+				result = handleWindowMessage(msg);
+				if (-1 == result) {
+					log.error("Error in GetMessage! This is bad!");
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			mPumpThreadId = 0;
+		}
+	}
+
+	@Override
+	public final void quit() {
+		mQuit = true;
+		final int pumpThreadId = mPumpThreadId;
+		// GetMessage returns 0 for WM_QUIT, ending the loop
+		if (0 != pumpThreadId)
+			User32.INSTANCE.PostThreadMessage(pumpThreadId, WinUser.WM_QUIT, null, null);
+	}
+
+	@Override
+	public final void unhook() {
+		User32.INSTANCE.UnhookWinEvent(hookLocationChange);
+		User32.INSTANCE.UnhookWinEvent(hookNameChange);
+		User32.INSTANCE.UnhookWinEvent(hookForegroundChange);
+		User32.INSTANCE.UnhookWinEvent(hookMinimizeChange);
+		User32.INSTANCE.UnhookWinEvent(hookLifecycle);
+		User32.INSTANCE.UnhookWinEvent(hookStateChange);
+		log.info("Hooks unregistered");
+	}
+
+	@Override
+	public final HWND getForegroundWindow() {
+		return USER32.GetForegroundWindow();
+	}
+
+	@Override
+	public final void enumWindows(final Consumer<HWND> consumer) {
+		USER32.EnumWindows((HWND hWnd, Pointer data) -> {
+			consumer.accept(hWnd);
+			return true;
+		}, null);
+	}
+
+	@Override
+	public final boolean isTopLevelWindow(final HWND hWnd) {
+		return hWnd.equals(USER32.GetAncestor(hWnd, WinUser.GA_ROOT));
+	}
+
+	@Override
+	public final int getWindowProcessId(final HWND hWnd) {
+		final IntByReference pid = new IntByReference();
+		USER32.GetWindowThreadProcessId(hWnd, pid);
+		return pid.getValue();
+	}
+
+	@Override
+	public final String getWindowClassName(final HWND hWnd) {
+		final char[] className = new char[CLASS_NAME_MAX_CHARS];
+		USER32.GetClassName(hWnd, className, CLASS_NAME_MAX_CHARS);
+		return Native.toString(className);
+	}
+
+	@Override
+	public final WindowInfo getWindowInfo(final HWND hWnd) {
+		final HWND rootHWnd = USER32.GetAncestor(hWnd, WinUser.GA_ROOTOWNER);
+		return new WindowInfo(
+				rootHWnd,
+				USER32.GetWindowLongPtr(rootHWnd, WinUser.GWL_STYLE).longValue(),
+				USER32.GetWindowLongPtr(rootHWnd, WinUser.GWL_EXSTYLE).longValue(),
+				getWindowMonitor(rootHWnd),
+				this
+		);
+	}
+
+	@Override
+	public final long getWindowMonitor(final HWND hWnd) {
+		return Pointer.nativeValue(USER32.MonitorFromWindow(hWnd, WinUser.MONITOR_DEFAULTTONEAREST).getPointer());
+	}
+
+	@Override
+	public final long getWindowStyle(final HWND hWnd) {
+		return USER32.GetWindowLongPtr(hWnd, WinUser.GWL_STYLE).longValue();
+	}
+
+	@Override
+	public final String getWindowTitle(final HWND hWnd, final String previousTitle) {
+		final TitleBuffer buffer = TITLE_BUFFERS.get();
+		final int length = buffer.read(hWnd);
+		if (0 >= length)
+			return null;
+		return buffer.matches(previousTitle, length) ? previousTitle : new String(buffer.mChars, 0, length);
+	}
+
+	/**
+	 * Convenience method
+	 */
+	private static HANDLE setWinEventHook(final int eventMin, final int eventMax, final WinEventProc callback) {
+		final int outOfContext = 0x0000;
+		return User32.INSTANCE.SetWinEventHook(eventMin, eventMax, null, callback, 0, 0, outOfContext);
+	}
+
+	/**
+	 * A per-thread, reusable buffer for reading window titles. Titles are read straight into native memory then copied
+	 * into a char array, so reading a title allocates nothing unless the buffer needs to grow.
+	 */
+	private static final class TitleBuffer {
+		private static final int INITIAL_CHARS = 256;
+		/** Window titles can't be longer than this anyway */
+		private static final int MAX_CHARS = 32768;
+
+		private Memory mNative = new Memory(INITIAL_CHARS * Native.WCHAR_SIZE);
+		private char[] mChars = new char[INITIAL_CHARS];
+
+		/**
+		 * @return The length of the title now in the buffer, or 0 if there is none
+		 */
+		private int read(final HWND hWnd) {
+			int length = USER32.GetWindowText(hWnd, mNative, mChars.length);
+			// a full buffer means the title was (probably) truncated
+			while ((length >= (mChars.length - 1)) && (mChars.length < MAX_CHARS)) {
+				mNative = new Memory(mChars.length * 2L * Native.WCHAR_SIZE);
+				mChars = new char[mChars.length * 2];
+				length = USER32.GetWindowText(hWnd, mNative, mChars.length);
+			}
+			if (0 < length)
+				mNative.read(0L, mChars, 0, length);
+			return length;
+		}
+
+		private boolean matches(final String title, final int length) {
+			if ((null == title) || (title.length() != length))
+				return false;
+			for (int i = 0; i < length; i++) {
+				if (title.charAt(i) != mChars[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Shared callback for the window event hooks we're interested in
+	 */
+	private static final class WinEventProcCallback implements WinEventProc {
+		private final WindowEventListener mListener;
+
+		private WinEventProcCallback(final WindowEventListener listener) {
+			mListener = listener;
+		}
+
+		@Override
+		public void callback(final HANDLE hWinEventHook,
+								   final DWORD event,
+								   final HWND hwnd,
+								   final LONG idObject,
+								   final LONG idChild,
+								   final DWORD dwEventThread,
+								   final DWORD dwmsEventTime) {
+			mListener.onWindowEvent(event.intValue(), hwnd, idObject.longValue(), dwEventThread.intValue(), dwmsEventTime.intValue());
+		}
+	}
+}
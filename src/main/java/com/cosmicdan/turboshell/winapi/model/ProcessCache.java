@@ -0,0 +1,77 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of {@link ProcessInfo} by process ID, so process details (and a handle for acting on the process) cost at most
+ * one lookup after the first use. Entries are evicted - closing their handle - once the last window of the process is
+ * destroyed, and are replaced on lookup if their process ID turned out to have been reused.
+ * <p>
+ * Lookups may come from any thread.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class ProcessCache {
+	private final Map<Integer, ProcessInfo> mProcesses = new ConcurrentHashMap<>(64);
+
+	/**
+	 * @return The information of the given process, or null if it doesn't exist (any more) or can't be queried
+	 */
+	public ProcessInfo get(final int processId) {
+		if (0 == processId)
+			return null;
+		final ProcessInfo cached = mProcesses.get(processId);
+		if ((null != cached) && !cached.isClosed())
+			return cached;
+		// queried outside of the map's lock, since it's a few native calls
+		final ProcessInfo queried = ProcessInfo.query(processId);
+		if (null == queried) {
+			if (null != cached)
+				mProcesses.remove(processId, cached);
+			return null;
+		}
+		// another thread may have queried the same process meanwhile - keep whichever got there first, close the other
+		final ProcessInfo processInfo = mProcesses.compute(processId, (Integer key, ProcessInfo existing) ->
+				((null == existing) || existing.isClosed()) ? queried : existing);
+		if (processInfo != queried)
+			queried.close();
+		return processInfo;
+	}
+
+	/**
+	 * Forcibly end the given process. If the cached entry turns out to be for an older process with the same ID, it is
+	 * replaced and the current process is terminated instead.
+	 * @return true if the process was terminated
+	 */
+	public boolean terminate(final int processId, final int exitCode) {
+		ProcessInfo processInfo = get(processId);
+		if (null == processInfo)
+			return false;
+		if (processInfo.terminate(exitCode))
+			return true;
+		if (!processInfo.isClosed())
+			return false;
+		processInfo = get(processId);
+		return (null != processInfo) && processInfo.terminate(exitCode);
+	}
+
+	/**
+	 * Remove the given process from the cache and close its handle, e.g. when it has no windows left.
+	 */
+	public void evict(final int processId) {
+		final ProcessInfo processInfo = mProcesses.remove(processId);
+		if (null != processInfo)
+			processInfo.close();
+	}
+
+	/**
+	 * Remove every process and close their handles.
+	 */
+	public void clear() {
+		mProcesses.keySet().forEach(this::evict);
+	}
+
+	public int size() {
+		return mProcesses.size();
+	}
+}
@@ -0,0 +1,159 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.Kernel32Ex;
+import com.sun.jna.platform.win32.WinBase.FILETIME;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.platform.win32.WinNT.HANDLE;
+import com.sun.jna.ptr.IntByReference;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Cached information about a single process, see {@link ProcessCache}. The image path and start time are read once when
+ * the process is first looked up. A handle for acting on the process (e.g. terminating it) is only opened when first
+ * needed, and is kept until the process is evicted from the cache - at which point it is always closed.
+ * <p>
+ * Windows reuses process IDs, so before acting on the process the start time is checked again through the handle.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class ProcessInfo extends Kernel32Ex {
+	private static final int IMAGE_PATH_MAX_CHARS = 32768;
+	// 64KB each, so reuse one per querying thread rather than allocating one per query
+	private static final ThreadLocal<char[]> IMAGE_PATH_BUFFERS = ThreadLocal.withInitial(() -> new char[IMAGE_PATH_MAX_CHARS]);
+	private static final int QUERY_ACCESS = WinNT.PROCESS_QUERY_LIMITED_INFORMATION;
+	private static final int ACTION_ACCESS = WinNT.PROCESS_QUERY_LIMITED_INFORMATION | WinNT.PROCESS_TERMINATE | WinNT.SYNCHRONIZE;
+
+	private final int mProcessId;
+	private final String mImagePath;
+	private final String mImageName;
+	private final long mStartTime;
+
+	// guarded by this. Lazily opened, closed on eviction.
+	private HANDLE mHandle = null;
+	private boolean mClosed = false;
+
+	private ProcessInfo(final int processId, final String imagePath, final long startTime) {
+		mProcessId = processId;
+		mImagePath = imagePath;
+		mImageName = imagePath.substring(imagePath.lastIndexOf('\\') + 1).intern();
+		mStartTime = startTime;
+	}
+
+	/**
+	 * Read the information of the given process.
+	 * @return The process information, or null if the process doesn't exist (any more) or can't be queried
+	 */
+	static ProcessInfo query(final int processId) {
+		final HANDLE hProcess = KERNEL32.OpenProcess(QUERY_ACCESS, false, processId);
+		if (null == hProcess)
+			return null;
+		try {
+			final char[] imagePath = IMAGE_PATH_BUFFERS.get();
+			final IntByReference imagePathLength = new IntByReference(IMAGE_PATH_MAX_CHARS);
+			if (!KERNEL32.QueryFullProcessImageName(hProcess, 0, imagePath, imagePathLength))
+				return null;
+			// interned, since many processes run the same executable (e.g. a browser)
+			return new ProcessInfo(processId, new String(imagePath, 0, imagePathLength.getValue()).intern(), getStartTime(hProcess));
+		} finally {
+			KERNEL32.CloseHandle(hProcess);
+		}
+	}
+
+	/**
+	 * @return The creation time of the process (FILETIME, i.e. 100ns intervals since 1601), or 0 if unknown
+	 */
+	private static long getStartTime(final HANDLE hProcess) {
+		final FILETIME creationTime = new FILETIME();
+		if (!KERNEL32.GetProcessTimes(hProcess, creationTime, new FILETIME(), new FILETIME(), new FILETIME()))
+			return 0L;
+		return ((long) creationTime.dwHighDateTime << 32) | (creationTime.dwLowDateTime & 0xFFFFFFFFL);
+	}
+
+	public int getProcessId() {
+		return mProcessId;
+	}
+
+	/**
+	 * @return The full path of the executable, e.g. C:\Windows\explorer.exe
+	 */
+	public String getImagePath() {
+		return mImagePath;
+	}
+
+	/**
+	 * @return The file name of the executable, e.g. explorer.exe
+	 */
+	public String getImageName() {
+		return mImageName;
+	}
+
+	public long getStartTime() {
+		return mStartTime;
+	}
+
+	/**
+	 * Forcibly end the process.
+	 * @return true if the process was terminated; false if it has already exited, its ID now belongs to a different
+	 * process, or it can't be terminated (e.g. it's elevated)
+	 */
+	public synchronized boolean terminate(final int exitCode) {
+		final HANDLE hProcess = getHandle();
+		if (null == hProcess)
+			return false;
+		return KERNEL32.TerminateProcess(hProcess, exitCode);
+	}
+
+	/**
+	 * @return true if the process has exited, its ID has been reused by another one, or it can't be opened at all
+	 */
+	public synchronized boolean hasExited() {
+		final HANDLE hProcess = getHandle();
+		return (null == hProcess) || (WinNT.WAIT_OBJECT_0 == KERNEL32.WaitForSingleObject(hProcess, 0));
+	}
+
+	/**
+	 * @return The handle for acting on this process, opening it if necessary; or null if the process is gone or can't be
+	 * opened. Caller must hold the lock.
+	 */
+	private HANDLE getHandle() {
+		if (mClosed)
+			return null;
+		if (null == mHandle) {
+			final HANDLE hProcess = KERNEL32.OpenProcess(ACTION_ACCESS, false, mProcessId);
+			if (null == hProcess)
+				return null;
+			// the ID might have been reused since we cached it. Once we hold a handle it can't be reused again.
+			if (getStartTime(hProcess) != mStartTime) {
+				log.info("Process ID {} ({}) has been reused, ignoring", mProcessId, mImageName);
+				KERNEL32.CloseHandle(hProcess);
+				mClosed = true;
+				return null;
+			}
+			mHandle = hProcess;
+		}
+		return mHandle;
+	}
+
+	/**
+	 * @return true if this entry can no longer be acted on - it has been evicted, or its process ID has been reused
+	 */
+	public synchronized boolean isClosed() {
+		return mClosed;
+	}
+
+	/**
+	 * Close the handle, if it was opened. The process can't be acted on after this.
+	 */
+	synchronized void close() {
+		if (null != mHandle) {
+			KERNEL32.CloseHandle(mHandle);
+			mHandle = null;
+		}
+		mClosed = true;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ProcessInfo{pid=%d, image=%s}", mProcessId, mImagePath);
+	}
+}
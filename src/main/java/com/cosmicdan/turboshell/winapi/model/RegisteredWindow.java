@@ -0,0 +1,90 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinUser;
+
+/**
+ * An immutable snapshot of a top-level window in the {@link WindowRegistry}. The process ID and class name never change
+ * for the life of a window, so they are only resolved once; any other change produces a new snapshot.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class RegisteredWindow {
+	private final HWND mHWnd;
+	private final long mHWndPeer;
+	private final int mProcessId;
+	private final String mClassName;
+	private final int mClassId;
+	private final long mStyleFlags;
+	private final long mMonitorHandle;
+
+	RegisteredWindow(final HWND hWnd, final long hWndPeer, final int processId, final String className, final int classId,
+					 final long styleFlags, final long monitorHandle) {
+		mHWnd = hWnd;
+		mHWndPeer = hWndPeer;
+		mProcessId = processId;
+		mClassName = className;
+		mClassId = classId;
+		mStyleFlags = styleFlags;
+		mMonitorHandle = monitorHandle;
+	}
+
+	/**
+	 * @return A copy of this snapshot with the given GWL_STYLE flags and monitor
+	 */
+	RegisteredWindow withPlacement(final long newStyleFlags, final long newMonitorHandle) {
+		return new RegisteredWindow(mHWnd, mHWndPeer, mProcessId, mClassName, mClassId, newStyleFlags, newMonitorHandle);
+	}
+
+	public HWND getHWnd() {
+		return mHWnd;
+	}
+
+	long getHWndPeer() {
+		return mHWndPeer;
+	}
+
+	public int getProcessId() {
+		return mProcessId;
+	}
+
+	public String getClassName() {
+		return mClassName;
+	}
+
+	/**
+	 * @return A small number identifying the class name, the same for every window of that class. See
+	 * {@link WindowRegistry#getClassId(String)}.
+	 */
+	public int getClassId() {
+		return mClassId;
+	}
+
+	public long getStyleFlags() {
+		return mStyleFlags;
+	}
+
+	/**
+	 * @return The raw HMONITOR of the monitor the window is (mostly) on
+	 */
+	public long getMonitorHandle() {
+		return mMonitorHandle;
+	}
+
+	public boolean isVisible() {
+		return 0 != (mStyleFlags & WinUser.WS_VISIBLE);
+	}
+
+	public boolean isMaximized() {
+		return 0 != (mStyleFlags & WinUser.WS_MAXIMIZE);
+	}
+
+	public boolean isMinimized() {
+		return 0 != (mStyleFlags & WinUser.WS_MINIMIZE);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RegisteredWindow{hWnd=%x, pid=%d, class=%s, style=%x, monitor=%x}",
+				mHWndPeer, mProcessId, mClassName, mStyleFlags, mMonitorHandle);
+	}
+}
@@ -0,0 +1,232 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory, scripted window event source. Windows and their state are declared up-front (or changed as part of the
+ * script) and the scripted events are replayed as fast as possible, with no native calls at all. Used for driving the
+ * {@link WinEventAgent} logic at synthetic rates on any platform.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public class ReplayWindowEventSource implements IWindowEventSource {
+	// concurrent since window data is read back from the agent's dispatcher thread
+	private final Map<HWND, ReplayWindow> mWindows = new ConcurrentHashMap<>(16);
+	private final List<ReplayEvent> mScript = new ArrayList<>(16);
+
+	private WindowEventListener mListener = null;
+	private volatile HWND mForegroundHWnd = null;
+	private int mRepeatCount = 1;
+	private volatile boolean mQuit = false;
+	// single writer, but may be read while replaying (e.g. by the footprint harness)
+	private volatile long mEventsDelivered = 0L;
+	private long mPumpNanos = 0L;
+
+	/**
+	 * Declare a window (or replace the state of an existing one).
+	 * @param handle The raw handle value to use for the window
+	 * @return The HWND to use when scripting events for this window
+	 */
+	public final HWND putWindow(final long handle, final long styleFlags, final long styleExFlags, final String title) {
+		return putWindow(handle, styleFlags, styleExFlags, title, 0L);
+	}
+
+	/**
+	 * Declare a window (or replace the state of an existing one) on the given monitor.
+	 * @param monitorHandle The raw HMONITOR value the window is on
+	 * @return The HWND to use when scripting events for this window
+	 */
+	public final HWND putWindow(final long handle, final long styleFlags, final long styleExFlags, final String title,
+								final long monitorHandle) {
+		final HWND hWnd = new HWND(Pointer.createConstant(handle));
+		mWindows.put(hWnd, new ReplayWindow(styleFlags, styleExFlags, title, monitorHandle));
+		return hWnd;
+	}
+
+	/**
+	 * Script an event on the window object itself.
+	 */
+	public final ReplayWindowEventSource addEvent(final int event, final HWND hWnd) {
+		return addEvent(event, hWnd, WinUserEx.OBJID_WINDOW);
+	}
+
+	/**
+	 * Script an event on an object of the given window.
+	 */
+	public final ReplayWindowEventSource addEvent(final int event, final HWND hWnd, final long idObject) {
+		mScript.add(new ReplayEvent(event, hWnd, idObject, null));
+		return this;
+	}
+
+	/**
+	 * Script a window state change (e.g. a maximize, or a new title) followed by the given event.
+	 */
+	public final ReplayWindowEventSource addStateChange(final int event, final HWND hWnd, final long styleFlags,
+														final long styleExFlags, final String title) {
+		return addStateChange(event, hWnd, styleFlags, styleExFlags, title, 0L);
+	}
+
+	/**
+	 * Script a window state change that may also move it to another monitor, followed by the given event.
+	 */
+	public final ReplayWindowEventSource addStateChange(final int event, final HWND hWnd, final long styleFlags,
+														final long styleExFlags, final String title, final long monitorHandle) {
+		mScript.add(new ReplayEvent(event, hWnd, WinUserEx.OBJID_WINDOW,
+				new ReplayWindow(styleFlags, styleExFlags, title, monitorHandle)));
+		return this;
+	}
+
+	/**
+	 * @param repeatCount How many times the whole script is replayed by {@link #pumpEvents()}
+	 */
+	public final void setRepeatCount(final int repeatCount) {
+		mRepeatCount = repeatCount;
+	}
+
+	/**
+	 * Stop replaying after the current event.
+	 */
+	@Override
+	public final void quit() {
+		mQuit = true;
+	}
+
+	public final long getEventsDelivered() {
+		return mEventsDelivered;
+	}
+
+	/**
+	 * @return Events delivered per second over the last {@link #pumpEvents()}
+	 */
+	public final double getEventsPerSecond() {
+		return (0L == mPumpNanos) ? 0.0 : (mEventsDelivered * 1.0e9) / mPumpNanos;
+	}
+
+	@Override
+	public final void hook(final WindowEventListener listener) {
+		mListener = listener;
+	}
+
+	@Override
+	public final boolean pumpEvents() {
+		mQuit = false;
+		mEventsDelivered = 0L;
+		final long startNanos = System.nanoTime();
+		final int scriptSize = mScript.size();
+		for (int repeat = 0; (repeat < mRepeatCount) && !mQuit; repeat++) {
+			for (int i = 0; (i < scriptSize) && !mQuit; i++) {
+				final ReplayEvent replayEvent = mScript.get(i);
+				if (null != replayEvent.mNewState)
+					mWindows.put(replayEvent.mHWnd, replayEvent.mNewState);
+				if (WinUserEx.EVENT_SYSTEM_FOREGROUND == replayEvent.mEvent)
+					mForegroundHWnd = replayEvent.mHWnd;
+				mListener.onWindowEvent(replayEvent.mEvent, replayEvent.mHWnd, replayEvent.mIdObject);
+				mEventsDelivered++;
+			}
+		}
+		mPumpNanos = System.nanoTime() - startNanos;
+		log.info("Replayed {} events ({} events/s)", mEventsDelivered, String.format("%.0f", getEventsPerSecond()));
+		return true;
+	}
+
+	@Override
+	public final void unhook() {
+		mListener = null;
+	}
+
+	@Override
+	public final HWND getForegroundWindow() {
+		return mForegroundHWnd;
+	}
+
+	@Override
+	public final void enumWindows(final Consumer<HWND> consumer) {
+		mWindows.keySet().forEach(consumer);
+	}
+
+	/**
+	 * Every declared window is treated as a top-level one.
+	 */
+	@Override
+	public final boolean isTopLevelWindow(final HWND hWnd) {
+		return mWindows.containsKey(hWnd);
+	}
+
+	/**
+	 * Replayed windows have no process, so this is always 0.
+	 */
+	@Override
+	public final int getWindowProcessId(final HWND hWnd) {
+		return 0;
+	}
+
+	@Override
+	public final String getWindowClassName(final HWND hWnd) {
+		return "";
+	}
+
+	@Override
+	public final WindowInfo getWindowInfo(final HWND hWnd) {
+		final ReplayWindow window = mWindows.get(hWnd);
+		if (null == window)
+			return new WindowInfo(hWnd, 0L, 0L, 0L, this);
+		return new WindowInfo(hWnd, window.mStyleFlags, window.mStyleExFlags, window.mMonitorHandle, this);
+	}
+
+	@Override
+	public final long getWindowMonitor(final HWND hWnd) {
+		final ReplayWindow window = mWindows.get(hWnd);
+		return (null == window) ? 0L : window.mMonitorHandle;
+	}
+
+	@Override
+	public final long getWindowStyle(final HWND hWnd) {
+		final ReplayWindow window = mWindows.get(hWnd);
+		return (null == window) ? 0L : window.mStyleFlags;
+	}
+
+	@Override
+	public final String getWindowTitle(final HWND hWnd, final String previousTitle) {
+		final ReplayWindow window = mWindows.get(hWnd);
+		if ((null == window) || (null == window.mTitle))
+			return null;
+		return window.mTitle.equals(previousTitle) ? previousTitle : window.mTitle;
+	}
+
+	private static final class ReplayWindow {
+		private final long mStyleFlags;
+		private final long mStyleExFlags;
+		private final String mTitle;
+		private final long mMonitorHandle;
+
+		private ReplayWindow(final long styleFlags, final long styleExFlags, final String title, final long monitorHandle) {
+			mStyleFlags = styleFlags;
+			mStyleExFlags = styleExFlags;
+			mTitle = title;
+			mMonitorHandle = monitorHandle;
+		}
+	}
+
+	private static final class ReplayEvent {
+		private final int mEvent;
+		private final HWND mHWnd;
+		private final long mIdObject;
+		private final ReplayWindow mNewState;
+
+		private ReplayEvent(final int event, final HWND hWnd, final long idObject, final ReplayWindow newState) {
+			mEvent = event;
+			mHWnd = hWnd;
+			mIdObject = idObject;
+			mNewState = newState;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Replays a trace recorded by {@link WinEventTraceRecorder}. Window state (styles, title) is taken from the trace as
+ * each event is replayed, so the agent sees the desktop as it was at that point of the recording - with no native
+ * calls at all, on any platform.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public class TraceWindowEventSource implements IWindowEventSource {
+	public enum Speed {
+		/** Keep the original timing between events */
+		RECORDED,
+		/** Replay as fast as the listener will take them */
+		MAXIMUM
+	}
+
+	/** How many records to map at a time */
+	private static final int RECORDS_PER_MAPPING = 16384;
+
+	private final Path mPath;
+	private final Speed mSpeed;
+	// concurrent since window data is read back from the agent's dispatcher thread
+	private final Map<HWND, TraceWindow> mWindows = new ConcurrentHashMap<>(64);
+
+	private WindowEventListener mListener = null;
+	private volatile HWND mForegroundHWnd = null;
+	private volatile boolean mQuit = false;
+	private volatile long mEventsDelivered = 0L;
+	// only set once a replay has finished
+	private volatile long mPumpNanos = 0L;
+
+	public TraceWindowEventSource(final Path path, final Speed speed) {
+		mPath = path;
+		mSpeed = speed;
+	}
+
+	/**
+	 * Stop replaying after the current event.
+	 */
+	@Override
+	public final void quit() {
+		mQuit = true;
+	}
+
+	public final long getEventsDelivered() {
+		return mEventsDelivered;
+	}
+
+	/**
+	 * @return Events delivered per second over the last {@link #pumpEvents()}, or 0 until it has finished
+	 */
+	public final double getEventsPerSecond() {
+		return (0L == mPumpNanos) ? 0.0 : (mEventsDelivered * 1.0e9) / mPumpNanos;
+	}
+
+	@Override
+	public final void hook(final WindowEventListener listener) {
+		mListener = listener;
+	}
+
+	@Override
+	public final boolean pumpEvents() {
+		mQuit = false;
+		mEventsDelivered = 0L;
+		mPumpNanos = 0L;
+		try (final FileChannel channel = FileChannel.open(mPath, StandardOpenOption.READ)) {
+			return replay(channel);
+		} catch (final IOException e) {
+			log.error("Could not read window event trace " + mPath, e);
+			return false;
+		}
+	}
+
+	private boolean replay(final FileChannel channel) throws IOException {
+		final long fileSize = channel.size();
+		final MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0L, Math.min(fileSize, WinEventTrace.HEADER_SIZE));
+		header.order(ByteOrder.LITTLE_ENDIAN);
+		if ((header.limit() < WinEventTrace.HEADER_SIZE) ||
+				(WinEventTrace.MAGIC != header.getInt(WinEventTrace.HEADER_MAGIC)) ||
+				(WinEventTrace.VERSION != header.getInt(WinEventTrace.HEADER_VERSION))) {
+			log.error("{} is not a supported window event trace", mPath);
+			return false;
+		}
+		final int recordSize = header.getInt(WinEventTrace.HEADER_RECORD_SIZE);
+		// the file may be longer than the records in it, see WinEventTrace
+		final long recordCount = Math.min(header.getLong(WinEventTrace.HEADER_RECORD_COUNT),
+				(fileSize - WinEventTrace.HEADER_SIZE) / recordSize);
+		final char[] titleChars = new char[WinEventTrace.TITLE_CHARS];
+		final char[] classNameChars = new char[WinEventTrace.CLASS_NAME_CHARS];
+
+		// traces can be bigger than a single mapping can hold, so map them a chunk at a time
+		MappedByteBuffer trace = null;
+		long chunkStart = 0L;
+		long chunkEnd = 0L;
+		final long startNanos = System.nanoTime();
+		for (long i = 0; (i < recordCount) && !mQuit; i++) {
+			if (i >= chunkEnd) {
+				chunkStart = i;
+				chunkEnd = Math.min(recordCount, i + RECORDS_PER_MAPPING);
+				trace = channel.map(MapMode.READ_ONLY, WinEventTrace.HEADER_SIZE + (chunkStart * recordSize),
+						(chunkEnd - chunkStart) * recordSize);
+				trace.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			final int offset = (int) ((i - chunkStart) * recordSize);
+			final int event = trace.getInt(offset + WinEventTrace.EVENT);
+			final HWND hWnd = toHWnd(trace.getLong(offset + WinEventTrace.HWND));
+			final int titleLength = trace.getShort(offset + WinEventTrace.TITLE_LENGTH) & 0xFFFF;
+			if (WinEventTrace.NOT_RESOLVED != titleLength)
+				updateWindow(trace, offset, hWnd, titleLength, titleChars, classNameChars);
+			if (WinUserEx.EVENT_SYSTEM_FOREGROUND == event)
+				mForegroundHWnd = hWnd;
+			if (Speed.RECORDED == mSpeed)
+				waitUntil(startNanos + trace.getLong(offset + WinEventTrace.TIMESTAMP_NANOS));
+			mListener.onWindowEvent(event, hWnd, trace.getInt(offset + WinEventTrace.ID_OBJECT),
+					trace.getInt(offset + WinEventTrace.EVENT_THREAD), 0);
+			mEventsDelivered++;
+		}
+		mPumpNanos = System.nanoTime() - startNanos;
+		log.info("Replayed {} traced events ({} events/s)", mEventsDelivered, String.format("%.0f", getEventsPerSecond()));
+		return true;
+	}
+
+	@Override
+	public final void unhook() {
+		mListener = null;
+	}
+
+	@Override
+	public final HWND getForegroundWindow() {
+		return mForegroundHWnd;
+	}
+
+	@Override
+	public final void enumWindows(final Consumer<HWND> consumer) {
+		mWindows.forEach((HWND hWnd, TraceWindow window) -> {
+			if (hWnd.equals(window.mRootHWnd))
+				consumer.accept(hWnd);
+		});
+	}
+
+	/**
+	 * Only root windows are known as such from the trace, so owned top-level windows are not reported as top-level.
+	 */
+	@Override
+	public final boolean isTopLevelWindow(final HWND hWnd) {
+		final TraceWindow window = mWindows.get(hWnd);
+		return (null != window) && hWnd.equals(window.mRootHWnd);
+	}
+
+	/**
+	 * Processes aren't recorded in the trace, so this is always 0.
+	 */
+	@Override
+	public final int getWindowProcessId(final HWND hWnd) {
+		return 0;
+	}
+
+	/**
+	 * @return The class name as recorded (maybe truncated, see {@link WinEventTrace}), or an empty string if unknown
+	 */
+	@Override
+	public final String getWindowClassName(final HWND hWnd) {
+		final TraceWindow window = mWindows.get(hWnd);
+		return (null == window) ? "" : window.mClassName;
+	}
+
+	@Override
+	public final WindowInfo getWindowInfo(final HWND hWnd) {
+		final TraceWindow window = mWindows.get(hWnd);
+		if (null == window)
+			return new WindowInfo(hWnd, 0L, 0L, 0L, this);
+		return new WindowInfo(window.mRootHWnd, window.mStyleFlags, window.mStyleExFlags, window.mMonitorHandle, this);
+	}
+
+	@Override
+	public final long getWindowMonitor(final HWND hWnd) {
+		final TraceWindow window = mWindows.get(hWnd);
+		return (null == window) ? 0L : window.mMonitorHandle;
+	}
+
+	@Override
+	public final long getWindowStyle(final HWND hWnd) {
+		final TraceWindow window = mWindows.get(hWnd);
+		return (null == window) ? 0L : window.mStyleFlags;
+	}
+
+	@Override
+	public final String getWindowTitle(final HWND hWnd, final String previousTitle) {
+		final TraceWindow window = mWindows.get(hWnd);
+		if ((null == window) || (null == window.mTitle))
+			return null;
+		return window.mTitle.equals(previousTitle) ? previousTitle : window.mTitle;
+	}
+
+	private void updateWindow(final MappedByteBuffer trace, final int offset, final HWND hWnd, final int titleLength,
+							  final char[] titleChars, final char[] classNameChars) {
+		final HWND rootHWnd = toHWnd(trace.getLong(offset + WinEventTrace.ROOT_HWND));
+		final TraceWindow previous = mWindows.get(rootHWnd);
+		for (int i = 0; i < titleLength; i++) {
+			titleChars[i] = trace.getChar(offset + WinEventTrace.TITLE + (i * 2));
+		}
+		// keep the same title instance if it hasn't changed, just like a live source would
+		String title = null;
+		if (0 < titleLength) {
+			title = new String(titleChars, 0, titleLength);
+			if ((null != previous) && title.equals(previous.mTitle))
+				title = previous.mTitle;
+		}
+		final int classNameLength = trace.getShort(offset + WinEventTrace.CLASS_NAME_LENGTH) & 0xFFFF;
+		for (int i = 0; i < classNameLength; i++) {
+			classNameChars[i] = trace.getChar(offset + WinEventTrace.CLASS_NAME + (i * 2));
+		}
+		String className = new String(classNameChars, 0, classNameLength);
+		if ((null != previous) && className.equals(previous.mClassName))
+			className = previous.mClassName;
+		final TraceWindow window = new TraceWindow(rootHWnd, trace.getLong(offset + WinEventTrace.STYLE),
+				trace.getLong(offset + WinEventTrace.EX_STYLE), trace.getLong(offset + WinEventTrace.MONITOR), title, className);
+		mWindows.put(rootHWnd, window);
+		if (!rootHWnd.equals(hWnd))
+			mWindows.put(hWnd, window);
+	}
+
+	private static void waitUntil(final long deadlineNanos) {
+		long remaining = deadlineNanos - System.nanoTime();
+		while (0L < remaining) {
+			LockSupport.parkNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+			remaining = deadlineNanos - System.nanoTime();
+		}
+	}
+
+	private static HWND toHWnd(final long peer) {
+		return new HWND(new Pointer(peer));
+	}
+
+	private static final class TraceWindow {
+		private final HWND mRootHWnd;
+		private final long mStyleFlags;
+		private final long mStyleExFlags;
+		private final long mMonitorHandle;
+		private final String mTitle;
+		private final String mClassName;
+
+		private TraceWindow(final HWND rootHWnd, final long styleFlags, final long styleExFlags, final long monitorHandle,
+							final String title, final String className) {
+			mRootHWnd = rootHWnd;
+			mStyleFlags = styleFlags;
+			mStyleExFlags = styleExFlags;
+			mMonitorHandle = monitorHandle;
+			mTitle = title;
+			mClassName = className;
+		}
+	}
+}
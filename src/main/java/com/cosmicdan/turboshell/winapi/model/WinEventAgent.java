@@ -1,298 +1,761 @@
-package com.cosmicdan.turboshell.winapi.model;
-
-import com.cosmicdan.turboshell.common.model.AgentModel;
-import com.cosmicdan.turboshell.common.model.SizedStack;
-import com.cosmicdan.turboshell.common.model.payload.WindowSysBtnUpdatePayload;
-import com.cosmicdan.turboshell.common.model.payload.WindowTitleChangePayload;
-import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
-import com.cosmicdan.turboshell.winapi.User32Ex.AgentDelegator;
-import com.cosmicdan.turboshell.winapi.WinUserEx;
-import com.sun.jna.platform.win32.Kernel32;
-import com.sun.jna.platform.win32.User32;
-import com.sun.jna.platform.win32.WinDef.DWORD;
-import com.sun.jna.platform.win32.WinDef.HWND;
-import com.sun.jna.platform.win32.WinDef.LONG;
-import com.sun.jna.platform.win32.WinNT;
-import com.sun.jna.platform.win32.WinNT.HANDLE;
-import com.sun.jna.platform.win32.WinUser;
-import com.sun.jna.platform.win32.WinUser.MSG;
-import com.sun.jna.platform.win32.WinUser.WinEventProc;
-import com.sun.jna.ptr.IntByReference;
-import lombok.extern.log4j.Log4j2;
-
-/**
- * Agent model for hooking and responding to WinEvents on the system, and also initiates windows-related events triggered by a
- * Presenter. Callbacks are processed in their own thread.
- * @author Daniel 'CosmicDan' Connolly
- */
-@Log4j2
-public final class WinEventAgent extends AgentModel implements AgentDelegator {
-	public static final WinEventAgent INSTANCE = new WinEventAgent();
-
-	public enum KillForegroundHardness{SOFT, HARD}
-
-	private final SizedStack<WindowInfo> foregroundWindows = new SizedStack<>(10);
-	private HWND mInitialTopHwnd;
-
-	// all callbacks as class fields to avoid GC
-	private HANDLE hookLocationChange = null;
-	private HANDLE hookNameChange = null;
-	private HANDLE hookForegroundChange = null;
-
-	public void addPresenter(final HWND initialTopHwnd, final ITurboBarPresenter turboBarPresenter) {
-		mInitialTopHwnd = initialTopHwnd;
-		// register for window title changes
-		registerCallback(WindowTitleChangePayload.class, (PayloadCallback<WindowTitleChangePayload>) turboBarPresenter::updateWindowTitle);
-		// register for window sysbtn control updates
-		registerCallback(WindowSysBtnUpdatePayload.class, (PayloadCallback<WindowSysBtnUpdatePayload>) turboBarPresenter::updateSysBtns);
-		// always call start - the agent itself will only (re)start if necessary
-		start();
-	}
-
-	@Override
-	protected void serviceStart() {
-		log.info("Starting...");
-		final WinEventProc callback = new WinEventProcCallback();
-
-		// hook window location changes
-		hookLocationChange = setWinEventHook(
-				WinUserEx.EVENT_OBJECT_LOCATIONCHANGE,
-				WinUserEx.EVENT_OBJECT_LOCATIONCHANGE,
-				callback
-		);
-
-		hookNameChange = setWinEventHook(
-				WinUserEx.EVENT_OBJECT_NAMECHANGE,
-				WinUserEx.EVENT_OBJECT_NAMECHANGE,
-				callback
-		);
-
-		// hook foreground window changes
-		hookForegroundChange = setWinEventHook(
-				WinUserEx.EVENT_SYSTEM_FOREGROUND,
-				WinUserEx.EVENT_SYSTEM_FOREGROUND,
-				callback
-		);
-
-		// add the current foreground window to the stack, if possible
-		final WindowInfo windowInfo = new WindowInfo(mInitialTopHwnd);
-		final boolean isRealWindow = windowInfo.isRealWindow();
-		if (isRealWindow)
-			WindowEventResponse.EVENT_SYSTEM_FOREGROUND.invoke(windowInfo);
-
-		// start runtime/message loop
-		final MSG msg = new MSG();
-		int result = -1;
-		while (0 != result) {
-			result = handleWindowMessage(msg);
-			if (-1 == result) {
-				// TODO: A program-stopping error
-				log.error("Error in GetMessage! This is bad!");
-				break;
-			}
-			/*
-			result = User32Ex.INSTANCE.GetMessage(msg, null, 0, 0);
-			if (-1 == result) {
-				log.error("Error in GetMessage! Aborting!");
-				break;
-			} else {
-				User32Ex.INSTANCE.TranslateMessage(msg);
-				User32Ex.INSTANCE.DispatchMessage(msg);
-			}
-			*/
-		}
-
-	}
-
-	@Override
-	protected void serviceStop() {
-		User32.INSTANCE.UnhookWinEvent(hookLocationChange);
-		User32.INSTANCE.UnhookWinEvent(hookNameChange);
-		User32.INSTANCE.UnhookWinEvent(hookForegroundChange);
-		log.info("Hooks unregistered");
-	}
-
-	/**
-	 * Convenience method
-	 */
-	private static HANDLE setWinEventHook(final int eventMin, final int eventMax, final WinEventProc callback) {
-		final int outOfContext = 0x0000;
-		return User32.INSTANCE.SetWinEventHook(eventMin, eventMax, null, callback, 0, 0, outOfContext);
-	}
-
-	/**
-	 * Shared callback for the window event hooks we're interested in
-	 */
-	@SuppressWarnings("CyclicClassDependency")
-	private static final class WinEventProcCallback implements WinEventProc {
-		private WinEventProcCallback() {}
-
-		@Override
-		public void callback(final HANDLE hWinEventHook,
-								   final DWORD event,
-								   final HWND hwnd,
-								   final LONG idObject,
-								   final LONG idChild,
-								   final DWORD dwEventThread,
-								   final DWORD dwmsEventTime) {
-			if (WinUserEx.OBJID_WINDOW == idObject.longValue()) {
-				final WindowInfo windowInfo = new WindowInfo(hwnd);
-				if (windowInfo.isRealWindow()) {
-					for (final WindowEventResponse response : WindowEventResponse.values()) {
-						if (event.longValue() == response.mEventConstant) {
-							response.invoke(windowInfo);
-						}
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * WinEventProcCallback (window event hooks) response logic
-	 */
-	@SuppressWarnings("CyclicClassDependency")
-	enum WindowEventResponse implements IWindowEventResponse {
-		EVENT_SYSTEM_FOREGROUND(WinUserEx.EVENT_SYSTEM_FOREGROUND, (WindowInfo newWindowInfo) -> {
-			//log.info("Foreground window changed");
-			addOrUpdateWindowStack(newWindowInfo);
-			runAllCallbacks(newWindowInfo);
-		}),
-		EVENT_OBJECT_LOCATIONCHANGE(WinUserEx.EVENT_OBJECT_LOCATIONCHANGE, (WindowInfo newWindowInfo) -> {
-			//log.info("A window location changed");
-			addOrUpdateWindowStack(newWindowInfo);
-			INSTANCE.runCallbacks(new WindowSysBtnUpdatePayload(newWindowInfo.getFlags()));
-		}),
-		EVENT_OBJECT_NAMECHANGE(WinUserEx.EVENT_OBJECT_NAMECHANGE, (WindowInfo newWindowInfo) -> {
-			// check if hWnd is the same as top of the stack (i.e. foreground), if not then ignore it
-			final WindowInfo foregroundWindowInfo = INSTANCE.foregroundWindows.peek();
-			if (!INSTANCE.foregroundWindows.isEmpty() &&
-					foregroundWindowInfo.getHWnd().equals(newWindowInfo.getHWnd())) {
-				// set new title
-				INSTANCE.runCallbacks(new WindowTitleChangePayload(newWindowInfo.getTitle()));
-				addOrUpdateWindowStack(newWindowInfo);
-			}
-		});
-
-		private static void runAllCallbacks(final WindowInfo newWindowInfo) {
-			INSTANCE.runCallbacks(new WindowTitleChangePayload(newWindowInfo.getTitle()));
-			INSTANCE.runCallbacks(new WindowSysBtnUpdatePayload(newWindowInfo.getFlags()));
-		}
-
-		/**
-		 * Add a new WindowInfo to the foregroundWindows stack
-		 * @param newWindowInfo The new WindowInfo object to add
-		 * @return true if an existing WindowInfo hWnd was detected (and removed) from the stack, otherwise false
-		 */
-		private static boolean addOrUpdateWindowStack(final WindowInfo newWindowInfo) {
-			// If this hWnd exists anywhere in the stack, remove it first
-			boolean isReplaced = false;
-			for (int i = 0; i < INSTANCE.foregroundWindows.size(); i++) {
-				if (INSTANCE.foregroundWindows.get(i).getHWnd().equals(newWindowInfo.getHWnd())) {
-					INSTANCE.foregroundWindows.remove(i);
-					isReplaced = true;
-					break;
-				}
-			}
-			// add the fresh hwnd to top of the stack
-			INSTANCE.foregroundWindows.push(newWindowInfo);
-			return isReplaced;
-		}
-
-		private final int mEventConstant;
-		private final IWindowEventResponse mWindowEventResponse;
-
-		WindowEventResponse(final int eventConstant, final IWindowEventResponse windowEventResponse) {
-			mEventConstant = eventConstant;
-			mWindowEventResponse = windowEventResponse;
-		}
-
-		@Override
-		public void invoke(final WindowInfo newWindowInfo) {
-			mWindowEventResponse.invoke(newWindowInfo);
-		}
-	}
-
-	@FunctionalInterface
-	interface IWindowEventResponse {
-		void invoke(WindowInfo newWindowInfo);
-	}
-
-	//////////////////////////////////////////////////////////////
-	// Presenter-requested actions (i.e. user-invoked)
-	//////////////////////////////////////////////////////////////
-
-	public void activateLastMaximizedWindow() {
-		for (int i = INSTANCE.foregroundWindows.size() - 1; -1 < i; i--) {
-			final WindowInfo windowInfo = INSTANCE.foregroundWindows.get(i);
-			if (windowInfo.isMaximized()) {
-				setForegroundWindow(windowInfo.getHWnd());
-				break;
-			}
-		}
-	}
-
-	public void activateFirstMaximizedWindow() {
-		for (final WindowInfo windowInfo : INSTANCE.foregroundWindows) {
-			if (windowInfo.isMaximized()) {
-				setForegroundWindow(windowInfo.getHWnd());
-				break;
-			}
-		}
-	}
-
-	/**
-	 * Perform minimize on the foreground window.
-	 */
-	public void minimizeForeground() {
-		// TODO: Test that the window is valid (e.g. Discord after minimizing it to tray)
-		if (!foregroundWindows.isEmpty()) {
-			showWindow(foregroundWindows.peek().getHWnd(), WinUser.SW_MINIMIZE);
-		}
-	}
-
-	/**
-	 * Perform resize (restore/maximize) on the foreground window.
-	 */
-	public void resizeForeground() {
-		// TODO: Test that the window is valid (e.g. Discord after minimizing it to tray)
-		if (!foregroundWindows.isEmpty()) {
-			final WindowInfo foregroundWindow = foregroundWindows.peek();
-			showWindow(foregroundWindow.getHWnd(), foregroundWindow.isMaximized() ? WinUser.SW_RESTORE : WinUser.SW_MAXIMIZE);
-		}
-	}
-
-	/**
-	 * Politely close the foreground window.
-	 */
-	public void closeForeground() {
-		// TODO: Test that the window is valid (e.g. Discord after minimizing it to tray)
-		if (!foregroundWindows.isEmpty()) {
-			// CRASHES! Issue reported - https://github.com/java-native-access/jna/issues/905
-			//	- Not really a big deal, this doesn't need to be especially fast. Just use interface mapping.
-			//User32Ex.INSTANCE.PostMessageW(Environment.getInstance().getLastActiveHwnd(), WinUser.WM_CLOSE, null, null);
-			User32.INSTANCE.PostMessage(foregroundWindows.peek().getHWnd(), WinUser.WM_CLOSE, null, null);
-		}
-	}
-
-	/**
-	 * Kill the foreground window.
-	 * @param hardness If HARD, will force kill it via TerminateProcess. Otherwise sends WM_QUIT.
-	 */
-	public void killForeground(final KillForegroundHardness hardness) {
-		if (!foregroundWindows.isEmpty()) {
-			final HWND foregroundWindow = foregroundWindows.peek().getHWnd();
-			if (KillForegroundHardness.HARD == hardness) {
-				final IntByReference pid = new IntByReference();
-				User32.INSTANCE.GetWindowThreadProcessId(foregroundWindow, pid);
-				final HANDLE hProcess = Kernel32.INSTANCE.OpenProcess(WinNT.PROCESS_TERMINATE, false, pid.getValue());
-				final boolean result = Kernel32.INSTANCE.TerminateProcess(hProcess, 0);
-				log.info("Called TerminateProcess on hWnd {}; result = {} (GetLastError = {})",
-						foregroundWindow, result, Kernel32.INSTANCE.GetLastError());
-			} else {
-				User32.INSTANCE.PostMessage(foregroundWindow, WinUser.WM_QUIT, null, null);
-				log.info("Sent WM_QUIT message to hWnd " + foregroundWindow);
-			}
-		}
-	}
-}
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.ConfigKey;
+import com.cosmicdan.turboshell.TurboShellConfig;
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import com.cosmicdan.turboshell.common.metrics.StartupTimeline;
+import com.cosmicdan.turboshell.common.model.AgentModel;
+import com.cosmicdan.turboshell.common.model.AgentRuntime;
+import com.cosmicdan.turboshell.common.model.ConfigAgent;
+import com.cosmicdan.turboshell.common.model.MruHistory;
+import com.cosmicdan.turboshell.common.model.payload.ConfigChangePayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowActionResultPayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowSysBtnUpdatePayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowTitleChangePayload;
+import com.cosmicdan.turboshell.turbobar.TurboBarContract.ITurboBarPresenter;
+import com.cosmicdan.turboshell.winapi.User32Ex.AgentDelegator;
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.cosmicdan.turboshell.winapi.model.IWindowEventSource.WindowEventListener;
+import com.cosmicdan.turboshell.winapi.model.WindowInfo.Flag;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinUser;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Agent model for hooking and responding to WinEvents on the system, and also initiates windows-related events triggered by a
+ * Presenter. Callbacks are processed in their own thread. The events themselves come from an {@link IWindowEventSource}.
+ * <p>
+ * There is a single agent (and hook) for all monitors. Window payloads are routed by the {@link MonitorIndex} to the
+ * presenter of the monitor the window is on, and each presenter shows the most recent foreground window on its monitor.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class WinEventAgent extends AgentModel implements AgentDelegator {
+	// event types counted individually by the metrics, initialised before INSTANCE since its constructor needs them
+	private static final int[] COUNTED_EVENTS = {
+			WinUserEx.EVENT_SYSTEM_FOREGROUND, WinUserEx.EVENT_SYSTEM_MINIMIZESTART, WinUserEx.EVENT_SYSTEM_MINIMIZEEND,
+			WinUserEx.EVENT_OBJECT_CREATE, WinUserEx.EVENT_OBJECT_DESTROY, WinUserEx.EVENT_OBJECT_SHOW,
+			WinUserEx.EVENT_OBJECT_HIDE, WinUserEx.EVENT_OBJECT_STATECHANGE, WinUserEx.EVENT_OBJECT_LOCATIONCHANGE,
+			WinUserEx.EVENT_OBJECT_NAMECHANGE
+	};
+	private static final String[] COUNTED_EVENT_NAMES = {
+			"EVENT_SYSTEM_FOREGROUND", "EVENT_SYSTEM_MINIMIZESTART", "EVENT_SYSTEM_MINIMIZEEND",
+			"EVENT_OBJECT_CREATE", "EVENT_OBJECT_DESTROY", "EVENT_OBJECT_SHOW",
+			"EVENT_OBJECT_HIDE", "EVENT_OBJECT_STATECHANGE", "EVENT_OBJECT_LOCATIONCHANGE",
+			"EVENT_OBJECT_NAMECHANGE"
+	};
+
+	public static final WinEventAgent INSTANCE = new WinEventAgent();
+
+	public enum KillForegroundHardness{SOFT, HARD}
+
+	/** System property - if set, all window events are also recorded to this trace file (see WinEventTraceRecorder) */
+	public static final String TRACE_RECORD_PROPERTY = "turboshell.trace.record";
+
+	private static final int WINDOW_INFO_CACHE_SIZE = TurboShellConfig.isLeanMode() ? 16 : 64;
+	// must be a power of two
+	private static final int HWND_CACHE_SIZE = 64;
+	// values() makes a new copy every time
+	private static final WindowEventResponse[] WINDOW_EVENT_RESPONSES = WindowEventResponse.values();
+	private static final EnumSet<Flag> NO_FLAGS = EnumSet.noneOf(Flag.class);
+
+	// most recent foreground windows, with maximized ones also tracked in their own sub-list
+	private final MruHistory<HWND, WindowInfo> foregroundWindows =
+			new MruHistory<>(TurboShellConfig.getWindowHistoryDepth(), WindowInfo::isMaximized);
+	private HWND mInitialTopHwnd = null;
+	private IWindowEventSource mEventSource = null;
+	private WindowInfoCache mWindowInfoCache = null;
+	private WindowRegistry mWindowRegistry = null;
+	// only created on first use in lean mode. Only written on the dispatcher thread.
+	private volatile WindowTitleIndex mWindowTitleIndex = null;
+	private final ProcessCache mProcessCache = new ProcessCache();
+	private WindowActionExecutor mActionExecutor = null;
+	private WinEventTraceRecorder mTraceRecorder = null;
+	private final LocationChangeCoalescer mLocationChanges = new LocationChangeCoalescer();
+	private final Consumer<HWND> mLocationChangeResponse = (HWND hWnd) -> {
+		mWindowRegistry.onWindowEvent(WinUserEx.EVENT_OBJECT_LOCATIONCHANGE, hWnd);
+		final long hWndPeer = Pointer.nativeValue(hWnd.getPointer());
+		if (isForeground(hWndPeer))
+			classifyForeground(hWndPeer, hWnd);
+		respond(WinUserEx.EVENT_OBJECT_LOCATIONCHANGE, hWnd);
+	};
+	// recently dispatched hWnds, by a hash of their handle, so events for the same window reuse one HWND instead of
+	// allocating a new one each. Dispatcher thread only.
+	private final HWND[] mHWndCache = new HWND[HWND_CACHE_SIZE];
+	// last flags sent to each route (indexed by route + 1, so ROUTE_ALL is slot 0), so sysbtn updates are only sent on an
+	// actual change. Grown as routes are added. Dispatcher thread only.
+	private EnumSet<Flag>[] mLastSysBtnFlags = newFlagsArray(8);
+	// the current foreground window, classified. Only written on the dispatcher thread.
+	private volatile ForegroundWindow mForeground = null;
+	// class IDs of the desktop classes (FULLSCREEN_HIDE_EXCLUDE_CLASSES), built on first use. Dispatcher thread only.
+	private BitSet mDesktopClassIds = null;
+
+	// metrics
+	private final LongAdder[] mEventsReceived = new LongAdder[COUNTED_EVENTS.length];
+	private final LongAdder mEventsReceivedOther = MetricsRegistry.INSTANCE.counter("winevent.received.OTHER");
+	private final LongAdder mEventsFilteredChildObject = MetricsRegistry.INSTANCE.counter("winevent.filtered.childObject");
+	private final LongAdder mEventsFilteredNotRealWindow = MetricsRegistry.INSTANCE.counter("winevent.filtered.notRealWindow");
+
+	private WinEventAgent() {
+		for (int i = 0; i < COUNTED_EVENTS.length; i++) {
+			mEventsReceived[i] = MetricsRegistry.INSTANCE.counter("winevent.received." + COUNTED_EVENT_NAMES[i]);
+		}
+		// the queue settings need a restart, but the history depth can change at any time
+		ConfigAgent.INSTANCE.registerCallback(ConfigChangePayload.class,
+				(PayloadCallback<ConfigChangePayload>) this::onConfigChange);
+	}
+
+	public void addPresenter(final HWND initialTopHwnd, final ITurboBarPresenter turboBarPresenter) {
+		if (null == mInitialTopHwnd)
+			mInitialTopHwnd = initialTopHwnd;
+		// only receive payloads for windows on the presenter's own monitor
+		final int route = turboBarPresenter.getMonitorRoute();
+		// register for window title changes
+		registerCallback(WindowTitleChangePayload.class, route, (PayloadCallback<WindowTitleChangePayload>) turboBarPresenter::updateWindowTitle);
+		// register for window sysbtn control updates
+		registerCallback(WindowSysBtnUpdatePayload.class, route, (PayloadCallback<WindowSysBtnUpdatePayload>) turboBarPresenter::updateSysBtns);
+		// register for the results of window actions the presenter asked for
+		registerCallback(WindowActionResultPayload.class, route, (PayloadCallback<WindowActionResultPayload>) turboBarPresenter::updateWindowActionResult);
+		// make sure the new presenter gets the current state of its monitor too (if the agent is already running)
+		runOnDispatcher(() -> {
+			setLastSysBtnFlags(route, null);
+			final WindowInfo windowInfo = foregroundOn(route);
+			if (null != windowInfo)
+				sendWindowState(windowInfo, route);
+		});
+		// always call start - the agent itself will only (re)start if necessary
+		start();
+	}
+
+	/**
+	 * Stop sending payloads to the presenter for the given route, e.g. when its monitor has been removed.
+	 */
+	public void removePresenter(final int route) {
+		unregisterRoute(route);
+		runOnDispatcher(() -> setLastSysBtnFlags(route, null));
+	}
+
+	/**
+	 * Re-resolve the monitor of every known window after the display monitors have changed, then resend each route's
+	 * state. Windows may hand out new HMONITORs on a display change, and any cached ones would otherwise no longer be
+	 * routed (or routed to the wrong monitor). Any thread.
+	 */
+	public void onMonitorsChanged() {
+		runOnDispatcher(() -> {
+			if (null == mWindowRegistry)
+				return;
+			mWindowInfoCache.clear();
+			mWindowRegistry.refreshAll();
+			// only the monitor is re-read, so whether each window is marked (maximized) stays the same
+			foregroundWindows.replaceAll((WindowInfo windowInfo) -> {
+				final long monitorHandle = mEventSource.getWindowMonitor(windowInfo.getHWnd());
+				return (monitorHandle == windowInfo.getMonitorHandle()) ? windowInfo :
+						windowInfo.withPlacement(windowInfo.getStyleFlags(), monitorHandle);
+			});
+			final ForegroundWindow foreground = mForeground;
+			if (null != foreground)
+				classifyForeground(foreground.getHWndPeer(), toHWnd(foreground.getHWndPeer()));
+			Arrays.fill(mLastSysBtnFlags, null);
+			for (final Monitor monitor : MonitorIndex.INSTANCE.getMonitors()) {
+				sendRouteState(monitor.getRoute());
+			}
+		});
+	}
+
+	/**
+	 * Set the source of window events. Must be called before the agent is started, otherwise the native WinEvent hooks
+	 * will be used.
+	 */
+	public void setEventSource(final IWindowEventSource eventSource) {
+		mEventSource = eventSource;
+	}
+
+	@Override
+	protected void serviceStart() {
+		log.info("Starting...");
+		if (null == mEventSource)
+			mEventSource = new NativeWindowEventSource();
+		// on a restart, keep everything from the first start (including any events still queued)
+		if (null == mWindowRegistry)
+			setUp();
+		final WindowEventListener listener = createListener();
+		mEventSource.hook(listener);
+		// seed the registry once the hooks are in, so no window can be missed - on a restart, this also picks up windows
+		// created while the hooks were out. Any events already queued for windows it finds are handled after it (on the
+		// same thread), and are harmless.
+		runOnDispatcher(() -> StartupTimeline.INSTANCE.time("windowSeed", () -> {
+			mWindowRegistry.seed();
+			if (null != mWindowTitleIndex)
+				mWindowTitleIndex.seed();
+		}));
+
+		// add the current foreground window to the stack, if possible
+		final HWND initialTopHwnd = (null == mInitialTopHwnd) ? mEventSource.getForegroundWindow() : mInitialTopHwnd;
+		if (null != initialTopHwnd)
+			listener.onWindowEvent(WinUserEx.EVENT_SYSTEM_FOREGROUND, initialTopHwnd, WinUserEx.OBJID_WINDOW);
+
+		// start runtime/message loop
+		final boolean pumpSucceeded = mEventSource.pumpEvents();
+		// hooks have to be removed by the thread that installed them
+		mEventSource.unhook();
+		closeTraceRecorder();
+		if (!pumpSucceeded)
+			requestRestart();
+	}
+
+	private void setUp() {
+		mWindowInfoCache = new WindowInfoCache(mEventSource, WINDOW_INFO_CACHE_SIZE);
+		MetricsRegistry.INSTANCE.gauge("winevent.windowInfoCache.hits", mWindowInfoCache::getHits);
+		MetricsRegistry.INSTANCE.gauge("winevent.windowInfoCache.misses", mWindowInfoCache::getMisses);
+		mWindowRegistry = new WindowRegistry(mEventSource);
+		MetricsRegistry.INSTANCE.gauge("winevent.windowRegistry.size", mWindowRegistry::size);
+		// a process with no windows left has (almost certainly) exited, so don't keep its handle open
+		mWindowRegistry.setProcessGoneListener(mProcessCache::evict);
+		MetricsRegistry.INSTANCE.gauge("winevent.processCache.size", mProcessCache::size);
+		if (!TurboShellConfig.isLeanMode())
+			mWindowTitleIndex = newWindowTitleIndex();
+		// responses are handled on a separate dispatcher thread, so the hook thread only ever enqueues
+		startEventPipeline(TurboShellConfig.getWinEventQueueCapacity(), TurboShellConfig.getWinEventQueueOverflowPolicy());
+	}
+
+	private void onConfigChange(final ConfigChangePayload payload) {
+		if (payload.hasChanged(ConfigKey.WINDOW_HISTORY_DEPTH)) {
+			final int historyDepth = payload.getSnapshot().getWindowHistoryDepth();
+			// the history is owned by the dispatcher
+			runOnDispatcher(() -> foregroundWindows.setMaxSize(historyDepth));
+		}
+		if (payload.hasChanged(ConfigKey.FULLSCREEN_HIDE_EXCLUDE_CLASSES)) {
+			runOnDispatcher(() -> {
+				mDesktopClassIds = null;
+				final ForegroundWindow foreground = mForeground;
+				if (null != foreground)
+					classifyForeground(foreground.getHWndPeer(), toHWnd(foreground.getHWndPeer()));
+			});
+		}
+	}
+
+	private WindowEventListener createListener() {
+		final WindowEventListener listener = new AgentEventListener();
+		final String tracePath = System.getProperty(TRACE_RECORD_PROPERTY);
+		if (null == tracePath)
+			return listener;
+		try {
+			mTraceRecorder = new WinEventTraceRecorder(Paths.get(tracePath), mEventSource, listener);
+			return mTraceRecorder;
+		} catch (final IOException e) {
+			log.error("Could not start recording window events to " + tracePath, e);
+			return listener;
+		}
+	}
+
+	private void closeTraceRecorder() {
+		if (null == mTraceRecorder)
+			return;
+		try {
+			mTraceRecorder.close();
+		} catch (final IOException e) {
+			log.error("Could not finish window event trace", e);
+		}
+		mTraceRecorder = null;
+	}
+
+	@Override
+	protected AgentRuntime.Priority getPriority() {
+		return AgentRuntime.Priority.HIGH;
+	}
+
+	@Override
+	protected void serviceStop() {
+		// serviceStart unhooks and returns once the loop has quit
+		if (null != mEventSource)
+			mEventSource.quit();
+		shutdownActionExecutor();
+		// it won't be kept up to date any more
+		mForeground = null;
+		mProcessCache.clear();
+		if (null != mWindowInfoCache)
+			log.info("WindowInfo cache: {} hits, {} misses", mWindowInfoCache.getHits(), mWindowInfoCache.getMisses());
+	}
+
+	/**
+	 * @return The registry of all top-level windows, or null if the agent hasn't started yet
+	 */
+	public WindowRegistry getWindowRegistry() {
+		return mWindowRegistry;
+	}
+
+	/**
+	 * @return The cache of process details for the windows' processes
+	 */
+	public ProcessCache getProcessCache() {
+		return mProcessCache;
+	}
+
+	private WindowTitleIndex newWindowTitleIndex() {
+		final WindowTitleIndex windowTitleIndex = new WindowTitleIndex(mEventSource, mWindowRegistry, this::getProcessName, getOwnProcessId());
+		MetricsRegistry.INSTANCE.gauge("winevent.windowTitleIndex.size", windowTitleIndex::size);
+		return windowTitleIndex;
+	}
+
+	/**
+	 * Build the title index on the dispatcher thread if it hasn't been yet (i.e. in lean mode), without waiting for it.
+	 * Ignored if the agent hasn't started yet.
+	 * @param onReady Run once the index is ready, e.g. to search again - on the dispatcher thread, or straight away on the
+	 * calling thread if it already is
+	 */
+	public void requestWindowTitleIndex(final Runnable onReady) {
+		if (null != mWindowTitleIndex) {
+			onReady.run();
+			return;
+		}
+		runOnDispatcher(() -> {
+			// an earlier request may have built it while this one was queued
+			if (null == mWindowTitleIndex) {
+				final WindowTitleIndex windowTitleIndex = newWindowTitleIndex();
+				windowTitleIndex.seed();
+				mWindowTitleIndex = windowTitleIndex;
+			}
+			onReady.run();
+		});
+	}
+
+	/**
+	 * @return The title index of all top-level windows, or null if the agent hasn't started yet (or, in lean mode, no
+	 * search has been made yet)
+	 */
+	public WindowTitleIndex getWindowTitleIndex() {
+		return mWindowTitleIndex;
+	}
+
+	/**
+	 * @return The executable name of the given process, or an empty string if it can't be queried
+	 */
+	private String getProcessName(final int processId) {
+		final ProcessInfo processInfo = mProcessCache.get(processId);
+		return (null == processInfo) ? "" : processInfo.getImageName();
+	}
+
+	/**
+	 * @return Our own process ID, so our own windows can be left out of the switcher; or 0 if it can't be determined
+	 */
+	private static int getOwnProcessId() {
+		// Java 8 has no direct way to get this, but the runtime name is "pid@hostname" on every JVM we care about
+		final String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+		try {
+			return Integer.parseInt(runtimeName.substring(0, runtimeName.indexOf('@')));
+		} catch (final NumberFormatException | StringIndexOutOfBoundsException ignored) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return The process ID of the given window, from the registry if possible
+	 */
+	private int getProcessId(final HWND hWnd) {
+		final RegisteredWindow registeredWindow = (null == mWindowRegistry) ? null : mWindowRegistry.get(hWnd);
+		return (null == registeredWindow) ? mEventSource.getWindowProcessId(hWnd) : registeredWindow.getProcessId();
+	}
+
+	/**
+	 * @return The foreground window as of the last foreground event handled, or null if the agent hasn't seen one yet
+	 * (or is stopped). May lag behind the actual foreground window, so check its handle before trusting it.
+	 */
+	public ForegroundWindow getForeground() {
+		return mForeground;
+	}
+
+	/**
+	 * @return The WindowInfo cache, or null if the agent hasn't started yet
+	 */
+	public WindowInfoCache getWindowInfoCache() {
+		return mWindowInfoCache;
+	}
+
+	/**
+	 * Shared listener for the window events we're interested in. Runs on the hook thread, so only filters and enqueues.
+	 */
+	private final class AgentEventListener implements WindowEventListener {
+		@Override
+		public void onWindowEvent(final int event, final HWND hWnd, final long idObject) {
+			countReceived(event);
+			if (WinUserEx.OBJID_WINDOW == idObject)
+				// a null hWnd is dropped by the dispatcher, but must not throw in here (inside the native callback)
+				publishEvent(event, (null == hWnd) ? 0L : Pointer.nativeValue(hWnd.getPointer()), idObject);
+			else
+				mEventsFilteredChildObject.increment();
+		}
+	}
+
+	private void countReceived(final int event) {
+		for (int i = 0; i < COUNTED_EVENTS.length; i++) {
+			if (event == COUNTED_EVENTS[i]) {
+				mEventsReceived[i].increment();
+				return;
+			}
+		}
+		mEventsReceivedOther.increment();
+	}
+
+	/**
+	 * Handle a window event on the dispatcher thread. Location changes are coalesced and only processed once per tick;
+	 * any other event processes the pending location changes first so the original event order is kept.
+	 */
+	@Override
+	protected void dispatchEvent(final int event, final long hWndPeer, final long idObject) {
+		if (0L == hWndPeer)
+			return;
+		final HWND hWnd = toHWnd(hWndPeer);
+		if (WinUserEx.EVENT_OBJECT_LOCATIONCHANGE == event) {
+			if (mLocationChanges.offer(hWnd))
+				requestDispatchTick(TimeUnit.MILLISECONDS.toNanos(LocationChangeCoalescer.TICK_MILLIS));
+			return;
+		}
+		mLocationChanges.flush(mLocationChangeResponse);
+		mWindowRegistry.onWindowEvent(event, hWnd);
+		// before the responses filter out e.g. the desktop, since that's one of the things we want to know about
+		if ((WinUserEx.EVENT_SYSTEM_FOREGROUND == event) || isForeground(hWndPeer))
+			classifyForeground(hWndPeer, hWnd);
+		final WindowTitleIndex windowTitleIndex = mWindowTitleIndex;
+		if (null != windowTitleIndex)
+			windowTitleIndex.onWindowEvent(event, hWnd);
+		//noinspection SwitchStatement
+		switch (event) {
+			case WinUserEx.EVENT_OBJECT_CREATE:
+				// nothing to respond to until it's shown
+				break;
+			case WinUserEx.EVENT_OBJECT_DESTROY:
+			case WinUserEx.EVENT_OBJECT_SHOW:
+			case WinUserEx.EVENT_OBJECT_HIDE:
+			case WinUserEx.EVENT_OBJECT_STATECHANGE:
+			case WinUserEx.EVENT_SYSTEM_MINIMIZESTART:
+			case WinUserEx.EVENT_SYSTEM_MINIMIZEEND:
+				// the window is gone or its style has (probably) changed
+				mWindowInfoCache.invalidate(hWnd);
+				break;
+			default:
+				respond(event, hWnd);
+		}
+	}
+
+	/**
+	 * @return An HWND for the given handle, reusing a recent one if possible
+	 */
+	private HWND toHWnd(final long hWndPeer) {
+		final int slot = (int) (hWndPeer ^ (hWndPeer >>> 16)) & (HWND_CACHE_SIZE - 1);
+		final HWND cached = mHWndCache[slot];
+		if ((null != cached) && (Pointer.nativeValue(cached.getPointer()) == hWndPeer))
+			return cached;
+		final HWND hWnd = new HWND(new Pointer(hWndPeer));
+		mHWndCache[slot] = hWnd;
+		return hWnd;
+	}
+
+	private boolean isForeground(final long hWndPeer) {
+		final ForegroundWindow foreground = mForeground;
+		return (null != foreground) && (hWndPeer == foreground.getHWndPeer());
+	}
+
+	/**
+	 * (Re)classify the foreground window from its registry entry, e.g. after it changed or its style did
+	 */
+	private void classifyForeground(final long hWndPeer, final HWND hWnd) {
+		final RegisteredWindow window = mWindowRegistry.get(hWnd);
+		final ForegroundWindow foreground = (null == window) ?
+				ForegroundWindow.unknown(hWndPeer) : ForegroundWindow.of(window, isDesktopClass(window.getClassId()));
+		if (!foreground.isSameAs(mForeground))
+			mForeground = foreground;
+	}
+
+	private boolean isDesktopClass(final int classId) {
+		if (null == mDesktopClassIds) {
+			mDesktopClassIds = new BitSet();
+			for (final String className : TurboShellConfig.getFullscreenHideExcludeClasses()) {
+				mDesktopClassIds.set(mWindowRegistry.getClassId(className));
+			}
+		}
+		return (0 <= classId) && mDesktopClassIds.get(classId);
+	}
+
+	@Override
+	protected void onDispatchTick() {
+		mLocationChanges.flush(mLocationChangeResponse);
+	}
+
+	/**
+	 * @return The WindowInfo for the given window, with its current style and monitor. The registry has just re-read
+	 * those for this event, so they're taken from there if it's a registered window instead of being read again.
+	 */
+	private WindowInfo getWithFreshPlacement(final HWND hWnd) {
+		final RegisteredWindow window = mWindowRegistry.get(hWnd);
+		return (null == window) ? mWindowInfoCache.getWithFreshPlacement(hWnd) :
+				mWindowInfoCache.getWithPlacement(hWnd, window.getStyleFlags(), window.getMonitorHandle());
+	}
+
+	private void respond(final int event, final HWND hWnd) {
+		// a location change might be a maximize/restore, so always check the style for those
+		final WindowInfo windowInfo = (WinUserEx.EVENT_OBJECT_LOCATIONCHANGE == event) ?
+				getWithFreshPlacement(hWnd) : mWindowInfoCache.get(hWnd);
+		if (windowInfo.isRealWindow()) {
+			for (final WindowEventResponse response : WINDOW_EVENT_RESPONSES) {
+				if (event == response.mEventConstant) {
+					response.invoke(windowInfo);
+				}
+			}
+		} else {
+			mEventsFilteredNotRealWindow.increment();
+		}
+	}
+
+	/**
+	 * Send a sysbtn update to the presenter of the given route, but only if the flags differ to the ones last sent there.
+	 */
+	private void updateSysBtns(final WindowInfo windowInfo, final int route) {
+		final EnumSet<Flag> flags = windowInfo.getFlags();
+		if (!flags.equals(getLastSysBtnFlags(route))) {
+			setLastSysBtnFlags(route, flags);
+			runCallbacks(new WindowSysBtnUpdatePayload(flags), route);
+		}
+	}
+
+	private void sendWindowState(final WindowInfo windowInfo, final int route) {
+		runCallbacks(new WindowTitleChangePayload(windowInfo.getTitle()), route);
+		updateSysBtns(windowInfo, route);
+	}
+
+	/**
+	 * Send the state of the most recent window on the given route to its presenter, or clear it if there are none left.
+	 */
+	private void sendRouteState(final int route) {
+		final WindowInfo windowInfo = foregroundOn(route);
+		if (null != windowInfo) {
+			sendWindowState(windowInfo, route);
+		} else {
+			setLastSysBtnFlags(route, NO_FLAGS);
+			runCallbacks(new WindowTitleChangePayload(""), route);
+			runCallbacks(new WindowSysBtnUpdatePayload(NO_FLAGS), route);
+		}
+	}
+
+	private EnumSet<Flag> getLastSysBtnFlags(final int route) {
+		final int slot = route + 1;
+		return (slot < mLastSysBtnFlags.length) ? mLastSysBtnFlags[slot] : null;
+	}
+
+	private void setLastSysBtnFlags(final int route, final EnumSet<Flag> flags) {
+		final int slot = route + 1;
+		if (slot >= mLastSysBtnFlags.length) {
+			if (null == flags)
+				return;
+			mLastSysBtnFlags = Arrays.copyOf(mLastSysBtnFlags, Math.max(mLastSysBtnFlags.length * 2, slot + 1));
+		}
+		mLastSysBtnFlags[slot] = flags;
+	}
+
+	// generic arrays can't be created directly
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static EnumSet<Flag>[] newFlagsArray(final int size) {
+		return new EnumSet[size];
+	}
+
+	private static int routeOf(final WindowInfo windowInfo) {
+		return MonitorIndex.INSTANCE.routeOf(windowInfo.getMonitorHandle());
+	}
+
+	/**
+	 * @return The most recent foreground window on the given route, or null if there are none
+	 */
+	private WindowInfo foregroundOn(final int route) {
+		if (ROUTE_ALL == route)
+			return foregroundWindows.peek();
+		return foregroundWindows.find((WindowInfo windowInfo) -> route == routeOf(windowInfo));
+	}
+
+	/**
+	 * WinEventProcCallback (window event hooks) response logic
+	 */
+	@SuppressWarnings("CyclicClassDependency")
+	enum WindowEventResponse implements IWindowEventResponse {
+		EVENT_SYSTEM_FOREGROUND(WinUserEx.EVENT_SYSTEM_FOREGROUND, (WindowInfo newWindowInfo) -> {
+			//log.info("Foreground window changed");
+			// the title may have changed while it was in the background, since we only track title changes in the foreground
+			newWindowInfo.refreshTitle();
+			addOrUpdateWindowStack(newWindowInfo);
+			INSTANCE.sendWindowState(newWindowInfo, routeOf(newWindowInfo));
+		}),
+		EVENT_OBJECT_LOCATIONCHANGE(WinUserEx.EVENT_OBJECT_LOCATIONCHANGE, (WindowInfo newWindowInfo) -> {
+			//log.info("A window location changed");
+			final WindowInfo previousWindowInfo = INSTANCE.foregroundWindows.get(newWindowInfo.getHWnd());
+			addOrUpdateWindowStack(newWindowInfo);
+			final int route = routeOf(newWindowInfo);
+			if ((null != previousWindowInfo) && (previousWindowInfo.getMonitorHandle() != newWindowInfo.getMonitorHandle())) {
+				// moved to another monitor - it's now the most recent window there, and the old one needs its next-most-recent
+				INSTANCE.sendWindowState(newWindowInfo, route);
+				final int previousRoute = routeOf(previousWindowInfo);
+				if (previousRoute != route)
+					INSTANCE.sendRouteState(previousRoute);
+			} else {
+				INSTANCE.updateSysBtns(newWindowInfo, route);
+			}
+		}),
+		EVENT_OBJECT_NAMECHANGE(WinUserEx.EVENT_OBJECT_NAMECHANGE, (WindowInfo newWindowInfo) -> {
+			// check if hWnd is the most recent window on its monitor (i.e. shown on that TurboBar), if not then ignore it
+			final int route = routeOf(newWindowInfo);
+			final WindowInfo foregroundWindowInfo = INSTANCE.foregroundOn(route);
+			if ((null != foregroundWindowInfo) &&
+					foregroundWindowInfo.getHWnd().equals(newWindowInfo.getHWnd()) &&
+					newWindowInfo.refreshTitle()) {
+				// set new title
+				INSTANCE.runCallbacks(new WindowTitleChangePayload(newWindowInfo.getTitle()), route);
+				// only the real foreground window is moved to the top of the history
+				if (foregroundWindowInfo == INSTANCE.foregroundWindows.peek())
+					addOrUpdateWindowStack(newWindowInfo);
+			}
+		});
+
+		/**
+		 * Add a new WindowInfo to the foregroundWindows history, or move it to the top if it's already there
+		 * @param newWindowInfo The new WindowInfo object to add
+		 * @return true if an existing WindowInfo hWnd was detected (and replaced) in the history, otherwise false
+		 */
+		static boolean addOrUpdateWindowStack(final WindowInfo newWindowInfo) {
+			return INSTANCE.foregroundWindows.put(newWindowInfo.getHWnd(), newWindowInfo);
+		}
+
+		private final int mEventConstant;
+		private final IWindowEventResponse mWindowEventResponse;
+
+		WindowEventResponse(final int eventConstant, final IWindowEventResponse windowEventResponse) {
+			mEventConstant = eventConstant;
+			mWindowEventResponse = windowEventResponse;
+		}
+
+		@Override
+		public void invoke(final WindowInfo newWindowInfo) {
+			mWindowEventResponse.invoke(newWindowInfo);
+		}
+	}
+
+	@FunctionalInterface
+	interface IWindowEventResponse {
+		void invoke(WindowInfo newWindowInfo);
+	}
+
+	//////////////////////////////////////////////////////////////
+	// Presenter-requested actions (i.e. user-invoked)
+	//////////////////////////////////////////////////////////////
+
+	/**
+	 * Activate the most recent maximized window on the given route (i.e. monitor).
+	 */
+	public void activateLastMaximizedWindow(final int route) {
+		final WindowInfo windowInfo = (ROUTE_ALL == route) ? foregroundWindows.peekMarked() :
+				foregroundWindows.findMarked((WindowInfo info) -> route == routeOf(info));
+		if (null != windowInfo)
+			setForegroundWindow(windowInfo.getHWnd());
+	}
+
+	/**
+	 * Activate the least recent maximized window on the given route (i.e. monitor).
+	 */
+	public void activateFirstMaximizedWindow(final int route) {
+		final WindowInfo windowInfo = (ROUTE_ALL == route) ? foregroundWindows.peekOldestMarked() :
+				foregroundWindows.findOldestMarked((WindowInfo info) -> route == routeOf(info));
+		if (null != windowInfo)
+			setForegroundWindow(windowInfo.getHWnd());
+	}
+
+	/**
+	 * Search all open windows by title and process name, for the TurboMenu switcher. Safe to call from any thread, and
+	 * never waits - see {@link #requestWindowTitleIndex(Runnable)}.
+	 * @return The matching windows, most recently activated first; or none if the title index isn't ready yet
+	 */
+	public List<WindowTitleIndex.Entry> searchWindows(final String query, final int maxResults) {
+		final WindowTitleIndex windowTitleIndex = mWindowTitleIndex;
+		return (null == windowTitleIndex) ? Collections.emptyList() : windowTitleIndex.search(query, maxResults);
+	}
+
+	/**
+	 * Bring the given window to the foreground, restoring it first if it's minimized.
+	 */
+	public void activateWindow(final HWND hWnd) {
+		final RegisteredWindow registeredWindow = (null == mWindowRegistry) ? null : mWindowRegistry.get(hWnd);
+		if ((null != registeredWindow) && registeredWindow.isMinimized())
+			showWindow(hWnd, WinUser.SW_RESTORE);
+		setForegroundWindow(hWnd);
+	}
+
+	/**
+	 * Perform minimize on the foreground window of the given route (i.e. monitor).
+	 */
+	public void minimizeForeground(final int route) {
+		submitForegroundAction(WindowAction.MINIMIZE, route);
+	}
+
+	/**
+	 * Perform resize (restore/maximize) on the foreground window of the given route (i.e. monitor).
+	 */
+	public void resizeForeground(final int route) {
+		submitForegroundAction(WindowAction.RESIZE, route);
+	}
+
+	/**
+	 * Politely close the foreground window of the given route (i.e. monitor).
+	 */
+	public void closeForeground(final int route) {
+		submitForegroundAction(WindowAction.CLOSE, route);
+	}
+
+	/**
+	 * Kill the foreground window of the given route (i.e. monitor).
+	 * @param hardness If HARD, will force kill it via TerminateProcess. Otherwise asks it to close, escalating to WM_QUIT
+	 *                 then TerminateProcess if it doesn't.
+	 */
+	public void killForeground(final int route, final KillForegroundHardness hardness) {
+		submitForegroundAction((KillForegroundHardness.HARD == hardness) ? WindowAction.KILL : WindowAction.FORCE_CLOSE, route);
+	}
+
+	/**
+	 * Run an action on the foreground window of the given route, off the calling (i.e. JavaFX) thread. The result is
+	 * sent back to that route as a {@link WindowActionResultPayload}.
+	 */
+	private void submitForegroundAction(final WindowAction action, final int route) {
+		final WindowInfo foregroundWindow = foregroundOn(route);
+		if (null != foregroundWindow)
+			getActionExecutor().submit(action, foregroundWindow, route);
+	}
+
+	/**
+	 * The executor is only created on first use, so nothing native is loaded until the user actually does something.
+	 */
+	private synchronized WindowActionExecutor getActionExecutor() {
+		if (null == mActionExecutor) {
+			// results go out on the dispatcher like every other payload, rather than from the executor's own thread
+			mActionExecutor = new WindowActionExecutor(mProcessCache, this::getProcessId,
+					(WindowActionResultPayload payload, int route) -> runOnDispatcher(() -> runCallbacks(payload, route)));
+		}
+		return mActionExecutor;
+	}
+
+	/**
+	 * Stop the executor's thread, if it was ever created. The next action creates a new one.
+	 */
+	private synchronized void shutdownActionExecutor() {
+		if (null == mActionExecutor)
+			return;
+		mActionExecutor.shutdown();
+		mActionExecutor = null;
+	}
+}
@@ -0,0 +1,51 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+/**
+ * Layout of a WinEvent trace file, as written by {@link WinEventTraceRecorder} and read by
+ * {@link TraceWindowEventSource}. All values are little-endian.
+ * <p>
+ * The file starts with a {@link #HEADER_SIZE}-byte header (magic, version, record size, the wall-clock time the
+ * recording started, then the number of records), followed by fixed-width records of {@link #RECORD_SIZE} bytes each,
+ * in the order the events arrived. Window titles are truncated to {@link #TITLE_CHARS} characters and class names to
+ * {@link #CLASS_NAME_CHARS} (more than any common window class needs). Processes aren't recorded, so a replay can't
+ * exercise anything keyed by process.
+ * <p>
+ * The file is written through memory mappings, which can't be truncated while mapped (on Windows) - so it may be longer
+ * than the records in it. Only the record count in the header is to be trusted.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+final class WinEventTrace {
+	static final int MAGIC = 0x54575354; // "TSWT"
+	static final int VERSION = 4;
+	static final int HEADER_SIZE = 32;
+
+	static final int TITLE_CHARS = 120;
+	static final int CLASS_NAME_CHARS = 64;
+	/** Title length marking a record with no resolved window data, e.g. an event on a child object */
+	static final int NOT_RESOLVED = 0xFFFF;
+
+	// header field offsets
+	static final int HEADER_MAGIC = 0;
+	static final int HEADER_VERSION = 4;
+	static final int HEADER_RECORD_SIZE = 8;
+	static final int HEADER_START_MILLIS = 16;
+	static final int HEADER_RECORD_COUNT = 24;
+
+	// record field offsets
+	static final int EVENT = 0;
+	static final int ID_OBJECT = 4;
+	static final int EVENT_THREAD = 8;
+	static final int TITLE_LENGTH = 12;
+	static final int CLASS_NAME_LENGTH = 14;
+	static final int TIMESTAMP_NANOS = 16;
+	static final int HWND = 24;
+	static final int ROOT_HWND = 32;
+	static final int STYLE = 40;
+	static final int EX_STYLE = 48;
+	static final int MONITOR = 56;
+	static final int TITLE = 64;
+	static final int CLASS_NAME = TITLE + (TITLE_CHARS * 2);
+	static final int RECORD_SIZE = CLASS_NAME + (CLASS_NAME_CHARS * 2);
+
+	private WinEventTrace() {}
+}
@@ -0,0 +1,177 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.cosmicdan.turboshell.winapi.model.IWindowEventSource.WindowEventListener;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the window events passing through it to a trace file (see {@link WinEventTrace}) before handing them on to
+ * the wrapped listener. Each event's window is resolved through the event source at the time it arrives, so the trace
+ * holds everything a {@link TraceWindowEventSource} needs to replay it later without a desktop.
+ * <p>
+ * Records are appended to a memory-mapped window of the file that is remapped further along as it fills up, so
+ * recording an event is a handful of buffer writes. Like the event source itself, this must only be called from a
+ * single thread - other than {@link #close()}, which may be called from any thread.
+ * <p>
+ * The record count in the header is updated on every remap and on close, so even a recording that was never closed
+ * (e.g. a crash) can be replayed up to the last remap.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class WinEventTraceRecorder implements WindowEventListener, Closeable {
+	/** How many records to map at a time */
+	private static final int RECORDS_PER_MAPPING = 16384;
+
+	private final FileChannel mChannel;
+	private final IWindowEventSource mSource;
+	private final WindowEventListener mDelegate;
+	private final long mStartNanos = System.nanoTime();
+	private final ByteBuffer mRecordCountBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+	private MappedByteBuffer mMapping = null;
+	private long mMappingPosition = 0L;
+	private long mRecordCount = 0L;
+	// guarded by this, so close can't pull the mapping out from under an append
+	private boolean mClosed = false;
+
+	/**
+	 * @param path The trace file to write. Replaced if it already exists.
+	 * @param source The source the events come from, used to resolve window data
+	 * @param delegate The listener to hand every event on to
+	 */
+	public WinEventTraceRecorder(final Path path, final IWindowEventSource source, final WindowEventListener delegate) throws IOException {
+		mChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		mSource = source;
+		mDelegate = delegate;
+		mapFrom(0L);
+		mMapping.putInt(WinEventTrace.HEADER_MAGIC, WinEventTrace.MAGIC);
+		mMapping.putInt(WinEventTrace.HEADER_VERSION, WinEventTrace.VERSION);
+		mMapping.putInt(WinEventTrace.HEADER_RECORD_SIZE, WinEventTrace.RECORD_SIZE);
+		mMapping.putLong(WinEventTrace.HEADER_START_MILLIS, System.currentTimeMillis());
+		mMapping.position(WinEventTrace.HEADER_SIZE);
+		log.info("Recording window events to {}", path.toAbsolutePath());
+	}
+
+	@Override
+	public void onWindowEvent(final int event, final HWND hWnd, final long idObject) {
+		onWindowEvent(event, hWnd, idObject, 0, 0);
+	}
+
+	@Override
+	public void onWindowEvent(final int event, final HWND hWnd, final long idObject, final int eventThread, final int eventTimeMillis) {
+		synchronized (this) {
+			if (!mClosed) {
+				try {
+					append(event, hWnd, idObject, eventThread);
+				} catch (final IOException e) {
+					log.error("Could not write to window event trace, recording stopped", e);
+					closeQuietly();
+				}
+			}
+		}
+		mDelegate.onWindowEvent(event, hWnd, idObject, eventThread, eventTimeMillis);
+	}
+
+	public synchronized long getRecordCount() {
+		return mRecordCount;
+	}
+
+	/**
+	 * Flush the trace and write the final record count. The file isn't trimmed, see {@link WinEventTrace}.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (mClosed)
+			return;
+		mClosed = true;
+		try {
+			mMapping.force();
+			writeRecordCount();
+		} finally {
+			mChannel.close();
+		}
+		log.info("Recorded {} window events", mRecordCount);
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (final IOException e) {
+			log.warn("Could not close window event trace", e);
+		}
+	}
+
+	/**
+	 * Write the record count with a plain write rather than through a mapping, since the header may not be mapped any more
+	 */
+	private void writeRecordCount() throws IOException {
+		mRecordCountBuffer.clear();
+		mRecordCountBuffer.putLong(0, mRecordCount);
+		while (mRecordCountBuffer.hasRemaining()) {
+			mChannel.write(mRecordCountBuffer, WinEventTrace.HEADER_RECORD_COUNT + mRecordCountBuffer.position());
+		}
+	}
+
+	private void append(final int event, final HWND hWnd, final long idObject, final int eventThread) throws IOException {
+		if (mMapping.remaining() < WinEventTrace.RECORD_SIZE)
+			mapFrom(mMappingPosition + mMapping.position());
+		final int offset = mMapping.position();
+		mMapping.putInt(offset + WinEventTrace.EVENT, event);
+		mMapping.putInt(offset + WinEventTrace.ID_OBJECT, (int) idObject);
+		mMapping.putInt(offset + WinEventTrace.EVENT_THREAD, eventThread);
+		mMapping.putLong(offset + WinEventTrace.TIMESTAMP_NANOS, System.nanoTime() - mStartNanos);
+		mMapping.putLong(offset + WinEventTrace.HWND, peerOf(hWnd));
+		if ((WinUserEx.OBJID_WINDOW == idObject) && (null != hWnd)) {
+			// resolve the window now, while it still exists
+			final WindowInfo windowInfo = mSource.getWindowInfo(hWnd);
+			final String title = mSource.getWindowTitle(windowInfo.getHWnd(), null);
+			final int titleLength = (null == title) ? 0 : Math.min(title.length(), WinEventTrace.TITLE_CHARS);
+			final String className = mSource.getWindowClassName(windowInfo.getHWnd());
+			final int classNameLength = (null == className) ? 0 : Math.min(className.length(), WinEventTrace.CLASS_NAME_CHARS);
+			mMapping.putShort(offset + WinEventTrace.TITLE_LENGTH, (short) titleLength);
+			mMapping.putShort(offset + WinEventTrace.CLASS_NAME_LENGTH, (short) classNameLength);
+			mMapping.putLong(offset + WinEventTrace.ROOT_HWND, peerOf(windowInfo.getHWnd()));
+			mMapping.putLong(offset + WinEventTrace.STYLE, windowInfo.getStyleFlags());
+			mMapping.putLong(offset + WinEventTrace.EX_STYLE, windowInfo.getStyleExFlags());
+			mMapping.putLong(offset + WinEventTrace.MONITOR, windowInfo.getMonitorHandle());
+			for (int i = 0; i < titleLength; i++) {
+				mMapping.putChar(offset + WinEventTrace.TITLE + (i * 2), title.charAt(i));
+			}
+			for (int i = 0; i < classNameLength; i++) {
+				mMapping.putChar(offset + WinEventTrace.CLASS_NAME + (i * 2), className.charAt(i));
+			}
+		} else {
+			mMapping.putShort(offset + WinEventTrace.TITLE_LENGTH, (short) WinEventTrace.NOT_RESOLVED);
+		}
+		mMapping.position(offset + WinEventTrace.RECORD_SIZE);
+		mRecordCount++;
+	}
+
+	private void mapFrom(final long position) throws IOException {
+		final long size = (0L == position ? WinEventTrace.HEADER_SIZE : 0L) + ((long) RECORDS_PER_MAPPING * WinEventTrace.RECORD_SIZE);
+		if (null != mMapping) {
+			mMapping.force();
+			writeRecordCount();
+		}
+		mMapping = mChannel.map(MapMode.READ_WRITE, position, size);
+		mMapping.order(ByteOrder.LITTLE_ENDIAN);
+		mMappingPosition = position;
+	}
+
+	private static long peerOf(final HWND hWnd) {
+		return (null == hWnd) ? 0L : Pointer.nativeValue(hWnd.getPointer());
+	}
+}
@@ -0,0 +1,19 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+/**
+ * User-invoked actions on a window, run by the {@link WinEventAgent} off the JavaFX thread. The outcome of each is sent
+ * back as a {@link com.cosmicdan.turboshell.common.model.payload.WindowActionResultPayload}.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public enum WindowAction {
+	/** Minimize the window */
+	MINIMIZE,
+	/** Restore the window if maximized, otherwise maximize it */
+	RESIZE,
+	/** Politely ask the window to close (WM_CLOSE). Not sent to a hung window, since it would never see it. */
+	CLOSE,
+	/** Ask the window to close, then escalate to WM_QUIT and finally TerminateProcess if it doesn't (or is hung) */
+	FORCE_CLOSE,
+	/** Terminate the window's process straight away */
+	KILL
+}
@@ -0,0 +1,173 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import com.cosmicdan.turboshell.common.model.payload.WindowActionResultPayload;
+import com.cosmicdan.turboshell.common.model.payload.WindowActionResultPayload.Outcome;
+import com.cosmicdan.turboshell.winapi.User32Ex;
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.platform.win32.User32;
+import com.sun.jna.platform.win32.WinDef.DWORDByReference;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinDef.LPARAM;
+import com.sun.jna.platform.win32.WinDef.WPARAM;
+import com.sun.jna.platform.win32.WinUser;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs {@link WindowAction}s on its own thread, so a hung target window can never stall the JavaFX thread. Escalation
+ * steps are scheduled rather than waited for, so other actions still run while a frozen app is being dealt with.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+final class WindowActionExecutor extends User32Ex {
+	/** How long a window gets to close after each escalation step, before the next one */
+	private static final long ESCALATION_TIMEOUT_MILLIS = 3000L;
+	/** How long a window gets to answer a WM_NULL before it's considered hung */
+	private static final int HUNG_TIMEOUT_MILLIS = 500;
+
+	private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+		final Thread thread = new Thread(runnable, "WindowActions");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ProcessCache mProcessCache;
+	private final ToIntFunction<HWND> mProcessIdResolver;
+	private final ObjIntConsumer<WindowActionResultPayload> mResultSink;
+	private final LongAdder[] mOutcomes = new LongAdder[Outcome.values().length];
+
+	/**
+	 * @param processCache For terminating processes
+	 * @param processIdResolver Gets the process ID of a window
+	 * @param resultSink Receives the result of every action along with the route it was requested from
+	 */
+	WindowActionExecutor(final ProcessCache processCache, final ToIntFunction<HWND> processIdResolver,
+						 final ObjIntConsumer<WindowActionResultPayload> resultSink) {
+		mProcessCache = processCache;
+		mProcessIdResolver = processIdResolver;
+		mResultSink = resultSink;
+		for (final Outcome outcome : Outcome.values()) {
+			mOutcomes[outcome.ordinal()] = MetricsRegistry.INSTANCE.counter("windowAction.outcome." + outcome);
+		}
+	}
+
+	/**
+	 * Queue an action on the given window. Returns immediately.
+	 * @param route The route to send the result to
+	 */
+	void submit(final WindowAction action, final WindowInfo target, final int route) {
+		// read here rather than on the executor thread: it may be a native call, the dispatcher may be updating it, and by
+		// the time the action is reported the window may well have a different title anyway
+		final String title = target.getTitle();
+		try {
+			mExecutor.execute(() -> perform(action, target, title, route));
+		} catch (final RejectedExecutionException e) {
+			// shut down while the action was being requested
+			log.warn("Window action {} dropped, the executor has been shut down", action);
+		}
+	}
+
+	/**
+	 * Stop the thread, abandoning any queued actions and escalation steps. Nothing more can be submitted afterwards.
+	 */
+	void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+	private void perform(final WindowAction action, final WindowInfo target, final String title, final int route) {
+		final HWND hWnd = target.getHWnd();
+		if (!USER32.IsWindow(hWnd)) {
+			report(action, title, route, Outcome.NO_WINDOW);
+			return;
+		}
+		//noinspection SwitchStatement
+		switch (action) {
+			case MINIMIZE:
+				USER32.ShowWindowAsync(hWnd, WinUser.SW_MINIMIZE);
+				report(action, title, route, Outcome.DONE);
+				break;
+			case RESIZE:
+				USER32.ShowWindowAsync(hWnd, target.isMaximized() ? WinUser.SW_RESTORE : WinUser.SW_MAXIMIZE);
+				report(action, title, route, Outcome.DONE);
+				break;
+			case CLOSE:
+				if (isHung(hWnd)) {
+					report(action, title, route, Outcome.HUNG);
+				} else {
+					postMessage(hWnd, WinUser.WM_CLOSE);
+					report(action, title, route, Outcome.DONE);
+				}
+				break;
+			case FORCE_CLOSE:
+				// a hung window won't process any messages, so don't bother waiting for it
+				if (isHung(hWnd)) {
+					terminate(action, target, title, route);
+				} else {
+					postMessage(hWnd, WinUser.WM_CLOSE);
+					mExecutor.schedule(() -> escalateToQuit(target, title, route), ESCALATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				}
+				break;
+			case KILL:
+				terminate(action, target, title, route);
+				break;
+		}
+	}
+
+	private void escalateToQuit(final WindowInfo target, final String title, final int route) {
+		final HWND hWnd = target.getHWnd();
+		if (!USER32.IsWindow(hWnd)) {
+			report(WindowAction.FORCE_CLOSE, title, route, Outcome.CLOSED);
+		} else if (isHung(hWnd)) {
+			terminate(WindowAction.FORCE_CLOSE, target, title, route);
+		} else {
+			log.info("{} didn't close, sending WM_QUIT", hWnd);
+			postMessage(hWnd, WinUser.WM_QUIT);
+			mExecutor.schedule(() -> escalateToTerminate(target, title, route), ESCALATION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void escalateToTerminate(final WindowInfo target, final String title, final int route) {
+		if (USER32.IsWindow(target.getHWnd()))
+			terminate(WindowAction.FORCE_CLOSE, target, title, route);
+		else
+			report(WindowAction.FORCE_CLOSE, title, route, Outcome.QUIT);
+	}
+
+	private void terminate(final WindowAction action, final WindowInfo target, final String title, final int route) {
+		final int processId = mProcessIdResolver.applyAsInt(target.getHWnd());
+		final boolean result = mProcessCache.terminate(processId, 0);
+		log.info("Called TerminateProcess on hWnd {} (pid {}); result = {}", target.getHWnd(), processId, result);
+		report(action, title, route, result ? Outcome.TERMINATED : Outcome.FAILED);
+	}
+
+	/**
+	 * @return true if the window isn't processing messages - either Windows already thinks so, or it doesn't answer a
+	 * WM_NULL in time
+	 */
+	private static boolean isHung(final HWND hWnd) {
+		if (USER32.IsHungAppWindow(hWnd))
+			return true;
+		final DWORDByReference result = new DWORDByReference();
+		return 0 == USER32.SendMessageTimeout(hWnd, WinUserEx.WM_NULL, new WPARAM(0), new LPARAM(0),
+				WinUser.SMTO_ABORTIFHUNG | WinUser.SMTO_BLOCK, HUNG_TIMEOUT_MILLIS, result).longValue();
+	}
+
+	private static void postMessage(final HWND hWnd, final int msg) {
+		// CRASHES! Issue reported - https://github.com/java-native-access/jna/issues/905
+		//	- Not really a big deal, this doesn't need to be especially fast. Just use interface mapping.
+		//User32Ex.INSTANCE.PostMessageW(Environment.getInstance().getLastActiveHwnd(), WinUser.WM_CLOSE, null, null);
+		User32.INSTANCE.PostMessage(hWnd, msg, null, null);
+	}
+
+	private void report(final WindowAction action, final String title, final int route, final Outcome outcome) {
+		mOutcomes[outcome.ordinal()].increment();
+		mResultSink.accept(new WindowActionResultPayload(action, outcome, title), route);
+	}
+}
@@ -1,135 +1,171 @@
-package com.cosmicdan.turboshell.winapi.model;
-
-import com.cosmicdan.turboshell.winapi.User32Ex;
-import com.cosmicdan.turboshell.winapi.WinUserEx;
-import com.sun.jna.platform.win32.WinDef.HWND;
-import com.sun.jna.platform.win32.WinUser;
-import lombok.extern.log4j.Log4j2;
-
-import java.util.EnumSet;
-
-/**
- * A holder/wrapper for window styles, title name, and other interesting information
- * @author Daniel 'CosmicDan' Connolly
- */
-@Log4j2
-public class WindowInfo extends User32Ex {
-	private static final String NO_TITLE = "[NO TITLE]";
-
-	public enum Flag {
-		IS_MAXIMIZED,
-		IS_MAXIMIZABLE,
-		IS_MINIMIZABLE
-	}
-
-	private final HWND mHWnd;
-	private final long styleFlags;
-	private final long styleExFlags;
-
-	private String mTitle = null;
-
-	public WindowInfo(final HWND hWnd) {
-		mHWnd = USER32.GetAncestor(hWnd, WinUser.GA_ROOTOWNER);
-		styleFlags = USER32.GetWindowLongPtr(mHWnd, WinUser.GWL_STYLE).longValue();
-		styleExFlags = USER32.GetWindowLongPtr(mHWnd, WinUser.GWL_EXSTYLE).longValue();
-	}
-
-	public final HWND getHWnd() {
-		return mHWnd;
-	}
-
-	public String getTitle() {
-		if (null == mTitle) {
-			// get the title for the new window
-			final int titleLength = USER32.GetWindowTextLength(mHWnd) + 1;
-			final char[] title = new char[titleLength];
-			final int length = USER32.GetWindowText(mHWnd, title, title.length);
-			String windowTitle = NO_TITLE;
-			if (0 < length)
-				windowTitle = new String(title);
-			if (null == mTitle)
-				mTitle = windowTitle;
-		}
-		return mTitle;
-	}
-
-	/**
-	 * Determine if a window is "real". We consider a window real if it probably exists on the taskbar.
-	 * References:
-	 * https://msdn.microsoft.com/en-us/library/windows/desktop/cc144179%28v=vs.85%29.aspx#Managing_Taskbar_But
-	 * https://stackoverflow.com/questions/16973995/
-	 * https://stackoverflow.com/questions/2262726/
-	 */
-	public final boolean isRealWindow() {
-		boolean isReal = false;
-		if (hasStyle(WinUser.WS_VISIBLE) && hasStyle(WinUserEx.WS_EX_APPWINDOW) && hasTitle()) {
-			if (!(hasExStyle(WinUserEx.WS_EX_TOOLWINDOW) || hasExStyle(WinUserEx.WS_EX_NOACTIVATE))) {
-				isReal = true;
-			}
-		}
-		return isReal;
-	}
-
-	private boolean canResize() {
-		return hasStyle(WinUser.WS_SIZEBOX);
-	}
-
-	private boolean hasResizeButton() {
-		return hasStyle(WinUser.WS_MAXIMIZEBOX);
-	}
-
-	public final boolean isMaximized() {
-		return hasStyle(WinUser.WS_MAXIMIZE);
-	}
-
-	public EnumSet<Flag> getFlags() {
-		final EnumSet<Flag> flags = EnumSet.noneOf(Flag.class);
-		if (isMaximized())
-			flags.add(Flag.IS_MAXIMIZED);
-		if (canMaximize())
-			flags.add(Flag.IS_MAXIMIZABLE);
-		if (hasMinimizeButton())
-			flags.add(Flag.IS_MINIMIZABLE);
-		return flags;
-	}
-
-	public boolean isVisible() {
-		return USER32.IsWindowVisible(mHWnd);
-	}
-
-	private boolean hasMinimizeButton() {
-		return hasStyle(WinUser.WS_MINIMIZEBOX);
-	}
-
-	private boolean canMaximize() {
-		return (canResize() && hasResizeButton());
-	}
-/*
-	private boolean isTopWindow() {
-		return mHWnd.equals(getTopWindow());
-	}
-
-	private HWND getTopWindow() {
-		return User32Ex.INSTANCE.GetAncestor(mHWnd, WinUser.GA_ROOT);
-	}
-
-	private boolean hasParentWindow() {
-		return mHWnd.equals(getParentWindow());
-	}
-
-	private HWND getParentWindow() {
-		return User32Ex.INSTANCE.GetWindow(mHWnd, WinUser.GW_OWNER);
-	}
-*/
-	private boolean hasStyle(final long windowStyle) {
-		return windowStyle == (styleFlags & windowStyle);
-	}
-
-	private boolean hasExStyle(final long windowExStyle) {
-		return windowExStyle == (styleExFlags & windowExStyle);
-	}
-
-	private boolean hasTitle() {
-		return !NO_TITLE.equals(mTitle);
-	}
-}
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import com.sun.jna.platform.win32.WinUser;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.EnumSet;
+
+/**
+ * A holder/wrapper for window styles, title name, and other interesting information. Instances are resolved by an
+ * {@link IWindowEventSource}, which is also used for any lazily-fetched data (e.g. the title).
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public class WindowInfo {
+	private static final String NO_TITLE = "[NO TITLE]";
+
+	public enum Flag {
+		IS_MAXIMIZED,
+		IS_MAXIMIZABLE,
+		IS_MINIMIZABLE
+	}
+
+	private final HWND mHWnd;
+	private final long styleFlags;
+	private final long styleExFlags;
+	private final long mMonitorHandle;
+	private final IWindowEventSource mSource;
+
+	private String mTitle = null;
+
+	/**
+	 * @param rootHWnd The root owner window, i.e. GetAncestor(hWnd, GA_ROOTOWNER)
+	 * @param styleFlags The GWL_STYLE flags of the root window
+	 * @param styleExFlags The GWL_EXSTYLE flags of the root window
+	 * @param monitorHandle The raw HMONITOR of the monitor the window is (mostly) on
+	 * @param source The source that resolved this window, used for lazily-fetched data
+	 */
+	public WindowInfo(final HWND rootHWnd, final long styleFlags, final long styleExFlags, final long monitorHandle,
+					  final IWindowEventSource source) {
+		mHWnd = rootHWnd;
+		this.styleFlags = styleFlags;
+		this.styleExFlags = styleExFlags;
+		mMonitorHandle = monitorHandle;
+		mSource = source;
+	}
+
+	/**
+	 * @return A copy of this WindowInfo with the given GWL_STYLE flags and monitor, keeping any already-fetched data
+	 * (e.g. the title)
+	 */
+	public final WindowInfo withPlacement(final long newStyleFlags, final long newMonitorHandle) {
+		final WindowInfo windowInfo = new WindowInfo(mHWnd, newStyleFlags, styleExFlags, newMonitorHandle, mSource);
+		windowInfo.mTitle = mTitle;
+		return windowInfo;
+	}
+
+	public final long getStyleFlags() {
+		return styleFlags;
+	}
+
+	public final long getStyleExFlags() {
+		return styleExFlags;
+	}
+
+	public final long getMonitorHandle() {
+		return mMonitorHandle;
+	}
+
+	public final HWND getHWnd() {
+		return mHWnd;
+	}
+
+	public String getTitle() {
+		if (null == mTitle) {
+			// get the title for the new window
+			refreshTitle();
+		}
+		return mTitle;
+	}
+
+	/**
+	 * Re-read the title from the window, e.g. after a name change. An unchanged title is kept as-is (no allocation).
+	 * @return true if the title changed
+	 */
+	public final boolean refreshTitle() {
+		final String previousTitle = mTitle;
+		final String windowTitle = mSource.getWindowTitle(mHWnd, previousTitle);
+		mTitle = (null == windowTitle) ? NO_TITLE : windowTitle;
+		// the source returns the same instance for an unchanged title
+		//noinspection StringEquality
+		return mTitle != previousTitle;
+	}
+
+	/**
+	 * Determine if a window is "real". We consider a window real if it probably exists on the taskbar.
+	 * References:
+	 * https://msdn.microsoft.com/en-us/library/windows/desktop/cc144179%28v=vs.85%29.aspx#Managing_Taskbar_But
+	 * https://stackoverflow.com/questions/16973995/
+	 * https://stackoverflow.com/questions/2262726/
+	 */
+	public final boolean isRealWindow() {
+		boolean isReal = false;
+		if (hasStyle(WinUser.WS_VISIBLE) && hasStyle(WinUserEx.WS_EX_APPWINDOW) && hasTitle()) {
+			if (!(hasExStyle(WinUserEx.WS_EX_TOOLWINDOW) || hasExStyle(WinUserEx.WS_EX_NOACTIVATE))) {
+				isReal = true;
+			}
+		}
+		return isReal;
+	}
+
+	private boolean canResize() {
+		return hasStyle(WinUser.WS_SIZEBOX);
+	}
+
+	private boolean hasResizeButton() {
+		return hasStyle(WinUser.WS_MAXIMIZEBOX);
+	}
+
+	public final boolean isMaximized() {
+		return hasStyle(WinUser.WS_MAXIMIZE);
+	}
+
+	public EnumSet<Flag> getFlags() {
+		final EnumSet<Flag> flags = EnumSet.noneOf(Flag.class);
+		if (isMaximized())
+			flags.add(Flag.IS_MAXIMIZED);
+		if (canMaximize())
+			flags.add(Flag.IS_MAXIMIZABLE);
+		if (hasMinimizeButton())
+			flags.add(Flag.IS_MINIMIZABLE);
+		return flags;
+	}
+
+	private boolean hasMinimizeButton() {
+		return hasStyle(WinUser.WS_MINIMIZEBOX);
+	}
+
+	private boolean canMaximize() {
+		return (canResize() && hasResizeButton());
+	}
+/*
+	private boolean isTopWindow() {
+		return mHWnd.equals(getTopWindow());
+	}
+
+	private HWND getTopWindow() {
+		return User32Ex.INSTANCE.GetAncestor(mHWnd, WinUser.GA_ROOT);
+	}
+
+	private boolean hasParentWindow() {
+		return mHWnd.equals(getParentWindow());
+	}
+
+	private HWND getParentWindow() {
+		return User32Ex.INSTANCE.GetWindow(mHWnd, WinUser.GW_OWNER);
+	}
+*/
+	private boolean hasStyle(final long windowStyle) {
+		return windowStyle == (styleFlags & windowStyle);
+	}
+
+	private boolean hasExStyle(final long windowExStyle) {
+		return windowExStyle == (styleExFlags & windowExStyle);
+	}
+
+	private boolean hasTitle() {
+		return !NO_TITLE.equals(mTitle);
+	}
+}
@@ -0,0 +1,138 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.sun.jna.platform.win32.WinDef.HWND;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, least-recently-used cache of resolved {@link WindowInfo}s, so windows we've seen recently cost a hash
+ * lookup instead of a set of native round-trips. Entries are keyed by the hWnd we were asked about; when that differs
+ * to the root window it is also cached under the root. Not thread-safe - it's only ever used from the
+ * {@link WinEventAgent}'s dispatcher thread.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+public final class WindowInfoCache {
+	private final IWindowEventSource mSource;
+	private final Map<HWND, WindowInfo> mEntries;
+	// number of entries cached under a non-root hWnd; invalidation only needs a full scan when there are any
+	private int mAliasCount = 0;
+
+	private final LongAdder mHits = new LongAdder();
+	private final LongAdder mMisses = new LongAdder();
+
+	public WindowInfoCache(final IWindowEventSource source, final int maxSize) {
+		mSource = source;
+		mEntries = new LinkedHashMap<HWND, WindowInfo>(maxSize + 1, 1.0f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<HWND, WindowInfo> eldest) {
+				if (size() > maxSize) {
+					if (!eldest.getKey().equals(eldest.getValue().getHWnd()))
+						mAliasCount--;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get the WindowInfo for the given hWnd, resolving it from the event source if it isn't cached.
+	 */
+	public WindowInfo get(final HWND hWnd) {
+		WindowInfo windowInfo = mEntries.get(hWnd);
+		if (null == windowInfo) {
+			mMisses.increment();
+			windowInfo = mSource.getWindowInfo(hWnd);
+			put(hWnd, windowInfo);
+			if (!hWnd.equals(windowInfo.getHWnd()))
+				put(windowInfo.getHWnd(), windowInfo);
+		} else {
+			mHits.increment();
+		}
+		return windowInfo;
+	}
+
+	/**
+	 * Get the WindowInfo for the given hWnd, but re-read the window style and monitor (two cheap native calls) in case
+	 * they have changed since it was cached - e.g. a maximize/restore or a move to another monitor, which only show up
+	 * as a location change.
+	 */
+	public WindowInfo getWithFreshPlacement(final HWND hWnd) {
+		final WindowInfo cached = get(hWnd);
+		return withPlacement(cached, mSource.getWindowStyle(cached.getHWnd()), mSource.getWindowMonitor(cached.getHWnd()));
+	}
+
+	/**
+	 * As {@link #getWithFreshPlacement(HWND)}, but with a style and monitor the caller has only just read for the given
+	 * (top-level) window, e.g. from the {@link WindowRegistry} - so they aren't read twice.
+	 */
+	public WindowInfo getWithPlacement(final HWND hWnd, final long styleFlags, final long monitorHandle) {
+		final WindowInfo cached = get(hWnd);
+		// they're only for the root window if that's what we were given
+		if (!hWnd.equals(cached.getHWnd()))
+			return withPlacement(cached, mSource.getWindowStyle(cached.getHWnd()), mSource.getWindowMonitor(cached.getHWnd()));
+		return withPlacement(cached, styleFlags, monitorHandle);
+	}
+
+	private WindowInfo withPlacement(final WindowInfo cached, final long styleFlags, final long monitorHandle) {
+		if ((styleFlags == cached.getStyleFlags()) && (monitorHandle == cached.getMonitorHandle()))
+			return cached;
+		final WindowInfo refreshed = cached.withPlacement(styleFlags, monitorHandle);
+		replace(cached, refreshed);
+		return refreshed;
+	}
+
+	/**
+	 * Drop the given window (and anything cached as an alias of it) so it is resolved again on next use.
+	 */
+	public void invalidate(final HWND hWnd) {
+		final WindowInfo removed = mEntries.remove(hWnd);
+		if ((null != removed) && !hWnd.equals(removed.getHWnd()))
+			mAliasCount--;
+		if (0 < mAliasCount) {
+			final Iterator<Map.Entry<HWND, WindowInfo>> iterator = mEntries.entrySet().iterator();
+			while (iterator.hasNext()) {
+				final Map.Entry<HWND, WindowInfo> entry = iterator.next();
+				final HWND rootHWnd = entry.getValue().getHWnd();
+				if ((entry.getValue() == removed) || rootHWnd.equals(hWnd)) {
+					if (!entry.getKey().equals(rootHWnd))
+						mAliasCount--;
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		mEntries.clear();
+		mAliasCount = 0;
+	}
+
+	public long getHits() {
+		return mHits.sum();
+	}
+
+	public long getMisses() {
+		return mMisses.sum();
+	}
+
+	private void put(final HWND hWnd, final WindowInfo windowInfo) {
+		final WindowInfo previous = mEntries.put(hWnd, windowInfo);
+		if ((null == previous) && !hWnd.equals(windowInfo.getHWnd()))
+			mAliasCount++;
+	}
+
+	private void replace(final WindowInfo oldInfo, final WindowInfo newInfo) {
+		if (0 == mAliasCount) {
+			mEntries.put(newInfo.getHWnd(), newInfo);
+			return;
+		}
+		for (final Map.Entry<HWND, WindowInfo> entry : mEntries.entrySet()) {
+			if (entry.getValue() == oldInfo)
+				entry.setValue(newInfo);
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.common.model.LongKeyMap;
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A live index of every top-level window on the desktop. It is seeded once by enumerating all windows, then kept current
+ * from window events (create, destroy, show, hide, state and location changes) - so lookups by window, process, class
+ * name, monitor and maximized/minimized state only cost as much as the number of windows they return.
+ * <p>
+ * Only a single thread may update the registry (the {@link WinEventAgent} dispatcher). Any thread may query it; queries
+ * return a snapshot, which may be missing an update that is in progress.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class WindowRegistry {
+	private static final int EXPECTED_WINDOWS = 256;
+
+	private final IWindowEventSource mSource;
+	// looked up on every event, so keyed by the raw handle without boxing
+	private final LongKeyMap<RegisteredWindow> mByHWnd = new LongKeyMap<>(EXPECTED_WINDOWS);
+	private final Map<Integer, Map<Long, RegisteredWindow>> mByProcessId = new ConcurrentHashMap<>(EXPECTED_WINDOWS / 2);
+	private final Map<String, Map<Long, RegisteredWindow>> mByClassName = new ConcurrentHashMap<>(EXPECTED_WINDOWS / 2);
+	private final LongKeyMap<MonitorWindows> mByMonitor = new LongKeyMap<>(8);
+	private final Map<Long, RegisteredWindow> mMaximized = new ConcurrentHashMap<>(16);
+	private final Map<Long, RegisteredWindow> mMinimized = new ConcurrentHashMap<>(16);
+	// every class name seen so far -> its class ID. Only ever grows, but there are only a few distinct class names.
+	private final Map<String, Integer> mClassIds = new ConcurrentHashMap<>(64);
+	private IntConsumer mProcessGoneListener = (int processId) -> {};
+
+	/**
+	 * All windows on a single monitor, plus the maximized and minimized ones among them.
+	 */
+	private static final class MonitorWindows {
+		private final Map<Long, RegisteredWindow> mAll = new ConcurrentHashMap<>(EXPECTED_WINDOWS / 4);
+		private final Map<Long, RegisteredWindow> mMaximized = new ConcurrentHashMap<>(8);
+		private final Map<Long, RegisteredWindow> mMinimized = new ConcurrentHashMap<>(8);
+	}
+
+	public WindowRegistry(final IWindowEventSource source) {
+		mSource = source;
+	}
+
+	///////////////////
+	// Writer methods
+	///////////////////
+
+	/**
+	 * Set the listener for when the last known window of a process has been destroyed, e.g. to evict it from a cache.
+	 * Called on the updating thread.
+	 */
+	public void setProcessGoneListener(final IntConsumer processGoneListener) {
+		mProcessGoneListener = processGoneListener;
+	}
+
+	/**
+	 * Add every current top-level window. Only needs to be called once, after the event hooks are installed.
+	 */
+	public void seed() {
+		mSource.enumWindows(this::add);
+		log.info("Seeded with {} windows", mByHWnd.size());
+	}
+
+	/**
+	 * Update the registry for a window event.
+	 */
+	public void onWindowEvent(final int event, final HWND hWnd) {
+		final long hWndPeer = Pointer.nativeValue(hWnd.getPointer());
+		final RegisteredWindow existing = mByHWnd.get(hWndPeer);
+		//noinspection SwitchStatement
+		switch (event) {
+			case WinUserEx.EVENT_OBJECT_DESTROY:
+				if (null != existing)
+					remove(existing);
+				break;
+			case WinUserEx.EVENT_OBJECT_CREATE:
+			case WinUserEx.EVENT_OBJECT_SHOW:
+				// a DESTROY may have been dropped (e.g. on a queue overflow) and the handle since reused by another window,
+				// maybe of another process or class entirely - so re-resolve existing entries, rather than trust them
+				if (null != existing) {
+					if (!isReused(event, existing)) {
+						refresh(existing);
+						break;
+					}
+					remove(existing);
+				}
+				// only these can introduce a new window; anything else would be a child window anyway
+				if (mSource.isTopLevelWindow(hWnd))
+					add(hWnd);
+				break;
+			case WinUserEx.EVENT_OBJECT_LOCATIONCHANGE:
+			case WinUserEx.EVENT_OBJECT_STATECHANGE:
+			case WinUserEx.EVENT_OBJECT_HIDE:
+			case WinUserEx.EVENT_SYSTEM_MINIMIZESTART:
+			case WinUserEx.EVENT_SYSTEM_MINIMIZEEND:
+				// the only events that can change a window's style or monitor
+				if (null != existing)
+					refresh(existing);
+				break;
+			default:
+				// e.g. name changes and foreground switches - nothing we index changes, so don't pay for the native calls
+				break;
+		}
+	}
+
+	/**
+	 * Re-read the style and monitor of every window, e.g. after the display monitors have changed (since Windows may then
+	 * hand out new HMONITORs).
+	 */
+	public void refreshAll() {
+		for (final RegisteredWindow window : mByHWnd.values()) {
+			refresh(window);
+		}
+	}
+
+	/**
+	 * @return true if the given entry is no longer for the window with its handle
+	 */
+	private boolean isReused(final int event, final RegisteredWindow existing) {
+		// a window is only ever created once, so a create for a known handle is always a new window
+		if (WinUserEx.EVENT_OBJECT_CREATE == event)
+			return true;
+		final HWND hWnd = existing.getHWnd();
+		return (mSource.getWindowProcessId(hWnd) != existing.getProcessId()) ||
+				!Objects.equals(existing.getClassName(), mSource.getWindowClassName(hWnd));
+	}
+
+	private void remove(final RegisteredWindow existing) {
+		unindex(existing);
+		if (!mByProcessId.containsKey(existing.getProcessId()))
+			mProcessGoneListener.accept(existing.getProcessId());
+	}
+
+	private void add(final HWND hWnd) {
+		final long hWndPeer = Pointer.nativeValue(hWnd.getPointer());
+		if (mByHWnd.containsKey(hWndPeer))
+			return;
+		// there are only a few distinct class names, shared by many windows
+		final String className = internClassName(mSource.getWindowClassName(hWnd));
+		final RegisteredWindow window = new RegisteredWindow(hWnd, hWndPeer, mSource.getWindowProcessId(hWnd), className,
+				getClassId(className), mSource.getWindowStyle(hWnd), mSource.getWindowMonitor(hWnd));
+		index(window);
+	}
+
+	/**
+	 * @return The ID for the given window class name, assigning the next one if it hasn't been seen before - so e.g. a
+	 * set of class names can be matched against a {@link RegisteredWindow#getClassId()} without any String compares.
+	 * Only to be called from the updating thread.
+	 */
+	public int getClassId(final String className) {
+		if (null == className)
+			return -1;
+		final Integer classId = mClassIds.get(className);
+		if (null != classId)
+			return classId;
+		final int newClassId = mClassIds.size();
+		mClassIds.put(className, newClassId);
+		return newClassId;
+	}
+
+	private static String internClassName(final String className) {
+		return (null == className) ? null : className.intern();
+	}
+
+	/**
+	 * Re-read the style and monitor of an existing window, and re-index it only if they have changed. For a location
+	 * change this is the only time they're read - the {@link WinEventAgent} reuses them from the updated entry.
+	 */
+	private void refresh(final RegisteredWindow existing) {
+		final long styleFlags = mSource.getWindowStyle(existing.getHWnd());
+		final long monitorHandle = mSource.getWindowMonitor(existing.getHWnd());
+		if ((styleFlags == existing.getStyleFlags()) && (monitorHandle == existing.getMonitorHandle()))
+			return;
+		unindex(existing);
+		index(existing.withPlacement(styleFlags, monitorHandle));
+	}
+
+	private void index(final RegisteredWindow window) {
+		final Long key = window.getHWndPeer();
+		mByHWnd.put(window.getHWndPeer(), window);
+		mByProcessId.computeIfAbsent(window.getProcessId(), (Integer pid) -> new ConcurrentHashMap<>(4)).put(key, window);
+		mByClassName.computeIfAbsent(window.getClassName(), (String className) -> new ConcurrentHashMap<>(4)).put(key, window);
+		MonitorWindows monitorWindows = mByMonitor.get(window.getMonitorHandle());
+		if (null == monitorWindows) {
+			monitorWindows = new MonitorWindows();
+			mByMonitor.put(window.getMonitorHandle(), monitorWindows);
+		}
+		monitorWindows.mAll.put(key, window);
+		if (window.isMaximized()) {
+			mMaximized.put(key, window);
+			monitorWindows.mMaximized.put(key, window);
+		}
+		if (window.isMinimized()) {
+			mMinimized.put(key, window);
+			monitorWindows.mMinimized.put(key, window);
+		}
+	}
+
+	private void unindex(final RegisteredWindow window) {
+		final Long key = window.getHWndPeer();
+		mByHWnd.remove(window.getHWndPeer());
+		removeFromBucket(mByProcessId, window.getProcessId(), key);
+		removeFromBucket(mByClassName, window.getClassName(), key);
+		final MonitorWindows monitorWindows = mByMonitor.get(window.getMonitorHandle());
+		if (null != monitorWindows) {
+			monitorWindows.mAll.remove(key);
+			monitorWindows.mMaximized.remove(key);
+			monitorWindows.mMinimized.remove(key);
+			if (monitorWindows.mAll.isEmpty())
+				mByMonitor.remove(window.getMonitorHandle());
+		}
+		mMaximized.remove(key);
+		mMinimized.remove(key);
+	}
+
+	private static <K> void removeFromBucket(final Map<K, Map<Long, RegisteredWindow>> index, final K bucketKey, final Long key) {
+		final Map<Long, RegisteredWindow> bucket = index.get(bucketKey);
+		if (null == bucket)
+			return;
+		bucket.remove(key);
+		if (bucket.isEmpty())
+			index.remove(bucketKey);
+	}
+
+	///////////////////
+	// Query methods
+	///////////////////
+
+	/**
+	 * @return The registered window for the given hWnd, or null if it isn't a known top-level window
+	 */
+	public RegisteredWindow get(final HWND hWnd) {
+		return mByHWnd.get(Pointer.nativeValue(hWnd.getPointer()));
+	}
+
+	public int size() {
+		return mByHWnd.size();
+	}
+
+	/**
+	 * Visit every registered window, in no particular order.
+	 */
+	public void forEach(final Consumer<? super RegisteredWindow> consumer) {
+		mByHWnd.forEach(consumer);
+	}
+
+	public List<RegisteredWindow> getWindowsOfProcess(final int processId) {
+		return snapshot(mByProcessId.get(processId));
+	}
+
+	public List<RegisteredWindow> getWindowsOfClass(final String className) {
+		return snapshot(mByClassName.get(className));
+	}
+
+	/**
+	 * @param monitorHandle A raw HMONITOR value, e.g. from {@link Monitor#getHandle()}
+	 */
+	public List<RegisteredWindow> getWindowsOnMonitor(final long monitorHandle) {
+		final MonitorWindows monitorWindows = mByMonitor.get(monitorHandle);
+		return (null == monitorWindows) ? Collections.emptyList() : snapshot(monitorWindows.mAll);
+	}
+
+	public List<RegisteredWindow> getMaximizedWindows() {
+		return snapshot(mMaximized);
+	}
+
+	/**
+	 * @param monitorHandle A raw HMONITOR value, e.g. from {@link Monitor#getHandle()}
+	 */
+	public List<RegisteredWindow> getMaximizedWindows(final long monitorHandle) {
+		final MonitorWindows monitorWindows = mByMonitor.get(monitorHandle);
+		return (null == monitorWindows) ? Collections.emptyList() : snapshot(monitorWindows.mMaximized);
+	}
+
+	public List<RegisteredWindow> getMinimizedWindows() {
+		return snapshot(mMinimized);
+	}
+
+	/**
+	 * @param monitorHandle A raw HMONITOR value, e.g. from {@link Monitor#getHandle()}
+	 */
+	public List<RegisteredWindow> getMinimizedWindows(final long monitorHandle) {
+		final MonitorWindows monitorWindows = mByMonitor.get(monitorHandle);
+		return (null == monitorWindows) ? Collections.emptyList() : snapshot(monitorWindows.mMinimized);
+	}
+
+	private static List<RegisteredWindow> snapshot(final Map<Long, RegisteredWindow> bucket) {
+		if (null == bucket)
+			return Collections.emptyList();
+		return new ArrayList<>(bucket.values());
+	}
+}
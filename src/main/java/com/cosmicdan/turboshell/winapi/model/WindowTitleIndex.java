@@ -0,0 +1,302 @@
+package com.cosmicdan.turboshell.winapi.model;
+
+import com.cosmicdan.turboshell.common.metrics.LatencyHistogram;
+import com.cosmicdan.turboshell.common.metrics.MetricsRegistry;
+import com.cosmicdan.turboshell.winapi.WinUserEx;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef.HWND;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * A trigram index of the titles and process names of every top-level window in the {@link WindowRegistry}, for the
+ * TurboMenu window switcher. It is kept current from window events - a window is only re-indexed when its title actually
+ * changes - so a search never has to read a title, and only verifies the windows sharing the query's rarest trigram.
+ * <p>
+ * Results are ranked by when each window was last in the foreground, most recent first. Unlike the foreground
+ * {@link com.cosmicdan.turboshell.common.model.MruHistory} this covers every window, not just the last few.
+ * <p>
+ * Only a single thread may update the index (the {@link WinEventAgent} dispatcher). Any thread may search it; searches
+ * may miss an update that is in progress.
+ * @author Daniel 'CosmicDan' Connolly
+ */
+@Log4j2
+public final class WindowTitleIndex {
+	private static final int EXPECTED_WINDOWS = 256;
+	private static final int GRAM_LENGTH = 3;
+	private static final Comparator<Match> MOST_RECENT_FIRST = (Match a, Match b) -> {
+		final int byActivation = Long.compare(b.mLastActivated, a.mLastActivated);
+		return (0 != byActivation) ? byActivation : a.mEntry.mTitle.compareToIgnoreCase(b.mEntry.mTitle);
+	};
+
+	private final IWindowEventSource mSource;
+	private final WindowRegistry mRegistry;
+	private final IntFunction<String> mProcessNameResolver;
+	private final int mExcludedProcessId;
+	private final Map<Long, Entry> mByHWnd = new ConcurrentHashMap<>(EXPECTED_WINDOWS);
+	private final Map<Long, Set<Entry>> mByTrigram = new ConcurrentHashMap<>(EXPECTED_WINDOWS * 16);
+	// bumped on every foreground change, so a higher value is more recent. Updating thread only.
+	private long mActivationCounter = 0L;
+
+	private final LatencyHistogram mSearchNanos = MetricsRegistry.INSTANCE.histogram("windowTitleIndex.searchNanos");
+
+	/**
+	 * A single indexed window. Immutable except for its activation stamp; a title change produces a new entry.
+	 */
+	public static final class Entry {
+		private final HWND mHWnd;
+		private final long mHWndPeer;
+		private final String mTitle;
+		private final String mProcessName;
+		private final String mTitleLower;
+		private final String mProcessNameLower;
+		private volatile long mLastActivated;
+
+		private Entry(final HWND hWnd, final long hWndPeer, final String title, final String processName,
+					  final long lastActivated) {
+			mHWnd = hWnd;
+			mHWndPeer = hWndPeer;
+			mTitle = title;
+			mProcessName = processName;
+			mTitleLower = title.toLowerCase(Locale.ROOT);
+			mProcessNameLower = processName.toLowerCase(Locale.ROOT);
+			mLastActivated = lastActivated;
+		}
+
+		public HWND getHWnd() {
+			return mHWnd;
+		}
+
+		public String getTitle() {
+			return mTitle;
+		}
+
+		/**
+		 * @return The file name of the window's executable (e.g. explorer.exe), or an empty string if unknown
+		 */
+		public String getProcessName() {
+			return mProcessName;
+		}
+
+		/**
+		 * @return true if every one of the given (lower-case) terms is in the title or the process name
+		 */
+		private boolean matches(final String[] terms) {
+			for (final String term : terms) {
+				if (!mTitleLower.contains(term) && !mProcessNameLower.contains(term))
+					return false;
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("WindowTitleIndex.Entry{hWnd=%x, title=%s, process=%s}", mHWndPeer, mTitle, mProcessName);
+		}
+	}
+
+	/**
+	 * @param processNameResolver Gets the executable name of a process ID, or an empty string if unknown
+	 * @param excludedProcessId Windows of this process are never returned, i.e. our own
+	 */
+	public WindowTitleIndex(final IWindowEventSource source, final WindowRegistry registry,
+							final IntFunction<String> processNameResolver, final int excludedProcessId) {
+		mSource = source;
+		mRegistry = registry;
+		mProcessNameResolver = processNameResolver;
+		mExcludedProcessId = excludedProcessId;
+	}
+
+	///////////////////
+	// Writer methods
+	///////////////////
+
+	/**
+	 * Index every window currently in the registry. Only needs to be called once, right after the registry is seeded.
+	 */
+	public void seed() {
+		mRegistry.forEach((RegisteredWindow window) -> update(window.getHWnd(), window.getHWndPeer()));
+		log.info("Seeded with {} titled windows", mByHWnd.size());
+	}
+
+	/**
+	 * Update the index for a window event. Must be called after the registry has handled the same event.
+	 */
+	public void onWindowEvent(final int event, final HWND hWnd) {
+		final long hWndPeer = Pointer.nativeValue(hWnd.getPointer());
+		//noinspection SwitchStatement
+		switch (event) {
+			case WinUserEx.EVENT_OBJECT_DESTROY:
+				final Entry removed = mByHWnd.remove(hWndPeer);
+				if (null != removed)
+					unindex(removed);
+				break;
+			case WinUserEx.EVENT_OBJECT_CREATE:
+			case WinUserEx.EVENT_OBJECT_SHOW:
+			case WinUserEx.EVENT_OBJECT_NAMECHANGE:
+				update(hWnd, hWndPeer);
+				break;
+			case WinUserEx.EVENT_SYSTEM_FOREGROUND:
+				final Entry entry = mByHWnd.get(hWndPeer);
+				if (null != entry)
+					entry.mLastActivated = ++mActivationCounter;
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Re-read the title of a window and re-index it, but only if it is a registered window and the title has changed
+	 */
+	private void update(final HWND hWnd, final long hWndPeer) {
+		final RegisteredWindow window = mRegistry.get(hWnd);
+		final Entry existing = mByHWnd.get(hWndPeer);
+		if (null == window) {
+			// not (or no longer) a top-level window
+			if (null != existing) {
+				mByHWnd.remove(hWndPeer);
+				unindex(existing);
+			}
+			return;
+		}
+		final String title = mSource.getWindowTitle(hWnd, (null == existing) ? null : existing.mTitle);
+		if ((null != existing) && (existing.mTitle == title))
+			return;
+		if (null != existing)
+			unindex(existing);
+		if (null == title) {
+			mByHWnd.remove(hWndPeer);
+			return;
+		}
+		final String processName = (null == existing) ?
+				mProcessNameResolver.apply(window.getProcessId()) : existing.mProcessName;
+		final Entry entry = new Entry(hWnd, hWndPeer, title, processName, (null == existing) ? 0L : existing.mLastActivated);
+		mByHWnd.put(hWndPeer, entry);
+		index(entry);
+	}
+
+	private void index(final Entry entry) {
+		forEachTrigram(entry.mTitleLower, (long trigram) ->
+				mByTrigram.computeIfAbsent(trigram, (Long key) -> ConcurrentHashMap.newKeySet()).add(entry));
+		forEachTrigram(entry.mProcessNameLower, (long trigram) ->
+				mByTrigram.computeIfAbsent(trigram, (Long key) -> ConcurrentHashMap.newKeySet()).add(entry));
+	}
+
+	private void unindex(final Entry entry) {
+		forEachTrigram(entry.mTitleLower, (long trigram) -> removeFromPosting(trigram, entry));
+		forEachTrigram(entry.mProcessNameLower, (long trigram) -> removeFromPosting(trigram, entry));
+	}
+
+	private void removeFromPosting(final long trigram, final Entry entry) {
+		final Set<Entry> posting = mByTrigram.get(trigram);
+		if (null == posting)
+			return;
+		posting.remove(entry);
+		if (posting.isEmpty())
+			mByTrigram.remove(trigram);
+	}
+
+	@FunctionalInterface
+	private interface TrigramConsumer {
+		void accept(long trigram);
+	}
+
+	/**
+	 * Every run of three chars, packed into a long. Duplicates are passed on too; the posting sets don't mind.
+	 */
+	private static void forEachTrigram(final String text, final TrigramConsumer consumer) {
+		for (int i = 0; i <= (text.length() - GRAM_LENGTH); i++) {
+			consumer.accept(trigram(text, i));
+		}
+	}
+
+	private static long trigram(final String text, final int start) {
+		return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+	}
+
+	///////////////////
+	// Query methods
+	///////////////////
+
+	public int size() {
+		return mByHWnd.size();
+	}
+
+	/**
+	 * Find the visible windows whose title or process name contains every whitespace-separated term of the query,
+	 * ignoring case. Fast enough to call on every keystroke.
+	 * @param query The text typed so far. An empty query matches every visible window.
+	 * @param maxResults The most results to return
+	 * @return The matching windows, most recently activated first
+	 */
+	public List<Entry> search(final String query, final int maxResults) {
+		final long startNanos = System.nanoTime();
+		final String trimmed = query.trim().toLowerCase(Locale.ROOT);
+		final String[] terms = trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+		final Collection<Entry> candidates = getCandidates(terms);
+		final List<Match> matches = new ArrayList<>(Math.min(candidates.size(), maxResults * 2));
+		for (final Entry entry : candidates) {
+			if (entry.matches(terms) && isSwitchable(entry))
+				matches.add(new Match(entry));
+		}
+		matches.sort(MOST_RECENT_FIRST);
+		final int resultCount = Math.min(matches.size(), maxResults);
+		final List<Entry> results = new ArrayList<>(resultCount);
+		for (int i = 0; i < resultCount; i++) {
+			results.add(matches.get(i).mEntry);
+		}
+		mSearchNanos.recordSince(startNanos);
+		return results;
+	}
+
+	/**
+	 * A search result with its activation stamp as of the search. The dispatcher may stamp an entry again while the
+	 * results are being sorted, which would break the sort's contract - so it sorts on this instead.
+	 */
+	private static final class Match {
+		private final Entry mEntry;
+		private final long mLastActivated;
+
+		private Match(final Entry entry) {
+			mEntry = entry;
+			mLastActivated = entry.mLastActivated;
+		}
+	}
+
+	/**
+	 * @return The windows sharing the rarest trigram of the query terms, which is a superset of the matches; or every
+	 * window if no term is long enough to have a trigram
+	 */
+	private Collection<Entry> getCandidates(final String[] terms) {
+		Collection<Entry> rarest = null;
+		for (final String term : terms) {
+			for (int i = 0; i <= (term.length() - GRAM_LENGTH); i++) {
+				final Set<Entry> posting = mByTrigram.get(trigram(term, i));
+				if (null == posting)
+					return Collections.emptyList();
+				if ((null == rarest) || (posting.size() < rarest.size()))
+					rarest = posting;
+			}
+		}
+		return (null == rarest) ? mByHWnd.values() : rarest;
+	}
+
+	/**
+	 * @return true if the window should be offered by the switcher - i.e. visible, and not one of our own
+	 */
+	private boolean isSwitchable(final Entry entry) {
+		final RegisteredWindow window = mRegistry.get(entry.mHWnd);
+		return (null != window) && window.isVisible() && (mExcludedProcessId != window.getProcessId());
+	}
+}